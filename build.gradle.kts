@@ -29,6 +29,9 @@ plugins {
 
   // GraalVM native compilation
   alias(libs.plugins.org.graalvm.buildtools.native)
+
+  // Microbenchmarks in src/jmh; run them with: ./gradlew jmh
+  alias(libs.plugins.me.champeau.jmh)
 }
 
 repositories {
@@ -276,6 +279,111 @@ tasks.register<Exec>("runMakefileTests") {
 
 tasks.named("check") { dependsOn("runMakefileTests") }
 
+// Benchmarks
+
+jmh {
+  jmhVersion = libs.versions.jmh.get()
+  jvmArgs.addAll(addExportsArgs)
+  // The benchmarks share SyntheticMerge, the generator of merges, with the tests.
+  includeTests = true
+  // To run only some benchmarks, pass a regular expression, as in:
+  //   ./gradlew jmh -PjmhIncludes=MappedLines
+  project.findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
+  // The results are written as JSON, so that runs on different commits can be compared.  To keep
+  // the results of several runs, name the file, as in:
+  //   ./gradlew jmh -PjmhResultsFile=jmh-$(git rev-parse --short HEAD).json
+  resultFormat = "JSON"
+  resultsFile =
+      project.findProperty("jmhResultsFile")?.let { layout.projectDirectory.file(it.toString()) }
+          ?: layout.buildDirectory.file("results/jmh/results.json").get()
+}
+
+// The benchmarks are not shipped, and the code that JMH generates from them does not pass the
+// linters or type-checking.  "-proc:none" disables the Checker Framework; the JMH plugin generates
+// its code from class files, not with an annotation processor.
+listOf("compileJmhJava", "jmhCompileGeneratedClasses").forEach { taskName ->
+  tasks.named<JavaCompile>(taskName) {
+    options.errorprone.isEnabled = false
+    options.compilerArgs.removeAll(listOf("-Werror"))
+    options.compilerArgs.addAll(listOf("-Xlint:none", "-proc:none"))
+  }
+}
+
+// Measures the latency and memory of merge-driver.sh, one process per merge, in each launch mode,
+// and writes build/results/startup/results.json.  The native launch mode is opt-in, via
+// -PbenchmarkNative, for the same reason as -PtestNative above.  The number of runs per launch
+// mode and merge can be changed, as in -PstartupRuns=200.
+tasks.register<JavaExec>("startupBenchmark") {
+  group = "verification"
+  description = "Measures the startup latency and peak RSS of merge-driver.sh in each launch mode."
+  dependsOn("shadowJar")
+  mainClass = "org.plumelib.merging.StartupBenchmark"
+  classpath = sourceSets["jmh"].runtimeClasspath
+  val benchmarkNative = project.hasProperty("benchmarkNative")
+  if (benchmarkNative) {
+    dependsOn("nativeCompile")
+  }
+  val nativeExecutable: Provider<String> =
+      if (benchmarkNative) {
+        tasks
+            .named<BuildNativeImageTask>("nativeCompile")
+            .flatMap { it.outputFile }
+            .map { it.asFile.absolutePath }
+      } else {
+        providers.provider { "" }
+      }
+  val benchmarkJavaHome: Provider<String> =
+      javaToolchains
+          .launcherFor { languageVersion = testJavaVersion }
+          .map { it.metadata.installationPath.asFile.absolutePath }
+  val startupRuns = project.findProperty("startupRuns")?.toString() ?: "50"
+  doFirst {
+    environment("PLUMELIB_MERGE_JAVA_HOME", benchmarkJavaHome.get())
+    args(
+        listOf(
+            "--runs=$startupRuns",
+            "--json=" + layout.buildDirectory.file("results/startup/results.json").get().asFile) +
+            listOfNotNull(nativeExecutable.get().ifEmpty { null }?.let { "--native=$it" }))
+  }
+}
+
+// Replaying the merges in a repository's history
+
+// Replays the merge commits of a local git repository, as in:
+//   ./gradlew replayMerges -PreplayRepo=/path/to/repo
+// To pass other options to MergeReplay, separate them by spaces, as in:
+//   -PreplayArgs="--max-merges=500 --json=replay.json --merge-arg=--adjacent"
+tasks.register<JavaExec>("replayMerges") {
+  group = "verification"
+  description = "Replays the merge commits of the git repository named by -PreplayRepo."
+  mainClass = "org.plumelib.merging.MergeReplay"
+  classpath = sourceSets.main.get().runtimeClasspath
+  jvmArgs(addExportsArgs)
+  val replayRepo = project.findProperty("replayRepo")?.toString()
+  val replayArgs =
+      project.findProperty("replayArgs")?.toString()?.split(" ")?.filter { it.isNotEmpty() }
+  args((replayArgs ?: listOf()) + listOfNotNull(replayRepo))
+  doFirst {
+    if (replayRepo == null) {
+      throw GradleException("Supply the repository to replay, as in: -PreplayRepo=/path/to/repo")
+    }
+  }
+}
+
+// MergeBudgetTest fails if a merger allocates or takes much more than its budget in
+// src/test/resources/budgets.properties.  After an intended change in cost, re-measure the budgets
+// with this task, and commit the changed file.
+tasks.register<Test>("rebaselineBudgets") {
+  group = "verification"
+  description = "Re-measures the budgets that MergeBudgetTest checks."
+  testClassesDirs = sourceSets.test.get().output.classesDirs
+  classpath = sourceSets.test.get().runtimeClasspath
+  filter { includeTestsMatching("org.plumelib.merging.MergeBudgetTest") }
+  systemProperty(
+      "budgets.rebaseline",
+      layout.projectDirectory.file("src/test/resources/budgets.properties").asFile.path)
+}
+
 // Code formatting
 
 // Generated files, a checkout of another repository, and test data, none of which should be
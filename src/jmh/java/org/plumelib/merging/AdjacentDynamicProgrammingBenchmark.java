@@ -0,0 +1,74 @@
+package org.plumelib.merging;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.plumelib.merging.fileformat.ConflictedFile;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+
+/**
+ * Measures {@link AdjacentDynamicProgramming#compute} on a merge conflict in which the left version
+ * deletes one line and edits the first half of the lines, and the right version edits the second
+ * half. The table that it fills in is cubic in the number of lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class AdjacentDynamicProgrammingBenchmark {
+
+  /**
+   * The number of lines in the merge conflict. Above about 200 lines, the table would be too large
+   * and {@link AdjacentDynamicProgramming} gives up immediately.
+   */
+  @Param({"10", "50", "150"})
+  public int linesPerConflict;
+
+  /** The merge conflict. */
+  private MergeConflict mc;
+
+  /** Creates an AdjacentDynamicProgrammingBenchmark. */
+  public AdjacentDynamicProgrammingBenchmark() {}
+
+  /** Creates the merge conflict. */
+  @Setup
+  public void setUp() {
+    SyntheticMerge merge =
+        new SyntheticMerge.Builder()
+            .imports(0)
+            .lines(linesPerConflict + 2)
+            .conflicts(1)
+            .linesPerConflict(linesPerConflict)
+            .annotationDensity(0)
+            .versionChurn(0)
+            .build();
+    // Merge conflict 0 is in the imports.
+    mc = new ConflictedFile(merge.merged, Path.of("merged.java")).mergeConflicts().get(1);
+    if (compute() == null) {
+      throw new Error("not merged: " + mc);
+    }
+  }
+
+  /**
+   * Merges the merge conflict.
+   *
+   * @return the merged lines
+   */
+  @Benchmark
+  public List<String> compute() {
+    return new AdjacentDynamicProgramming(mc.left(), mc.base(), mc.right()).compute();
+  }
+}
@@ -0,0 +1,84 @@
+package org.plumelib.merging;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link AnnotationsRecognizer} with the regular expressions that specify it, on long
+ * annotations: a {@code @SuppressWarnings} with many warning keys, which both accept, and an
+ * annotation with a nested array, which both reject only after examining most of the text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class AnnotationsRecognizerBenchmark {
+
+  /**
+   * The number of elements in each array. With about 100 elements, the regular expression
+   * overflows the default thread stack.
+   */
+  @Param({"10", "50"})
+  public int numElements;
+
+  /** A {@code @SuppressWarnings} annotation with {@link #numElements} warning keys. */
+  private String suppressWarnings;
+
+  /** An annotation whose last argument is a nested array, which the recognizer does not accept. */
+  private String nestedArray;
+
+  /** Creates an AnnotationsRecognizerBenchmark. */
+  public AnnotationsRecognizerBenchmark() {}
+
+  /** Creates the annotations. */
+  @Setup
+  public void setUp() {
+    StringBuilder keys = new StringBuilder();
+    StringBuilder values = new StringBuilder();
+    for (int i = 0; i < numElements; i++) {
+      if (i > 0) {
+        keys.append(",\n    ");
+        values.append(", ");
+      }
+      keys.append("\"warning.key.").append(i).append('"');
+      values.append("Constants.VALUE_").append(i);
+    }
+    suppressWarnings = "@SuppressWarnings({\n    " + keys + ",\n})\n@Pure";
+    nestedArray = "@Anno(a = {" + values + "}, b = 1.5, c = {{" + values + "}})";
+  }
+
+  /**
+   * Matches the annotations with the regular expression.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void regex(Blackhole bh) {
+    bh.consume(JavaAnnotationsMerger.annotationsPattern.matcher(suppressWarnings).matches());
+    bh.consume(JavaAnnotationsMerger.annotationsPattern.matcher(nestedArray).matches());
+  }
+
+  /**
+   * Recognizes the annotations with the recognizer.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  public void recognizer(Blackhole bh) {
+    bh.consume(AnnotationsRecognizer.isAnnotations(suppressWarnings));
+    bh.consume(AnnotationsRecognizer.isAnnotations(nestedArray));
+  }
+}
@@ -0,0 +1,69 @@
+package org.plumelib.merging;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.plumelib.merging.fileformat.ConflictedFile;
+import org.plumelib.merging.fileformat.ConflictedFile.ConflictElement;
+
+/** Measures parsing a conflicted file into its common lines and merge conflicts. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ConflictedFileBenchmark {
+
+  /** The number of lines in the file. */
+  @Param({"10000", "100000"})
+  public int linesPerFile;
+
+  /** The number of merge conflicts in the file. */
+  @Param({"10", "100"})
+  public int conflictsPerFile;
+
+  /** The number of lines in each merge conflict. */
+  @Param({"4", "40"})
+  public int linesPerConflict;
+
+  /** The lines of the conflicted file. */
+  private List<String> lines;
+
+  /** Creates a ConflictedFileBenchmark. */
+  public ConflictedFileBenchmark() {}
+
+  /** Creates the conflicted file. */
+  @Setup
+  public void setUp() {
+    lines =
+        new SyntheticMerge.Builder()
+            .imports(100)
+            .lines(linesPerFile)
+            .conflicts(conflictsPerFile)
+            .linesPerConflict(linesPerConflict)
+            .build()
+            .merged;
+  }
+
+  /**
+   * Parses the conflicted file.
+   *
+   * @return the hunks of the conflicted file
+   */
+  @Benchmark
+  public List<ConflictElement> parse() {
+    return new ConflictedFile(lines, Path.of("merged.java")).hunks();
+  }
+}
@@ -0,0 +1,145 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import picocli.CommandLine;
+
+/**
+ * Measures the whole program, run in-process as a merge driver with the default mergers, on every
+ * test case in {@code src/test/resources/end-to-end}. Each operation merges all the test cases. As
+ * for a real merge driver, the program runs {@code git merge-file} in a subprocess.
+ *
+ * <p>The benchmark must be run from the top level of this repository, as {@code ./gradlew jmh}
+ * does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class CorpusBenchmark {
+
+  /** The directory that holds the test cases. */
+  private static final Path testCasesDir = Path.of("src", "test", "resources", "end-to-end");
+
+  /** The directory that holds copies of the test cases. */
+  private Path dir;
+
+  /** The test cases. */
+  private final List<TestCase> testCases = new ArrayList<>();
+
+  /**
+   * A copy of a test case.
+   *
+   * @param left the left version, which the program overwrites
+   * @param base the base version
+   * @param right the right version
+   * @param leftContents the contents of the left version
+   */
+  private static record TestCase(Path left, Path base, Path right, byte[] leftContents) {}
+
+  /** Creates a CorpusBenchmark. */
+  public CorpusBenchmark() {}
+
+  /**
+   * Copies the test cases.
+   *
+   * @throws IOException if a test case cannot be copied
+   */
+  @Setup
+  public void setUp() throws IOException {
+    if (!Files.isDirectory(testCasesDir)) {
+      throw new Error("Run from the top level of the repository; not found: " + testCasesDir);
+    }
+    dir = Files.createTempDirectory("CorpusBenchmark");
+    List<Path> caseDirs;
+    try (Stream<Path> paths = Files.list(testCasesDir)) {
+      caseDirs = paths.filter(Files::isDirectory).sorted().toList();
+    }
+    for (Path caseDir : caseDirs) {
+      Path left = findVersion(caseDir, "left");
+      Path base = findVersion(caseDir, "base");
+      Path right = findVersion(caseDir, "right");
+      if (left == null || base == null || right == null) {
+        continue;
+      }
+      Path copyDir = Files.createDirectory(dir.resolve(caseDir.getFileName()));
+      byte[] leftContents = Files.readAllBytes(left);
+      testCases.add(
+          new TestCase(
+              Files.copy(left, copyDir.resolve(left.getFileName())),
+              Files.copy(base, copyDir.resolve(base.getFileName())),
+              Files.copy(right, copyDir.resolve(right.getFileName())),
+              leftContents));
+    }
+  }
+
+  /**
+   * Returns the file in the given test case directory that holds the given version, or null.
+   *
+   * @param caseDir a test case directory
+   * @param version "left", "base", or "right"
+   * @return the file that holds the version, or null if there is none
+   * @throws IOException if the directory cannot be read
+   */
+  private static Path findVersion(Path caseDir, String version) throws IOException {
+    try (Stream<Path> paths = Files.list(caseDir)) {
+      return paths
+          .filter(p -> p.getFileName().toString().startsWith(version + "."))
+          .findFirst()
+          .orElse(null);
+    }
+  }
+
+  /**
+   * Deletes the copies of the test cases.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  /**
+   * Restores the left version of each test case, then runs the program on it.
+   *
+   * @return the number of test cases in which merge conflicts remain
+   * @throws IOException if a left version cannot be restored
+   */
+  @Benchmark
+  public int merge() throws IOException {
+    int numConflicted = 0;
+    for (TestCase testCase : testCases) {
+      Files.write(testCase.left(), testCase.leftContents());
+      int exitStatus =
+          new CommandLine(new Main())
+              .execute(
+                  "driver",
+                  testCase.left().toString(),
+                  testCase.base().toString(),
+                  testCase.right().toString());
+      if (exitStatus != 0) {
+        numConflicted++;
+      }
+    }
+    return numConflicted;
+  }
+}
@@ -0,0 +1,68 @@
+package org.plumelib.merging;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import name.fraser.neil.plaintext.diff_match_patch.Diff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.plumelib.merging.fileformat.LineIndex;
+
+/** Measures {@link DmpLibrary#diffByLines} on the base and left versions of a whole file. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class DmpLibraryBenchmark {
+
+  /** The number of lines in the file. */
+  @Param({"10000", "100000"})
+  public int linesPerFile;
+
+  /** The number of places where the left version differs from the base version. */
+  @Param({"10", "100"})
+  public int conflictsPerFile;
+
+  /** The base version of the file. */
+  private String base;
+
+  /** The left version of the file. */
+  private String left;
+
+  /** Creates a DmpLibraryBenchmark. */
+  public DmpLibraryBenchmark() {}
+
+  /** Creates the two versions of the file. */
+  @Setup
+  public void setUp() {
+    SyntheticMerge merge =
+        new SyntheticMerge.Builder()
+            .imports(100)
+            .lines(linesPerFile)
+            .conflicts(conflictsPerFile)
+            .linesPerConflict(4)
+            .build();
+    base = LineIndex.join(merge.base);
+    left = LineIndex.join(merge.left);
+  }
+
+  /**
+   * Diffs the two versions of the file.
+   *
+   * @return the differences
+   */
+  @Benchmark
+  public List<Diff> diffByLines() {
+    return DmpLibrary.diffByLines(base, left);
+  }
+}
@@ -0,0 +1,94 @@
+package org.plumelib.merging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.plumelib.merging.fileformat.Diff3File;
+import org.plumelib.merging.fileformat.Diff3File.Diff3ParseException;
+
+/**
+ * Measures {@link JavaImportsMerger#insertRemovedImports} on a header with many imports, where each
+ * side of the merge removed a different quarter of them. Every removed import is reinserted, one
+ * diff3 hunk at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class InsertRemovedImportsBenchmark {
+
+  /** The number of imports in the base version of the header. */
+  @Param({"1000", "10000"})
+  public int numImports;
+
+  /** The merger. */
+  private final JavaImportsMerger merger = new JavaImportsMerger(false);
+
+  /** The lines of the merged file, which lacks the imports that either side removed. */
+  private List<String> mergedLines;
+
+  /** The diff3 of the left, base, and right versions of the file. */
+  private Diff3File diff3file;
+
+  /** Creates an InsertRemovedImportsBenchmark. */
+  public InsertRemovedImportsBenchmark() {}
+
+  /**
+   * Creates the three versions of the file, and the merged file.
+   *
+   * @throws Diff3ParseException if diff3 fails
+   */
+  @Setup
+  public void setUp() throws Diff3ParseException {
+    List<String> base = new ArrayList<>();
+    List<String> left = new ArrayList<>();
+    List<String> right = new ArrayList<>();
+    mergedLines = new ArrayList<>();
+    for (List<String> lines : List.of(base, left, right, mergedLines)) {
+      lines.add("package org.example;\n");
+      lines.add("\n");
+    }
+    for (int i = 0; i < numImports; i++) {
+      String line = "import org.example.p" + i + ".Class" + i + ";\n";
+      base.add(line);
+      if (i % 4 != 0) {
+        left.add(line);
+      }
+      if (i % 4 != 2) {
+        right.add(line);
+      }
+      if (i % 4 == 1 || i % 4 == 3) {
+        mergedLines.add(line);
+      }
+    }
+    for (List<String> lines : List.of(base, left, right, mergedLines)) {
+      lines.add("\n");
+      lines.add("class C {}\n");
+    }
+    diff3file = Diff3File.from3texts(left, base, right);
+  }
+
+  /**
+   * Reinserts the removed imports. The merged lines are copied first, so that each invocation
+   * does the same work even for an implementation that side-effects its argument.
+   *
+   * @return the lines of the merged file, with the removed imports reinserted
+   */
+  @Benchmark
+  public List<String> insertRemovedImports() {
+    return merger.insertRemovedImports(new ArrayList<>(mergedLines), diff3file);
+  }
+}
@@ -0,0 +1,83 @@
+package org.plumelib.merging;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.plumelib.javacparse.JavacParse;
+
+/**
+ * Measures the parser fallback of {@link JavaAnnotationsMerger#isJavaAnnotations(String,
+ * boolean)}, per fragment, on fragments that start with an annotation, so that both candidate
+ * declarations are parsed. The baseline parses each declaration with {@code JavacParse}, which
+ * creates a new javac context for every parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class JavaAnnotationsParserBenchmark {
+
+  /** The number of fragments, which is the number of operations in each invocation. */
+  private static final int NUM_FRAGMENTS = 8;
+
+  /**
+   * Fragments of the sort that the merger examines: annotations, and some non-annotations. There
+   * are {@link #NUM_FRAGMENTS} of them.
+   */
+  private static final List<String> fragments =
+      List.of(
+          "@Nullable",
+          "@SuppressWarnings(\"unchecked\")",
+          "@Deprecated(since = \"9\", forRemoval = true)",
+          "@MonotonicNonNull private",
+          "@SideEffectFree",
+          "@Regex(1) final",
+          "@A int x = 1",
+          "@B foo(bar)");
+
+  /** Creates a JavaAnnotationsParserBenchmark. */
+  public JavaAnnotationsParserBenchmark() {}
+
+  /**
+   * Parses both candidate declarations of each fragment with {@code JavacParse}.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  @OperationsPerInvocation(NUM_FRAGMENTS)
+  public void javacParse(Blackhole bh) {
+    for (String fragment : fragments) {
+      String classText = "class MyClass {" + fragment + " String varname;}";
+      String classTextAnnoOnly = "class MyClass {" + fragment + ";}";
+      bh.consume(
+          JavacParse.parseTypeDeclaration(classText).tree() != null
+              && JavacParse.parseTypeDeclaration(classTextAnnoOnly).tree() == null);
+    }
+  }
+
+  /**
+   * Calls {@link JavaAnnotationsMerger#isJavaAnnotations(String, boolean)} on each fragment,
+   * forcing it to use the parser.
+   *
+   * @param bh consumes the results
+   */
+  @Benchmark
+  @OperationsPerInvocation(NUM_FRAGMENTS)
+  public void reusableParser(Blackhole bh) {
+    for (String fragment : fragments) {
+      bh.consume(JavaAnnotationsMerger.isJavaAnnotations(fragment, false));
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.plumelib.merging.fileformat.ConflictedFile;
+
+/**
+ * Measures {@link JavaImportsMerger#resolveConflicts} on a file whose only merge conflict is
+ * between two added imports. This includes running {@code diff3} on the files' headers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class JavaImportsMergerBenchmark {
+
+  /** The number of imports in the file. */
+  @Param({"10", "1000"})
+  public int numImports;
+
+  /** The number of lines in the class body. */
+  @Param({"1000", "100000"})
+  public int linesPerFile;
+
+  /** The directory that holds the files of the merge. */
+  private Path dir;
+
+  /** The merge state. */
+  private MergeState ms;
+
+  /** The conflicted file, already parsed. */
+  private ConflictedFile cf;
+
+  /** The merger. */
+  private final JavaImportsMerger merger = new JavaImportsMerger(false);
+
+  /** Creates a JavaImportsMergerBenchmark. */
+  public JavaImportsMergerBenchmark() {}
+
+  /**
+   * Creates the merge.
+   *
+   * @throws IOException if the files of the merge cannot be written
+   */
+  @Setup
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("JavaImportsMergerBenchmark");
+    ms = new SyntheticMerge.Builder().imports(numImports).lines(linesPerFile).build().write(dir);
+    cf = ms.conflictedFile();
+    cf.hunks();
+    if (resolveConflicts() == null) {
+      throw new Error("imports not merged");
+    }
+  }
+
+  /**
+   * Deletes the files of the merge.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  /**
+   * Resolves the merge conflict in the imports.
+   *
+   * @return the conflicted file, with the merge conflict resolved
+   */
+  @Benchmark
+  public ConflictedFile resolveConflicts() {
+    return merger.resolveConflicts(cf, ms);
+  }
+}
@@ -0,0 +1,101 @@
+package org.plumelib.merging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link JavaLibrary} line scanners with the regular expressions that they replaced,
+ * on the header of a Java file with many imports and comments. Each benchmark classifies every line
+ * of the header, as {@link LineKinds#classify} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class JavaLibraryBenchmark {
+
+  /** The number of lines in the header. */
+  private static final int NUM_LINES = 2000;
+
+  /** Matches a blank line. */
+  private static final Pattern whitespacePattern = Pattern.compile("\\s*\\R*");
+
+  /** Matches a comment line. */
+  private static final Pattern commentLinePattern =
+      Pattern.compile("\\s*(//.*|/\\*.*\\*/\\s*)\\R?");
+
+  /** Matches a package statement. */
+  private static final Pattern packagePattern = Pattern.compile("\\s*package\\s.*;\\R?");
+
+  /** Matches an import statement. */
+  private static final Pattern importPattern = Pattern.compile("\\s*import\\s.*;\\R?");
+
+  /** The lines of the header. */
+  private List<String> lines;
+
+  /** Creates a JavaLibraryBenchmark. */
+  public JavaLibraryBenchmark() {}
+
+  /** Creates the lines of the header. */
+  @Setup
+  public void setUp() {
+    lines = new ArrayList<>(NUM_LINES);
+    lines.add("package org.example.benchmark;\n");
+    for (int i = 1; i < NUM_LINES; i++) {
+      switch (i % 10) {
+        case 0 -> lines.add("\n");
+        case 1 -> lines.add("// Imports from group " + i + ".\n");
+        case 2 -> lines.add("/* Imports that are used only in tests. */\n");
+        case 3 -> lines.add("import static org.example.Constants" + i + ".*;\n");
+        default -> lines.add("import org.example.package" + i + ".Class" + i + ";\n");
+      }
+    }
+  }
+
+  /**
+   * Classifies each line with the regular expressions.
+   *
+   * @param bh consumes the classifications
+   */
+  @Benchmark
+  public void regex(Blackhole bh) {
+    for (String line : lines) {
+      bh.consume(
+          whitespacePattern.matcher(line).matches()
+              || commentLinePattern.matcher(line).matches()
+              || importPattern.matcher(line).matches()
+              || packagePattern.matcher(line).matches());
+    }
+  }
+
+  /**
+   * Classifies each line with the scanners.
+   *
+   * @param bh consumes the classifications
+   */
+  @Benchmark
+  public void scanner(Blackhole bh) {
+    for (String line : lines) {
+      bh.consume(
+          JavaLibrary.isBlankLine(line)
+              || JavaLibrary.isCommentLine(line)
+              || JavaLibrary.isImportStatement(line)
+              || JavaLibrary.isPackageStatement(line));
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package org.plumelib.merging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares classifying the lines of an import conflict with the {@link JavaLibrary} regular
+ * expressions each time a question is asked about them, with classifying them once into a {@link
+ * LineKinds}. The questions are those that the import merger asks about each side of a conflict:
+ * whether the side is an import block, which lines are comments (asked twice, to compare the
+ * comments of the two sides and then to merge them), and where the first import is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class LineKindsBenchmark {
+
+  /** The number of lines in the conflict. */
+  private static final int NUM_LINES = 2000;
+
+  /** The lines of one side of an import conflict. */
+  private List<String> lines;
+
+  /** Creates a LineKindsBenchmark. */
+  public LineKindsBenchmark() {}
+
+  /** Creates the lines of the conflict. */
+  @Setup
+  public void setUp() {
+    lines = new ArrayList<>(NUM_LINES);
+    for (int i = 0; i < NUM_LINES; i++) {
+      switch (i % 10) {
+        case 0 -> lines.add("\n");
+        case 1 -> lines.add("// Imports from group " + i + ".\n");
+        case 2 -> lines.add("import static org.example.Constants" + i + ".*;\n");
+        default -> lines.add("import org.example.package" + i + ".Class" + i + ";\n");
+      }
+    }
+  }
+
+  /**
+   * Answers each question with the regular expressions.
+   *
+   * @param bh consumes the answers
+   */
+  @Benchmark
+  public void regex(Blackhole bh) {
+    bh.consume(lines.stream().allMatch(JavaLibrary::isImportBlockLine));
+    for (int i = 0; i < 2; i++) {
+      bh.consume(lines.stream().filter(JavaLibrary::isCommentLine).toList());
+    }
+    for (String line : lines) {
+      if (JavaLibrary.isImportStatement(line)) {
+        bh.consume(line);
+        break;
+      }
+    }
+  }
+
+  /**
+   * Classifies the lines once, then answers each question from the classification.
+   *
+   * @param bh consumes the answers
+   */
+  @Benchmark
+  public void lineKinds(Blackhole bh) {
+    LineKinds kinds = new LineKinds(lines);
+    bh.consume(kinds.isImportBlock());
+    for (int i = 0; i < 2; i++) {
+      bh.consume(kinds.linesWith(LineKinds.COMMENT));
+    }
+    bh.consume(kinds.first(LineKinds.IMPORT));
+  }
+}
@@ -0,0 +1,107 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import picocli.CommandLine;
+
+/**
+ * Measures the whole program, run in-process as a merge tool with every merger enabled, on a
+ * generated Java file. Every merge conflict is resolved, so the imports merger runs too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class MainBenchmark {
+
+  /** The number of lines in the file. */
+  @Param({"10000", "100000"})
+  public int linesPerFile;
+
+  /** The number of merge conflicts in the file. */
+  @Param({"10", "100"})
+  public int conflictsPerFile;
+
+  /** The number of lines in each merge conflict. */
+  @Param({"4", "40"})
+  public int linesPerConflict;
+
+  /** The directory that holds the files of the merge. */
+  private Path dir;
+
+  /** The merge state, whose files are passed to the program. */
+  private MergeState ms;
+
+  /** The contents of the conflicted file, which the program overwrites. */
+  private byte[] mergedContents;
+
+  /** Creates a MainBenchmark. */
+  public MainBenchmark() {}
+
+  /**
+   * Creates the merge.
+   *
+   * @throws IOException if the files of the merge cannot be written
+   */
+  @Setup
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("MainBenchmark");
+    ms =
+        new SyntheticMerge.Builder()
+            .imports(100)
+            .lines(linesPerFile)
+            .conflicts(conflictsPerFile)
+            .linesPerConflict(linesPerConflict)
+            .build()
+            .write(dir);
+    mergedContents = Files.readAllBytes(ms.mergedPath);
+    if (merge() != 0) {
+      throw new Error("merge conflicts remain in " + ms.mergedPath);
+    }
+  }
+
+  /**
+   * Deletes the files of the merge.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  /**
+   * Restores the conflicted file, then runs the program on it.
+   *
+   * @return the program's exit status
+   * @throws IOException if the conflicted file cannot be restored
+   */
+  @Benchmark
+  public int merge() throws IOException {
+    Files.write(ms.mergedPath, mergedContents);
+    return new CommandLine(new Main())
+        .execute(
+            "tool",
+            "--adjacent",
+            ms.leftPath.toString(),
+            ms.basePath.toString(),
+            ms.rightPath.toString(),
+            ms.mergedPath.toString());
+  }
+}
@@ -0,0 +1,127 @@
+package org.plumelib.merging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.plumelib.merging.fileformat.MappedLines;
+import org.plumelib.util.FilesP;
+
+/**
+ * Compares reading the lines of a 200 MB input file eagerly with mapping it, for a client that
+ * examines only the file's header and the lines of one merge conflict. This is the access pattern
+ * of a merger that looks at the imports of a large Java file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class MappedLinesBenchmark {
+
+  /** The approximate size of the input file, in bytes. */
+  private static final long FILE_SIZE = 200L * 1024 * 1024;
+
+  /** The number of lines at the start of the file that the client examines. */
+  private static final int HEADER_LINES = 50;
+
+  /** The number of lines, in the middle of the file, that the client examines. */
+  private static final int CONFLICT_LINES = 20;
+
+  /** The input file. */
+  private Path path;
+
+  /** The number of lines in the input file. */
+  private int numLines;
+
+  /** Creates a MappedLinesBenchmark. */
+  public MappedLinesBenchmark() {}
+
+  /**
+   * Writes the input file.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @Setup
+  public void setUp() throws IOException {
+    path = Files.createTempFile("MappedLinesBenchmark-", ".java");
+    long written = 0;
+    numLines = 0;
+    try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      for (; numLines < HEADER_LINES; numLines++) {
+        String line = "import org.example.package" + numLines + ".Class" + numLines + ";\n";
+        w.write(line);
+        written += line.length();
+      }
+      for (; written < FILE_SIZE; numLines++) {
+        String line = "    int field" + numLines + " = " + numLines + "; // a line of filler\n";
+        w.write(line);
+        written += line.length();
+      }
+    }
+  }
+
+  /**
+   * Deletes the input file.
+   *
+   * @throws IOException if the file cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(path);
+  }
+
+  /**
+   * Consumes the lines that the client examines.
+   *
+   * @param lines the lines of the input file
+   * @param bh consumes the lines
+   */
+  private void examine(List<String> lines, Blackhole bh) {
+    for (int i = 0; i < HEADER_LINES; i++) {
+      bh.consume(lines.get(i));
+    }
+    int conflictStart = numLines / 2;
+    for (int i = conflictStart; i < conflictStart + CONFLICT_LINES; i++) {
+      bh.consume(lines.get(i));
+    }
+  }
+
+  /**
+   * Reads every line of the file into memory, then examines some of them.
+   *
+   * @param bh consumes the lines
+   */
+  @Benchmark
+  public void eager(Blackhole bh) {
+    examine(FilesP.readLinesRetainingSeparators(path), bh);
+  }
+
+  /**
+   * Maps the file, then examines some of its lines. The mapping is part of the measured time, so
+   * this includes every byte of the file that {@link MappedLines} reads.
+   *
+   * @param bh consumes the lines
+   * @throws IOException if the file cannot be mapped
+   */
+  @Benchmark
+  public void mapped(Blackhole bh) throws IOException {
+    examine(MappedLines.map(path, StandardCharsets.UTF_8), bh);
+  }
+}
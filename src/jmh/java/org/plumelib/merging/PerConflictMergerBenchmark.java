@@ -0,0 +1,114 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.plumelib.merging.fileformat.ConflictedFile;
+
+/**
+ * Measures each merger that considers each merge conflict on its own, on a whole conflicted file.
+ * About a third of the merge conflicts are of the kind that the merger resolves; see {@link
+ * SyntheticMerge}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class PerConflictMergerBenchmark {
+
+  /** The merger. */
+  @Param({"adjacent", "java-annotations", "version-numbers"})
+  public String mergerName;
+
+  /** The number of lines in the file. */
+  @Param({"10000"})
+  public int linesPerFile;
+
+  /** The number of merge conflicts in the file. */
+  @Param({"10", "100"})
+  public int conflictsPerFile;
+
+  /** The number of lines in each merge conflict. */
+  @Param({"4", "40"})
+  public int linesPerConflict;
+
+  /** The directory that holds the files of the merge. */
+  private Path dir;
+
+  /** The merge state. */
+  private MergeState ms;
+
+  /** The conflicted file, already parsed. */
+  private ConflictedFile cf;
+
+  /** The merger. */
+  private PerConflictMerger merger;
+
+  /** Creates a PerConflictMergerBenchmark. */
+  public PerConflictMergerBenchmark() {}
+
+  /**
+   * Creates the merge.
+   *
+   * @throws IOException if the files of the merge cannot be written
+   */
+  @Setup
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("PerConflictMergerBenchmark");
+    ms =
+        new SyntheticMerge.Builder()
+            .imports(100)
+            .lines(linesPerFile)
+            .conflicts(conflictsPerFile)
+            .linesPerConflict(linesPerConflict)
+            .build()
+            .write(dir);
+    cf = ms.conflictedFile();
+    cf.hunks();
+    merger =
+        switch (mergerName) {
+          case "adjacent" -> new AdjacentLinesMerger(false);
+          case "java-annotations" -> new JavaAnnotationsMerger(false);
+          case "version-numbers" -> new VersionNumbersMerger(false);
+          default -> throw new Error("unknown merger " + mergerName);
+        };
+    if (resolveConflicts() == null) {
+      throw new Error(mergerName + " resolved nothing");
+    }
+  }
+
+  /**
+   * Deletes the files of the merge.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  /**
+   * Resolves the merge conflicts that the merger can.
+   *
+   * @return the conflicted file, with some merge conflicts resolved
+   */
+  @Benchmark
+  public ConflictedFile resolveConflicts() {
+    return merger.resolveConflicts(cf, ms);
+  }
+}
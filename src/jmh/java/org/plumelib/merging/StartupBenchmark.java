@@ -0,0 +1,436 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.plumelib.merging.fileformat.LineIndex;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Measures the end-to-end latency and peak memory of {@code merge-driver.sh}, as git runs it: one
+ * new process per merged file. Unlike the JMH benchmarks, which measure the program once the JVM
+ * is warm, this measures what a user waits for, including the start of the JVM.
+ *
+ * <p>It runs the script in each of these launch modes:
+ *
+ * <ul>
+ *   <li>{@code jar}: the fat jar on a plain JVM.
+ *   <li>{@code jar-cds}: the fat jar, with a dynamic class-data sharing (CDS) archive that the JVM
+ *       creates on the first (warm-up) run and reuses afterward. This requires Java 19 or later.
+ *   <li>{@code native}: the native executable given by {@code --native}. This is not the
+ *       executable in its default location, which may be stale.
+ * </ul>
+ *
+ * <p>There is no daemon launcher, so there is no daemon launch mode. A launch mode that cannot run
+ * is reported as skipped, with the reason.
+ *
+ * <p>Each launch mode merges each of a fixed set of generated files: one that {@code git
+ * merge-file} merges cleanly, and two with merge conflicts that the default mergers resolve. For
+ * each launch mode and file, this reports the 50th, 95th, and 99th percentile latency, and the
+ * largest resident set size of any process in the run. On a system without {@code /proc}, the
+ * resident set size is not reported. It is sampled every few milliseconds, so for a very short
+ * run it may be an underestimate.
+ *
+ * <p>Run it from the top level of the repository as:
+ *
+ * <pre>{@code
+ * ./gradlew startupBenchmark
+ * }</pre>
+ */
+@Command(
+    name = "plumelib-merge-startup-benchmark",
+    description = "Measures the latency and memory of merge-driver.sh in each launch mode.")
+public class StartupBenchmark implements Callable<Integer> {
+
+  /** Creates a StartupBenchmark. */
+  public StartupBenchmark() {}
+
+  /** The number of measured runs per launch mode and merge. */
+  @Option(
+      names = "--runs",
+      description = "The number of measured runs per launch mode and merge",
+      defaultValue = "50")
+  public int runs = 50;
+
+  /** The number of unmeasured runs per launch mode and merge, before the measured runs. */
+  @Option(
+      names = "--warmup",
+      description = "The number of unmeasured runs per launch mode and merge",
+      defaultValue = "3")
+  public int warmup = 3;
+
+  /** The native executable, or null to skip the native launch mode. */
+  @Option(
+      names = "--native",
+      paramLabel = "FILE",
+      description = "The native executable; if omitted, the native launch mode is skipped")
+  public @Nullable Path nativeExecutable = null;
+
+  /** Where to write the results as JSON, or null to not write them. */
+  @Option(names = "--json", paramLabel = "FILE", description = "Also write the results to FILE")
+  public @Nullable Path json = null;
+
+  /** The merge driver script. */
+  private static final Path MERGE_DRIVER = Path.of("src", "main", "sh", "merge-driver.sh");
+
+  /** The interval at which the resident set size is sampled, in milliseconds. */
+  private static final long SAMPLE_MILLIS = 2;
+
+  /**
+   * A way of launching the program.
+   *
+   * @param name the name of the launch mode
+   * @param environment the environment variables that select the launch mode
+   */
+  private static record LaunchMode(String name, Map<String, String> environment) {}
+
+  /**
+   * A merge, written to files.
+   *
+   * @param name the name of the merge
+   * @param left the left version, which the merge driver overwrites
+   * @param base the base version
+   * @param right the right version
+   * @param leftContents the original contents of the left version
+   * @param expected the contents that the merge driver should write
+   */
+  private static record Input(
+      String name, Path left, Path base, Path right, String leftContents, String expected) {}
+
+  /**
+   * The results of one launch mode on one merge.
+   *
+   * @param mode the launch mode
+   * @param input the name of the merge
+   * @param latencies the latency of each measured run, in nanoseconds
+   * @param peakRssKiB the largest resident set size of any process in any run, in KiB, or -1 if it
+   *     could not be measured
+   */
+  private static record Result(String mode, String input, List<Long> latencies, long peakRssKiB) {
+
+    /**
+     * Returns the given percentile of the latencies, using the nearest-rank method.
+     *
+     * @param percentile a number between 0 and 100
+     * @return the given percentile of the latencies, in milliseconds
+     */
+    double latencyMillis(double percentile) {
+      List<Long> sorted = new ArrayList<>(latencies);
+      sorted.sort(null);
+      int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+      return sorted.get(Math.max(rank, 1) - 1) / 1e6;
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the command-line arguments
+   */
+  public static void main(String[] args) {
+    int exitCode = new CommandLine(new StartupBenchmark()).execute(args);
+    System.exit(exitCode);
+  }
+
+  @Override
+  public Integer call() throws IOException, InterruptedException {
+    if (!Files.isRegularFile(MERGE_DRIVER)) {
+      Main.exitErroneously("Run from the top level of the repository; not found: " + MERGE_DRIVER);
+      throw new Error("unreachable");
+    }
+    Path dir = Files.createTempDirectory("StartupBenchmark-");
+    List<Result> results = new ArrayList<>();
+    Map<String, String> skipped = new LinkedHashMap<>();
+    try {
+      List<Input> inputs = writeInputs(dir);
+      for (LaunchMode mode : launchModes(dir, skipped)) {
+        try {
+          List<Result> modeResults = new ArrayList<>();
+          for (Input input : inputs) {
+            modeResults.add(measure(mode, input));
+          }
+          results.addAll(modeResults);
+        } catch (IOException e) {
+          skipped.put(mode.name(), e.getMessage());
+        }
+      }
+      skipped.put("daemon", "there is no daemon launcher");
+    } finally {
+      SyntheticMerge.deleteDirectory(dir);
+    }
+
+    System.out.print(toText(results, skipped));
+    if (json != null) {
+      Path parent = json.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      Files.writeString(json, toJson(results, skipped), StandardCharsets.UTF_8);
+    }
+    return results.isEmpty() ? 1 : 0;
+  }
+
+  /**
+   * Writes the merges to files.
+   *
+   * @param dir the directory to write the files in
+   * @return the merges
+   * @throws IOException if a file cannot be written
+   */
+  private static List<Input> writeInputs(Path dir) throws IOException {
+    List<Input> result = new ArrayList<>();
+    // The default mergers do not include the adjacent-lines merger, so the merges with conflicts
+    // have only annotation and version-number conflicts, which the default mergers resolve.
+    result.add(
+        writeInput(
+            dir, "clean", new SyntheticMerge.Builder().imports(10).importsPerSide(0).lines(200)));
+    result.add(
+        writeInput(
+            dir,
+            "conflicts",
+            new SyntheticMerge.Builder()
+                .imports(20)
+                .importsPerSide(2)
+                .lines(2_000)
+                .conflicts(10)
+                .annotationDensity(0.5)
+                .versionChurn(0.5)));
+    result.add(
+        writeInput(
+            dir,
+            "large",
+            new SyntheticMerge.Builder()
+                .imports(100)
+                .importsPerSide(5)
+                .lines(50_000)
+                .conflicts(100)
+                .annotationDensity(0.5)
+                .versionChurn(0.5)));
+    return result;
+  }
+
+  /**
+   * Writes a merge to files.
+   *
+   * @param dir the directory to write the files in
+   * @param name the name of the merge
+   * @param builder the specification of the merge
+   * @return the merge
+   * @throws IOException if a file cannot be written
+   */
+  private static Input writeInput(Path dir, String name, SyntheticMerge.Builder builder)
+      throws IOException {
+    SyntheticMerge merge = builder.build();
+    MergeState ms = merge.write(Files.createDirectories(dir.resolve(name)));
+    return new Input(
+        name,
+        ms.leftPath,
+        ms.basePath,
+        ms.rightPath,
+        LineIndex.join(merge.left),
+        LineIndex.join(merge.expected));
+  }
+
+  /**
+   * Returns the launch modes that can be measured, and records the others in {@code skipped}.
+   *
+   * @param dir a directory for temporary files
+   * @param skipped a map from each skipped launch mode to the reason; is side-effected
+   * @return the launch modes that can be measured
+   */
+  private List<LaunchMode> launchModes(Path dir, Map<String, String> skipped) {
+    List<LaunchMode> result = new ArrayList<>();
+    // An empty PLUMELIB_MERGE_EXECUTABLE makes the script run the fat jar.
+    result.add(new LaunchMode("jar", Map.of("PLUMELIB_MERGE_EXECUTABLE", "")));
+    Path archive = dir.resolve("merging-all.jsa").toAbsolutePath();
+    result.add(
+        new LaunchMode(
+            "jar-cds",
+            Map.of(
+                "PLUMELIB_MERGE_EXECUTABLE",
+                "",
+                "JDK_JAVA_OPTIONS",
+                "-XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=" + archive)));
+    if (nativeExecutable == null) {
+      skipped.put("native", "no --native command-line argument");
+    } else if (Files.isExecutable(nativeExecutable)) {
+      result.add(
+          new LaunchMode(
+              "native",
+              Map.of("PLUMELIB_MERGE_EXECUTABLE", nativeExecutable.toAbsolutePath().toString())));
+    } else {
+      skipped.put("native", "no native executable at " + nativeExecutable);
+    }
+    return result;
+  }
+
+  /**
+   * Measures one launch mode on one merge.
+   *
+   * @param mode the launch mode
+   * @param input the merge
+   * @return the results
+   * @throws IOException if a run fails or produces the wrong result
+   * @throws InterruptedException if interrupted while waiting for a run
+   */
+  private Result measure(LaunchMode mode, Input input) throws IOException, InterruptedException {
+    Path stderr = input.left().resolveSibling("stderr.txt");
+    List<Long> latencies = new ArrayList<>();
+    long peakRssKiB = -1;
+    for (int i = 0; i < warmup + runs; i++) {
+      Files.writeString(input.left(), input.leftContents(), StandardCharsets.UTF_8);
+      ProcessBuilder pb =
+          new ProcessBuilder(
+              "sh",
+              MERGE_DRIVER.toString(),
+              input.left().toString(),
+              input.base().toString(),
+              input.right().toString());
+      pb.environment().remove("JAVA_TOOL_OPTIONS");
+      pb.environment().remove("JDK_JAVA_OPTIONS");
+      pb.environment().putAll(mode.environment());
+      pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+      pb.redirectError(stderr.toFile());
+
+      long start = System.nanoTime();
+      Process process = pb.start();
+      long rssKiB = -1;
+      while (!process.waitFor(SAMPLE_MILLIS, TimeUnit.MILLISECONDS)) {
+        rssKiB = Math.max(rssKiB, residentSetSizeKiB(process));
+      }
+      long nanos = System.nanoTime() - start;
+
+      if (process.exitValue() != 0) {
+        // The java launcher reports that it read JDK_JAVA_OPTIONS; skip that.
+        List<String> errors =
+            Files.readAllLines(stderr, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.startsWith("NOTE: Picked up"))
+                .toList();
+        throw new IOException(
+            String.format(
+                "%s exited with status %d on %s%s",
+                MERGE_DRIVER,
+                process.exitValue(),
+                input.name(),
+                errors.isEmpty() ? "" : ": " + errors.get(0)));
+      }
+      if (i == 0 && !Files.readString(input.left()).equals(input.expected())) {
+        throw new IOException(MERGE_DRIVER + " merged " + input.name() + " incorrectly");
+      }
+      if (i >= warmup) {
+        latencies.add(nanos);
+        peakRssKiB = Math.max(peakRssKiB, rssKiB);
+      }
+    }
+    return new Result(mode.name(), input.name(), latencies, peakRssKiB);
+  }
+
+  /**
+   * Returns the largest high-water mark of the resident set size of the given process and its
+   * descendants, or -1 if it cannot be determined.
+   *
+   * @param process a process
+   * @return the largest resident set size of the process and its descendants, in KiB, or -1
+   */
+  private static long residentSetSizeKiB(Process process) {
+    long result = -1;
+    try (Stream<ProcessHandle> handles =
+        Stream.concat(Stream.of(process.toHandle()), process.descendants())) {
+      for (ProcessHandle handle : handles.toList()) {
+        Path status = Path.of("/proc", Long.toString(handle.pid()), "status");
+        List<String> lines;
+        try {
+          lines = Files.readAllLines(status, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+          // The process has exited, or this system has no /proc.
+          continue;
+        }
+        for (String line : lines) {
+          // The line is "VmHWM:" followed by whitespace, a number, and "kB".
+          if (line.startsWith("VmHWM:")) {
+            String kib = line.substring("VmHWM:".length()).replace("kB", "").trim();
+            result = Math.max(result, Long.parseLong(kib));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns a human-readable report of the results.
+   *
+   * @param results the results
+   * @param skipped a map from each skipped launch mode to the reason
+   * @return a human-readable report of the results, ending with a line separator
+   */
+  private String toText(List<Result> results, Map<String, String> skipped) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%d runs of %s per launch mode and merge.%n", runs, MERGE_DRIVER));
+    sb.append(
+        String.format(
+            "%-10s %-10s %10s %10s %10s %14s%n",
+            "mode", "merge", "p50 ms", "p95 ms", "p99 ms", "peak RSS KiB"));
+    for (Result result : results) {
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "%-10s %-10s %10.1f %10.1f %10.1f %14s%n",
+              result.mode(),
+              result.input(),
+              result.latencyMillis(50),
+              result.latencyMillis(95),
+              result.latencyMillis(99),
+              result.peakRssKiB() < 0 ? "unknown" : Long.toString(result.peakRssKiB())));
+    }
+    for (Map.Entry<String, String> entry : skipped.entrySet()) {
+      sb.append(String.format("Skipped %s: %s%n", entry.getKey(), entry.getValue()));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the results as a JSON object.
+   *
+   * @param results the results
+   * @param skipped a map from each skipped launch mode to the reason
+   * @return the results as a JSON object, followed by a line separator
+   */
+  private String toJson(List<Result> results, Map<String, String> skipped) {
+    StringJoiner resultsJson = new StringJoiner(",", "[", "]");
+    for (Result result : results) {
+      resultsJson.add(
+          String.format(
+              Locale.ROOT,
+              "{\"mode\":%s,\"merge\":%s,\"p50Millis\":%.3f,\"p95Millis\":%.3f,"
+                  + "\"p99Millis\":%.3f,\"peakRssKiB\":%s}",
+              MergeStats.jsonString(result.mode()),
+              MergeStats.jsonString(result.input()),
+              result.latencyMillis(50),
+              result.latencyMillis(95),
+              result.latencyMillis(99),
+              result.peakRssKiB() < 0 ? "null" : Long.toString(result.peakRssKiB())));
+    }
+    StringJoiner skippedJson = new StringJoiner(",", "{", "}");
+    for (Map.Entry<String, String> entry : skipped.entrySet()) {
+      skippedJson.add(
+          MergeStats.jsonString(entry.getKey()) + ":" + MergeStats.jsonString(entry.getValue()));
+    }
+    return String.format(
+        "{\"runs\":%d,\"warmup\":%d,\"results\":%s,\"skipped\":%s}%n",
+        runs, warmup, resultsJson, skippedJson);
+  }
+}
@@ -0,0 +1,82 @@
+package org.plumelib.merging;
+
+import com.google.googlejavaformat.java.FormatterException;
+import com.google.googlejavaformat.java.RemoveUnusedImports;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares google-java-format's unused-import removal with {@link UnusedImports}, on a Java file
+ * with a few dozen imports and tens of thousands of lines of code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UnusedImportsBenchmark {
+
+  /** The number of imports in the file. Half of them are unused. */
+  private static final int NUM_IMPORTS = 40;
+
+  /** The number of methods in the file. */
+  private static final int NUM_METHODS = 5000;
+
+  /** The contents of the Java file. */
+  private String contents;
+
+  /** Creates an UnusedImportsBenchmark. */
+  public UnusedImportsBenchmark() {}
+
+  /** Creates the contents of the Java file. */
+  @Setup
+  public void setUp() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("package org.example;\n\n");
+    for (int i = 0; i < NUM_IMPORTS; i++) {
+      sb.append("import org.example.p").append(i).append(".Class").append(i).append(";\n");
+    }
+    sb.append("\n/** A large class. */\npublic class Large {\n");
+    for (int i = 0; i < NUM_METHODS; i++) {
+      int used = 2 * (i % (NUM_IMPORTS / 2));
+      sb.append("\n  /**\n   * Returns a value.\n   *\n");
+      sb.append("   * @return a {@link Class").append(used).append("}\n   */\n");
+      sb.append("  Object method").append(i).append("(String s) {\n");
+      sb.append("    String t = \"text \" + s + ").append(i).append(";\n");
+      sb.append("    return new Class").append(used).append("(t.length());\n  }\n");
+    }
+    sb.append("}\n");
+    contents = sb.toString();
+  }
+
+  /**
+   * Removes unused imports with google-java-format.
+   *
+   * @return the file without unused imports
+   * @throws FormatterException if the file cannot be parsed
+   */
+  @Benchmark
+  public String gjf() throws FormatterException {
+    return RemoveUnusedImports.removeUnusedImports(contents);
+  }
+
+  /**
+   * Removes unused imports with {@link UnusedImports}.
+   *
+   * @return the file without unused imports
+   */
+  @Benchmark
+  public String lexer() {
+    return UnusedImports.removeUnusedImports(contents);
+  }
+}
@@ -0,0 +1,74 @@
+package org.plumelib.merging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.StepBudget;
+
+/**
+ * Measures {@link VersionNumbersMerger} on a dependency-bump conflict in a version catalog, such as
+ * {@code libs.versions.toml}: each side increases the version numbers of some of the libraries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class VersionNumbersMergerBenchmark {
+
+  /** The number of lines in the merge conflict. */
+  @Param({"100", "1000"})
+  public int numLines;
+
+  /** The merger. */
+  private final VersionNumbersMerger merger = new VersionNumbersMerger(false);
+
+  /** The merge conflict. */
+  private MergeConflict mc;
+
+  /** Creates a VersionNumbersMergerBenchmark. */
+  public VersionNumbersMergerBenchmark() {}
+
+  /** Creates the merge conflict. */
+  @Setup
+  public void setUp() {
+    List<String> base = new ArrayList<>(numLines);
+    List<String> left = new ArrayList<>(numLines);
+    List<String> right = new ArrayList<>(numLines);
+    for (int i = 0; i < numLines; i++) {
+      String library = "library-" + i + " = \"org.example:library-" + i + ":";
+      int minor = i % 17;
+      base.add(library + "2." + minor + ".0\"\n");
+      left.add(library + "2." + minor + (i % 3 == 0 ? ".1" : ".0") + "\"\n");
+      right.add(library + "2." + (i % 5 == 0 ? minor + 1 : minor) + ".0\"\n");
+    }
+    mc = (MergeConflict) MergeConflict.of(base, left, right, 0, 3 * numLines + 4);
+  }
+
+  /**
+   * Resolves the merge conflict.
+   *
+   * @return the resolution
+   */
+  @Benchmark
+  public List<String> resolve() {
+    List<String> result = merger.resolveConflict(mc, StepBudget.unlimited());
+    if (result == null) {
+      throw new Error("not resolved");
+    }
+    return result;
+  }
+}
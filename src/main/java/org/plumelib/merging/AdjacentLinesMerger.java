@@ -5,17 +5,15 @@ import java.util.Iterator;
 import java.util.List;
 import name.fraser.neil.plaintext.diff_match_patch.Diff;
 import org.checkerframework.checker.nullness.qual.Nullable;
-import org.plumelib.merging.fileformat.ConflictedFile;
-import org.plumelib.merging.fileformat.ConflictedFile.ConflictElement;
 import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.ConflictedFile.TrimmedConflict;
 import org.plumelib.merging.fileformat.RDiff;
 import org.plumelib.merging.fileformat.RDiff.Equal;
-import org.plumelib.util.CollectionsP;
-import org.plumelib.util.CollectionsP.Replacement;
+import org.plumelib.merging.fileformat.StepBudget;
 import org.plumelib.util.IPair;
 
 /** This is a merger that resolves conflicts where the edits are on different but adjacent lines. */
-public class AdjacentLinesMerger extends Merger {
+public class AdjacentLinesMerger extends PerConflictMerger {
 
   /**
    * Creates an AdjacentLinesMerger.
@@ -26,47 +24,25 @@ public class AdjacentLinesMerger extends Merger {
     super(verbose);
   }
 
+  // This merger works on whole lines, and its dynamic programming bounds the size of its table.
   @Override
-  @Nullable ConflictedFile resolveConflicts(ConflictedFile cf, MergeState mergeState) {
-
-    List<ConflictElement> hunks = cf.hunks();
-    if (hunks == null) {
-      Main.exitErroneously("Unparsable file " + cf.path);
-      throw new Error("unreachable");
-    }
-
-    List<Replacement<String>> replacements = new ArrayList<>();
-
-    for (ConflictElement ce : hunks) {
-      if (!(ce instanceof MergeConflict mc)) {
-        continue;
-      }
-      List<String> merged = mergedSameLength(mc);
-      if (merged == null && mc.base() != null) {
-        merged = new AdjacentDynamicProgramming(mc.left(), mc.base(), mc.right()).compute();
-      }
-      if (merged == null) {
-        merged = mergedWithAdjacent(mc);
-      }
-      if (merged != null) {
-        replacements.add(Replacement.of(mc.start(), mc.end() - 1, merged));
-      }
-    }
-
-    if (replacements.isEmpty()) {
-      return null;
-    }
+  boolean limitsFragmentLength() {
+    return false;
+  }
 
-    if (verbose) {
-      System.out.printf("AdjacentLinesMerger: replacements = %s%n", replacements);
-      // System.out.printf("AdjacentLinesMerger: before replacement = %s%n", cf.lines());
+  @Override
+  @Nullable List<String> resolveConflict(MergeConflict mcUntrimmed, StepBudget budget) {
+    // Work on the smallest possible conflict; in particular, the dynamic programming is cubic.
+    TrimmedConflict trimmed = mcUntrimmed.trim();
+    MergeConflict mc = trimmed.core();
+    List<String> merged = mergedSameLength(mc);
+    if (merged == null && mc.base() != null) {
+      merged = new AdjacentDynamicProgramming(mc.left(), mc.base(), mc.right()).compute();
     }
-    List<String> newLines = CollectionsP.replace(cf.lines(), replacements);
-    if (verbose) {
-      // System.out.printf("AdjacentLinesMerger: after replacement = %s%n", newLines);
+    if (merged == null) {
+      merged = mergedWithAdjacent(mc);
     }
-    ConflictedFile result = new ConflictedFile(newLines, cf.path);
-    return result;
+    return (merged == null ? null : trimmed.untrim(merged));
   }
 
   /**
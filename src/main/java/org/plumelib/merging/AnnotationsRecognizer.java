@@ -0,0 +1,489 @@
+package org.plumelib.merging;
+
+import java.util.Set;
+
+/**
+ * Recognizes the annotations and modifiers that {@link JavaAnnotationsMerger} merges without
+ * parsing: a sequence of annotations and modifiers, a receiver parameter, and an {@code extends
+ * Object} bound. Each recognizer accepts exactly the language of one of the merger's regular
+ * expressions, but it runs in time linear in the length of the text, whereas the deeply nested
+ * regular expressions backtrack.
+ *
+ * <p>Like the regular expressions, a recognizer permits whitespace only where {@code \s} matches,
+ * an annotation's name is a simple name, and an annotation argument is a string, a number, a
+ * dotted name, or a non-nested array of those.
+ *
+ * <p>The regular expressions are ambiguous only where a modifier keyword could also be a type name,
+ * as in {@code "final this"}. A recognizer resolves each such choice by examining the text that
+ * follows the keyword, which determines the choice.
+ */
+final class AnnotationsRecognizer {
+
+  /** The modifiers that {@link JavaAnnotationsMerger#annotationRegex} accepts. */
+  private static final Set<String> modifiers =
+      Set.of(
+          "abstract",
+          "final",
+          "private",
+          "protected",
+          "public",
+          "static",
+          "synchronized",
+          "transient",
+          "volatile");
+
+  /** Returned by a recognizer method that does not match. */
+  private static final int FAIL = -1;
+
+  /** The text being recognized. */
+  private final String text;
+
+  /** The length of {@link #text}. */
+  private final int length;
+
+  /**
+   * Creates an AnnotationsRecognizer.
+   *
+   * @param text the text to recognize
+   */
+  private AnnotationsRecognizer(String text) {
+    this.text = text;
+    this.length = text.length();
+  }
+
+  /**
+   * Returns true if the text is one or more annotations or modifiers, separated by whitespace. This
+   * is the language of {@link JavaAnnotationsMerger#annotationsPattern}.
+   *
+   * @param text some text
+   * @return true if the text is a sequence of annotations and modifiers
+   */
+  static boolean isAnnotations(String text) {
+    AnnotationsRecognizer r = new AnnotationsRecognizer(text);
+    int pos = r.annotationOrModifier(0);
+    while (pos != FAIL && pos < r.length) {
+      int afterSpace = JavaLibrary.skipWhitespace(text, pos);
+      if (afterSpace == pos) {
+        return false;
+      }
+      pos = r.annotationOrModifier(afterSpace);
+    }
+    return pos == r.length;
+  }
+
+  /**
+   * Returns true if the text is a receiver parameter, such as {@code "@Anno MyClass<T> this"},
+   * optionally followed by a comma. This is the language of {@link
+   * JavaAnnotationsMerger#thisPattern}.
+   *
+   * @param text some text
+   * @return true if the text is a receiver parameter
+   */
+  static boolean isReceiverParameter(String text) {
+    AnnotationsRecognizer r = new AnnotationsRecognizer(text);
+    int pos = 0;
+    while (true) {
+      if (r.isTypeAndThis(pos)) {
+        return true;
+      }
+      pos = r.annotationOrModifierAndSpace(pos);
+      if (pos == FAIL) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Returns true if the text is an {@code extends} clause whose bound is {@code Object}, possibly
+   * annotated. This is the language of {@link JavaAnnotationsMerger#extendsPattern}.
+   *
+   * @param text some text
+   * @return true if the text is an {@code extends Object} clause
+   */
+  static boolean isExtendsObject(String text) {
+    if (!text.startsWith("extends")) {
+      return false;
+    }
+    AnnotationsRecognizer r = new AnnotationsRecognizer(text);
+    int pos = JavaLibrary.skipWhitespace(text, "extends".length());
+    if (pos == "extends".length()) {
+      return false;
+    }
+    while (true) {
+      if (pos + "Object".length() == r.length && text.startsWith("Object", pos)) {
+        return true;
+      }
+      pos = r.annotationOrModifierAndSpace(pos);
+      if (pos == FAIL) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Recognizes an annotation or modifier followed by whitespace, as in {@link
+   * JavaAnnotationsMerger#annotationsSpacesRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the whitespace, or {@link #FAIL}
+   */
+  private int annotationOrModifierAndSpace(int start) {
+    int pos = annotationOrModifier(start);
+    if (pos == FAIL) {
+      return FAIL;
+    }
+    int afterSpace = JavaLibrary.skipWhitespace(text, pos);
+    return afterSpace == pos ? FAIL : afterSpace;
+  }
+
+  /**
+   * Recognizes an annotation or a modifier, as in {@link JavaAnnotationsMerger#annotationRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the annotation or modifier, or {@link #FAIL}
+   */
+  private int annotationOrModifier(int start) {
+    if (start < length && text.charAt(start) == '@') {
+      return annotation(start + 1);
+    }
+    int end = identifier(start);
+    if (end == FAIL || !modifiers.contains(text.substring(start, end))) {
+      return FAIL;
+    }
+    return end;
+  }
+
+  /**
+   * Recognizes an annotation, after its {@code @}, as in {@link
+   * JavaAnnotationsMerger#annotationOnlyRegex}.
+   *
+   * @param start the index after the {@code @}
+   * @return the index after the annotation, or {@link #FAIL}
+   */
+  private int annotation(int start) {
+    int pos = identifier(start);
+    if (pos == FAIL) {
+      return FAIL;
+    }
+    int afterSpace = JavaLibrary.skipWhitespace(text, pos);
+    if (afterSpace == length || text.charAt(afterSpace) != '(') {
+      // No arguments.  Nothing that may follow an annotation starts with "(", so if the
+      // arguments are present, they must be well-formed.
+      return pos;
+    }
+    pos = JavaLibrary.skipWhitespace(text, afterSpace + 1);
+    if (pos < length && text.charAt(pos) == ')') {
+      return pos + 1;
+    }
+    while (true) {
+      pos = annotationArgument(pos);
+      if (pos == FAIL) {
+        return FAIL;
+      }
+      pos = JavaLibrary.skipWhitespace(text, pos);
+      if (pos == length) {
+        return FAIL;
+      } else if (text.charAt(pos) == ')') {
+        return pos + 1;
+      } else if (text.charAt(pos) == ',') {
+        pos = JavaLibrary.skipWhitespace(text, pos + 1);
+      } else {
+        return FAIL;
+      }
+    }
+  }
+
+  /**
+   * Recognizes an annotation argument, as in {@link
+   * JavaAnnotationsMerger#annotationArgumentRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the argument, or {@link #FAIL}
+   */
+  private int annotationArgument(int start) {
+    int nameEnd = identifier(start);
+    if (nameEnd != FAIL) {
+      int afterSpace = JavaLibrary.skipWhitespace(text, nameEnd);
+      if (afterSpace < length && text.charAt(afterSpace) == '=') {
+        return annotationValue(JavaLibrary.skipWhitespace(text, afterSpace + 1));
+      }
+    }
+    return annotationValue(start);
+  }
+
+  /**
+   * Recognizes an annotation value, which may be an array, as in {@link
+   * JavaAnnotationsMerger#annotationValueRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the value, or {@link #FAIL}
+   */
+  private int annotationValue(int start) {
+    if (start == length || text.charAt(start) != '{') {
+      return annotationValueSingle(start);
+    }
+    int pos = JavaLibrary.skipWhitespace(text, start + 1);
+    if (pos < length && text.charAt(pos) == '}') {
+      return pos + 1;
+    }
+    while (true) {
+      pos = annotationValueSingle(pos);
+      if (pos == FAIL) {
+        return FAIL;
+      }
+      pos = JavaLibrary.skipWhitespace(text, pos);
+      if (pos == length) {
+        return FAIL;
+      } else if (text.charAt(pos) == '}') {
+        return pos + 1;
+      } else if (text.charAt(pos) != ',') {
+        return FAIL;
+      }
+      // A trailing comma is permitted.
+      pos = JavaLibrary.skipWhitespace(text, pos + 1);
+      if (pos < length && text.charAt(pos) == '}') {
+        return pos + 1;
+      }
+    }
+  }
+
+  /**
+   * Recognizes a string, a number, or a dotted name, as in {@link
+   * JavaAnnotationsMerger#annotationValueSingleRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the value, or {@link #FAIL}
+   */
+  private int annotationValueSingle(int start) {
+    if (start == length) {
+      return FAIL;
+    }
+    char c = text.charAt(start);
+    if (c == '"') {
+      return string(start + 1);
+    } else if (c == '-' || c == '+' || c == '.' || isDigit(c)) {
+      return number(start);
+    } else {
+      return dottedIdentifiers(start);
+    }
+  }
+
+  /**
+   * Recognizes the rest of a string literal, as in {@link JavaAnnotationsMerger#stringRegex}.
+   *
+   * @param start the index after the opening quote
+   * @return the index after the closing quote, or {@link #FAIL}
+   */
+  private int string(int start) {
+    int pos = start;
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (c == '"') {
+        return pos + 1;
+      } else if (c == '\\') {
+        // In the regex, an escaped character is ".", which does not match a line terminator.
+        if (pos + 1 == length || JavaLibrary.isLineTerminator(text.charAt(pos + 1))) {
+          return FAIL;
+        }
+        pos += 2;
+      } else {
+        pos++;
+      }
+    }
+    return FAIL;
+  }
+
+  /**
+   * Recognizes an integral or floating-point number, as in {@link
+   * JavaAnnotationsMerger#numberRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the number, or {@link #FAIL}
+   */
+  private int number(int start) {
+    int pos = start;
+    if (text.charAt(pos) == '-' || text.charAt(pos) == '+') {
+      pos++;
+    }
+    int digitsEnd = digits(pos);
+    if (digitsEnd > pos) {
+      // A whole-number part, and an optional fractional part.
+      if (digitsEnd < length && text.charAt(digitsEnd) == '.') {
+        return digits(digitsEnd + 1);
+      }
+      return digitsEnd;
+    }
+    // No whole-number part, so a fractional part with at least one digit.
+    if (pos < length && text.charAt(pos) == '.') {
+      int fractionEnd = digits(pos + 1);
+      if (fractionEnd > pos + 1) {
+        return fractionEnd;
+      }
+    }
+    return FAIL;
+  }
+
+  /**
+   * Returns the index after the ASCII digits that start at the given index.
+   *
+   * @param start the index at which to start
+   * @return the index after the digits, which is {@code start} if there are none
+   */
+  private int digits(int start) {
+    int pos = start;
+    while (pos < length && isDigit(text.charAt(pos))) {
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Returns true if the given character is matched by the regex {@code [0-9]}.
+   *
+   * @param c a character
+   * @return true if the character is an ASCII digit
+   */
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Recognizes a Java identifier, as in {@link JavaAnnotationsMerger#javaIdentifierRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the identifier, or {@link #FAIL}
+   */
+  private int identifier(int start) {
+    if (start == length || !Character.isJavaIdentifierStart(text.codePointAt(start))) {
+      return FAIL;
+    }
+    int pos = start + Character.charCount(text.codePointAt(start));
+    while (pos < length) {
+      int codePoint = text.codePointAt(pos);
+      if (!Character.isJavaIdentifierPart(codePoint)) {
+        break;
+      }
+      pos += Character.charCount(codePoint);
+    }
+    return pos;
+  }
+
+  /**
+   * Recognizes identifiers separated by dots, as in {@link
+   * JavaAnnotationsMerger#javaDottedIdentifiersRegex}.
+   *
+   * @param start the index at which to start
+   * @return the index after the last identifier, or {@link #FAIL}
+   */
+  private int dottedIdentifiers(int start) {
+    int pos = identifier(start);
+    if (pos == FAIL) {
+      return FAIL;
+    }
+    while (true) {
+      int dot = JavaLibrary.skipWhitespace(text, pos);
+      if (dot == length || text.charAt(dot) != '.') {
+        return pos;
+      }
+      int next = identifier(JavaLibrary.skipWhitespace(text, dot + 1));
+      if (next == FAIL) {
+        return pos;
+      }
+      pos = next;
+    }
+  }
+
+  /**
+   * Returns true if the rest of the text, starting at the given index, is a type, possibly with
+   * type arguments, followed by {@code this} and an optional comma, as in {@link
+   * JavaAnnotationsMerger#thisRegex}.
+   *
+   * @param start the index at which to start
+   * @return true if the rest of the text is a type followed by {@code this}
+   */
+  private boolean isTypeAndThis(int start) {
+    int pos = dottedIdentifiers(start);
+    if (pos == FAIL) {
+      return false;
+    }
+    if (pos < length && text.charAt(pos) == '<') {
+      pos = typeArguments(pos + 1);
+      if (pos == FAIL) {
+        return false;
+      }
+    }
+    int thisStart = JavaLibrary.skipWhitespace(text, pos);
+    if (thisStart == pos || !text.startsWith("this", thisStart)) {
+      return false;
+    }
+    pos = thisStart + "this".length();
+    if (pos == length) {
+      return true;
+    }
+    int comma = JavaLibrary.skipWhitespace(text, pos);
+    return comma == length - 1 && text.charAt(comma) == ',';
+  }
+
+  /**
+   * Recognizes type arguments, after the {@code <}, as in {@link
+   * JavaAnnotationsMerger#parameterizedTypeRegex}. Each type argument is a simple name preceded by
+   * annotations and modifiers.
+   *
+   * @param start the index after the {@code <}
+   * @return the index after the {@code >}, or {@link #FAIL}
+   */
+  private int typeArguments(int start) {
+    int pos = JavaLibrary.skipWhitespace(text, start);
+    while (true) {
+      pos = typeArgument(pos);
+      if (pos == FAIL) {
+        return FAIL;
+      }
+      pos = JavaLibrary.skipWhitespace(text, pos);
+      if (pos == length) {
+        return FAIL;
+      } else if (text.charAt(pos) == '>') {
+        return pos + 1;
+      } else if (text.charAt(pos) == ',') {
+        pos = JavaLibrary.skipWhitespace(text, pos + 1);
+      } else {
+        return FAIL;
+      }
+    }
+  }
+
+  /**
+   * Recognizes one type argument: zero or more annotations and modifiers, each followed by
+   * whitespace, and then a simple name.
+   *
+   * @param start the index at which to start
+   * @return the index after the simple name, or {@link #FAIL}
+   */
+  private int typeArgument(int start) {
+    int pos = start;
+    while (true) {
+      if (pos < length && text.charAt(pos) == '@') {
+        pos = annotationOrModifierAndSpace(pos);
+        if (pos == FAIL) {
+          return FAIL;
+        }
+        continue;
+      }
+      int end = identifier(pos);
+      if (end == FAIL) {
+        return FAIL;
+      }
+      // A modifier keyword is the simple name, unless whitespace and something other than the
+      // end of the type argument follow it.
+      int afterSpace = JavaLibrary.skipWhitespace(text, end);
+      if (afterSpace == end
+          || afterSpace == length
+          || text.charAt(afterSpace) == ','
+          || text.charAt(afterSpace) == '>'
+          || !modifiers.contains(text.substring(pos, end))) {
+        return end;
+      }
+      pos = afterSpace;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package org.plumelib.merging;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Reads the contents of files in a git repository's history. All the reads share one {@code git
+ * cat-file --batch} process, so a read costs a round trip over a pipe rather than the start of a
+ * process.
+ */
+final class GitBlobReader implements AutoCloseable {
+
+  /** The {@code git cat-file --batch} process. */
+  private final Process process;
+
+  /** The standard input of the process, to which object names are written. */
+  private final OutputStream requests;
+
+  /** The standard output of the process, from which objects are read. */
+  private final InputStream responses;
+
+  /**
+   * Creates a GitBlobReader.
+   *
+   * @param repo a directory in a git repository
+   * @throws IOException if {@code git} cannot be run
+   */
+  GitBlobReader(Path repo) throws IOException {
+    ProcessBuilder pb = new ProcessBuilder("git", "-C", repo.toString(), "cat-file", "--batch");
+    pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+    process = pb.start();
+    requests = process.getOutputStream();
+    responses = new BufferedInputStream(process.getInputStream());
+  }
+
+  /**
+   * Returns the contents of the given file at the given commit, or null if the commit has no such
+   * file.
+   *
+   * @param commit a commit
+   * @param path the path of a file, relative to the top of the repository
+   * @return the contents of the file, or null if there is no such file
+   * @throws IOException if there is trouble communicating with {@code git}
+   */
+  byte @Nullable [] read(String commit, String path) throws IOException {
+    if (path.indexOf('\n') != -1) {
+      // `git cat-file --batch` reads one object name per line.
+      return null;
+    }
+    requests.write((commit + ":" + path + "\n").getBytes(StandardCharsets.UTF_8));
+    requests.flush();
+
+    // The header is "<sha> <type> <size>", or "<name> missing" if there is no such object.
+    String[] header = readLine().split(" ", -1);
+    if (header.length != 3) {
+      return null;
+    }
+    int size;
+    try {
+      size = Integer.parseInt(header[2]);
+    } catch (NumberFormatException e) {
+      throw new IOException("unexpected output from git cat-file: " + String.join(" ", header), e);
+    }
+    byte[] contents = responses.readNBytes(size);
+    if (contents.length != size || responses.read() != '\n') {
+      throw new IOException("unexpected end of output from git cat-file");
+    }
+    return header[1].equals("blob") ? contents : null;
+  }
+
+  /**
+   * Reads a line of the output of {@code git cat-file}.
+   *
+   * @return the line, without its line terminator
+   * @throws IOException if the output ends before a line terminator
+   */
+  private String readLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    for (int b = responses.read(); b != '\n'; b = responses.read()) {
+      if (b == -1) {
+        throw new IOException("unexpected end of output from git cat-file");
+      }
+      line.write(b);
+    }
+    return line.toString(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    requests.close();
+    try {
+      process.waitFor();
+    } catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -62,10 +62,13 @@ public final class GitLibrary {
       System.out.printf("About to call: %s%n", pb.command());
     }
     int gitMergeFileExitCode;
+    MergeEvents.SubprocessEvent event = new MergeEvents.SubprocessEvent();
     try {
       Process p = pb.start();
       gitMergeFileExitCode = p.waitFor();
+      event.finish(pb.command(), gitMergeFileExitCode);
     } catch (IOException | InterruptedException e) {
+      event.finish(pb.command(), -1);
       Main.exitErroneously(
           String.format(
               "problem in: git merge-file %s %s %s", leftFileName, baseFileName, rightFileName));
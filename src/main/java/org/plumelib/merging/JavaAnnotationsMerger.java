@@ -1,7 +1,5 @@
 package org.plumelib.merging;
 
-import com.sun.source.tree.ClassTree;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -10,18 +8,15 @@ import name.fraser.neil.plaintext.diff_match_patch;
 import name.fraser.neil.plaintext.diff_match_patch.Diff;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.regex.qual.Regex;
-import org.plumelib.javacparse.JavacParse;
-import org.plumelib.merging.fileformat.ConflictedFile;
 import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.StepBudget;
 import org.plumelib.util.CollectionsP;
-import org.plumelib.util.CollectionsP.Replacement;
-import org.plumelib.util.StringsP;
 
 /**
  * This is a merger for Java files. It handles conflicts where the edits differ only in adding
  * annotations or modifiers. It merges such conflicts, accepting the annotations as additions.
  */
-public class JavaAnnotationsMerger extends Merger {
+public class JavaAnnotationsMerger extends PerConflictMerger {
 
   /**
    * Creates a JavaAnnotationsMerger.
@@ -42,43 +37,24 @@ public class JavaAnnotationsMerger extends Merger {
   }
 
   @Override
-  @Nullable ConflictedFile resolveConflicts(ConflictedFile cf, MergeState mergeState) {
-
-    List<Replacement<String>> replacements = new ArrayList<>();
-
-    for (MergeConflict mc : cf.mergeConflicts()) {
-      String leftLines = StringsP.join("", mc.left());
-      String rightLines = StringsP.join("", mc.right());
-      // If left or right introduces a comment and an annotation, that is OK.  But if one side
-      // introduces only a comment, then it must differ from the other side (because it's a
-      // MergeConflict), and we don't want to merge it as an annotation.
-      if (isComment(leftLines) || isComment(rightLines)) {
-        continue;
-      }
-      if (verbose) {
-        System.err.printf("calling diff_main([[[%s]]], [[[%s]]])%n", leftLines, rightLines);
-      }
-      List<Diff> diffs = dmp.diff_main(leftLines, rightLines);
-      if (verbose) {
-        System.err.printf("called diff_main => %s%n%n", diffs);
-      }
-      String merged = mergedWithAnnotations(diffs);
-      if (merged != null) {
-        replacements.add(
-            Replacement.of(mc.start(), mc.end() - 1, Collections.singletonList(merged)));
-      }
-    }
-
-    if (replacements.isEmpty()) {
+  @Nullable List<String> resolveConflict(MergeConflict mc, StepBudget budget) {
+    String leftLines = mc.leftJoined();
+    String rightLines = mc.rightJoined();
+    // If left or right introduces a comment and an annotation, that is OK.  But if one side
+    // introduces only a comment, then it must differ from the other side (because it's a
+    // MergeConflict), and we don't want to merge it as an annotation.
+    if (isComment(leftLines, budget) || isComment(rightLines, budget)) {
       return null;
     }
-
     if (verbose) {
-      System.out.printf("JavaAnnotationsMerger: replacements = %s%n", replacements);
+      System.err.printf("calling diff_main([[[%s]]], [[[%s]]])%n", leftLines, rightLines);
+    }
+    List<Diff> diffs = dmp.diff_main(leftLines, rightLines);
+    if (verbose) {
+      System.err.printf("called diff_main => %s%n%n", diffs);
     }
-    List<String> newLines = CollectionsP.replace(cf.lines(), replacements);
-    ConflictedFile result = new ConflictedFile(newLines, cf.path);
-    return result;
+    String merged = mergedWithAnnotations(diffs, budget);
+    return (merged == null ? null : Collections.singletonList(merged));
   }
 
   /**
@@ -86,15 +62,16 @@ public class JavaAnnotationsMerger extends Merger {
    * all. Otherwise, return null.
    *
    * @param diffs the differences
+   * @param budget the budget for regular-expression matching
    * @return the merged differences or null
    */
-  private static @Nullable String mergedWithAnnotations(List<Diff> diffs) {
+  private static @Nullable String mergedWithAnnotations(List<Diff> diffs, StepBudget budget) {
     StringBuilder result = new StringBuilder();
     for (Diff diff : diffs) {
       switch (diff.operation) {
         // DELETE means it was inserted in the right edit.
         case INSERT, DELETE -> {
-          if (isJavaAnnotations(diff.text)) {
+          if (isJavaAnnotations(diff.text, true, budget)) {
             result.append(diff.text);
           } else {
             return null;
@@ -115,11 +92,24 @@ public class JavaAnnotationsMerger extends Merger {
    * @return true if the given text is a Java comment, plus optional comments and whitespace
    */
   protected static boolean isComment(String text) {
+    return isComment(text, StepBudget.unlimited());
+  }
+
+  /**
+   * Returns true if the given text consists of at least one Java comment, and contains only
+   * whitespace and Java comments.
+   *
+   * @param text a string
+   * @param budget the budget for regular-expression matching
+   * @return true if the given text is a Java comment, plus optional comments and whitespace
+   * @throws StepBudget.ExceededException if matching exceeds the budget
+   */
+  static boolean isComment(String text, StepBudget budget) {
     text = text.strip();
     if (text.isEmpty()) {
       return false;
     }
-    text = commentPattern.matcher(text).replaceAll(" ");
+    text = commentPattern.matcher(budget.charge(text)).replaceAll(" ");
     text = text.strip();
     return text.isEmpty();
   }
@@ -135,33 +125,56 @@ public class JavaAnnotationsMerger extends Merger {
    */
   // "protected" to permit tests to access it.
   protected static boolean isJavaAnnotations(String text) {
+    return isJavaAnnotations(text, true);
+  }
+
+  /**
+   * Returns true if the given text is zero or more Java annotations or modifiers, as {@link
+   * #isJavaAnnotations(String)} does.
+   *
+   * <p>The regexes, which {@link AnnotationsRecognizer} implements, are cheaper than the parser,
+   * even though the parser reuses its javac context. Tests pass false for {@code useRegex} to check
+   * that parsing and the regexes agree, and benchmarks pass false to measure the parser.
+   *
+   * @param text a string
+   * @param useRegex if false, always use the parser, even for text that a regex accepts
+   * @return true if the given text is one or more Java annotations or modifiers
+   */
+  static boolean isJavaAnnotations(String text, boolean useRegex) {
+    return isJavaAnnotations(text, useRegex, StepBudget.unlimited());
+  }
+
+  /**
+   * Returns true if the given text is zero or more Java annotations or modifiers, as {@link
+   * #isJavaAnnotations(String, boolean)} does.
+   *
+   * @param text a string
+   * @param useRegex if false, always use the parser, even for text that a regex accepts
+   * @param budget the budget for regular-expression matching
+   * @return true if the given text is one or more Java annotations or modifiers
+   * @throws StepBudget.ExceededException if matching exceeds the budget
+   */
+  static boolean isJavaAnnotations(String text, boolean useRegex, StepBudget budget) {
     // For use by diagnostics that are currently commented out.
     // String origText = text;
 
-    text = commentPattern.matcher(text).replaceAll(" ");
+    text = commentPattern.matcher(budget.charge(text)).replaceAll(" ");
     text = text.strip();
     if (text.isEmpty()) {
       return true;
     }
 
-    // At one time, the parser calls were very expensive, and text matching via regexes was cheaper.
-    // I have not re-measured recently.
-
-    // Set to false only to double-check that parsing and regexes give the same result (by running
-    // the unit tests).
-    final boolean useRegex = true;
-
     String declText;
-    boolean startsWithAnnotation = annotationStartPattern.matcher(text).find();
+    boolean startsWithAnnotation = annotationStartPattern.matcher(budget.charge(text)).find();
     // The test for " this" must precede the test for "@", because both can be true.
     if (text.endsWith(" this") || text.endsWith(" this,")) {
-      if (useRegex && thisPattern.matcher(text).matches()) {
+      if (useRegex && AnnotationsRecognizer.isReceiverParameter(text)) {
         return true;
       } else {
         declText = text.substring(0, text.length() - 5) + " " + "varname";
       }
     } else if (text.startsWith("extends ")) {
-      if (useRegex && extendsPattern.matcher(text).matches()) {
+      if (useRegex && AnnotationsRecognizer.isExtendsObject(text)) {
         return true;
       } else {
         declText = text.substring(8) + " varname";
@@ -171,7 +184,7 @@ public class JavaAnnotationsMerger extends Merger {
     } else if (text.endsWith(";")) {
       return false;
     } else if (startsWithAnnotation) {
-      if (useRegex && annotationsPattern.matcher(text).matches()) {
+      if (useRegex && AnnotationsRecognizer.isAnnotations(text)) {
         return true;
       } else {
         declText = text + " String varname";
@@ -184,29 +197,27 @@ public class JavaAnnotationsMerger extends Merger {
     // Use this diagnostic to determine which strings are still getting parsed.
     // Perhaps write regular expressions for them to improve performance.
     // System.out.printf("isJavaAnnotations(%s) about to parse: %s%n", origText, classText);
-    ClassTree mergedCT = JavacParse.parseTypeDeclaration(classText).tree();
-
-    if (mergedCT == null) {
-      return false;
+    ReusableJavacParser parser = ReusableJavacParser.forCurrentThread();
+    if (!startsWithAnnotation) {
+      return parser.parsesAsClasses(classText)[0];
     }
 
-    if (startsWithAnnotation) {
-      String classTextAnnoOnly = "class MyClass {" + text + ";" + "}";
-      ClassTree annoOnlyCT = JavacParse.parseTypeDeclaration(classTextAnnoOnly).tree();
-      if (annoOnlyCT != null) {
-        // The argument parses all on its own, so it is not an annotation (despite the fact that it
-        // parses when followed by " String varname;").
-        return false;
-      }
-    }
-
-    return true;
+    // Both declarations are parsed in one call.
+    String classTextAnnoOnly = "class MyClass {" + text + ";" + "}";
+    boolean[] parses = parser.parsesAsClasses(classText, classTextAnnoOnly);
+    // If the argument parses all on its own, it is not an annotation (despite the fact that it
+    // parses when followed by " String varname;").
+    return parses[0] && !parses[1];
   }
 
   // //////////////////////////////////////////////////////////////////////
   // Regular expressions
   //
 
+  // isJavaAnnotations does not match annotationsPattern, thisPattern, or extendsPattern, which
+  // backtrack.  Instead, it calls AnnotationsRecognizer, which recognizes the same languages in
+  // linear time.  These regexes specify the recognizer, and the tests compare the two.
+
   /**
    * Groups the regex in a non-capturing group.
    *
@@ -2,9 +2,11 @@ package org.plumelib.merging;
 
 import com.google.googlejavaformat.java.FormatterException;
 import com.google.googlejavaformat.java.RemoveUnusedImports;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -23,9 +25,11 @@ import org.plumelib.merging.fileformat.ConflictedFile.CommonLines;
 import org.plumelib.merging.fileformat.ConflictedFile.ConflictElement;
 import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
 import org.plumelib.merging.fileformat.Diff3File;
+import org.plumelib.merging.fileformat.Diff3File.Diff3Command;
 import org.plumelib.merging.fileformat.Diff3File.Diff3Hunk;
 import org.plumelib.merging.fileformat.Diff3File.Diff3HunkSection;
 import org.plumelib.merging.fileformat.Diff3File.Diff3ParseException;
+import org.plumelib.merging.fileformat.LineIndex;
 import org.plumelib.util.CollectionsP;
 import org.plumelib.util.FilesP;
 import org.plumelib.util.IPair;
@@ -37,13 +41,31 @@ import org.plumelib.util.StringsP;
  */
 public class JavaImportsMerger extends Merger {
 
+  /**
+   * If true, remove unused imports with google-java-format, which parses the file with javac.
+   * Otherwise, use {@link UnusedImports}, which is much faster.
+   */
+  private final boolean gjfUnusedImports;
+
   /**
    * Creates a JavaImportsMerger.
    *
    * @param verbose if true, output diagnostic information
    */
   public JavaImportsMerger(boolean verbose) {
+    this(verbose, false);
+  }
+
+  /**
+   * Creates a JavaImportsMerger.
+   *
+   * @param verbose if true, output diagnostic information
+   * @param gjfUnusedImports if true, remove unused imports with google-java-format rather than with
+   *     {@link UnusedImports}
+   */
+  public JavaImportsMerger(boolean verbose, boolean gjfUnusedImports) {
     super(verbose, true);
+    this.gjfUnusedImports = gjfUnusedImports;
   }
 
   @Override
@@ -68,11 +90,30 @@ public class JavaImportsMerger extends Merger {
     // and added `import d.e.Foo` -- then don't re-introduce the removed one.
 
     // This doesn't use `cf.conflictedFile()` because we are also interested in changes made by
-    // clean merges.
-    List<String> forbiddenImports = new ArrayList<>();
-    String baseContents = String.join("", mergeState.baseFileLines());
-    String leftContents = String.join("", mergeState.leftFileLines());
-    String rightContents = String.join("", mergeState.rightFileLines());
+    // clean merges.  Imports appear only in the header of a file (before its first type
+    // declaration), so only the headers are examined; the cost does not depend on the size of the
+    // rest of the file.
+    Set<String> forbiddenImports = new HashSet<>();
+    List<String> baseHeader;
+    List<String> leftHeader;
+    List<String> rightHeader;
+    try {
+      baseHeader = JavaLibrary.headerLines(mergeState.baseFileLines());
+      leftHeader = JavaLibrary.headerLines(mergeState.leftFileLines());
+      rightHeader = JavaLibrary.headerLines(mergeState.rightFileLines());
+    } catch (UncheckedIOException e) {
+      // Lines of the left, base, and right files are copied into the merged file, so they must be
+      // valid in the charset in which the merged file is written back.
+      if (verbose) {
+        System.out.printf(
+            "An input file is not in the charset of %s: %s%n",
+            mergeState.mergedPath, e.getMessage());
+      }
+      return null;
+    }
+    String baseContents = LineIndex.join(baseHeader);
+    String leftContents = LineIndex.join(leftHeader);
+    String rightContents = LineIndex.join(rightHeader);
     if (verbose) {
       System.out.printf("mergeState=%s%n", mergeState);
     }
@@ -95,10 +136,13 @@ public class JavaImportsMerger extends Merger {
     // that import.
 
     // Run diff3 to obtain all the differences, even the ones that `git merge-file` merged.
+    // The headers are prefixes of the files, so line numbers in the diff3 output are the same as
+    // for the whole files.
     Diff3File diff3file;
+    MergeStats.Phase diff3 = MergeStats.begin("diff3");
     try {
-      diff3file =
-          Diff3File.from3paths(mergeState.leftPath, mergeState.basePath, mergeState.rightPath);
+      diff3file = Diff3File.from3texts(leftHeader, baseHeader, rightHeader);
+      diff3.end();
     } catch (Diff3ParseException e) {
       Main.exitErroneously(e.getMessage());
       throw new Error("unreachable");
@@ -124,9 +168,9 @@ public class JavaImportsMerger extends Merger {
     }
     if (!forbiddenImports.isEmpty()) {
       if (verbose) {
-        System.out.printf("baseContents = %s%nend of baseContents.%n", baseContents);
-        System.out.printf("leftContents = %s%nend of leftContents.%n", leftContents);
-        System.out.printf("rightContents = %s%nend of rightContents.%n", rightContents);
+        System.out.printf("base header = %s%nend of base header.%n", baseContents);
+        System.out.printf("left header = %s%nend of left header.%n", leftContents);
+        System.out.printf("right header = %s%nend of right header.%n", rightContents);
       }
       mergedFileContentsLines =
           CollectionsP.filter(
@@ -142,45 +186,53 @@ public class JavaImportsMerger extends Merger {
 
     String mergedFileContents = String.join("", mergedFileContentsLines);
     if (verbose) {
-      System.out.println("input to gjf = " + mergedFileContents);
+      System.out.println("input to unused-import removal = " + mergedFileContents);
     }
 
-    String gjfFileContents;
-    try {
-      gjfFileContents = RemoveUnusedImports.removeUnusedImports(mergedFileContents);
-    } catch (FormatterException e) {
-      if (verbose) {
-        System.out.printf("gjf threw FormatterException: %s%n", e.getMessage());
+    String withoutUnusedImports;
+    MergeStats.Phase unusedImports =
+        MergeStats.begin(gjfUnusedImports ? "google-java-format" : "UnusedImports");
+    if (gjfUnusedImports) {
+      try {
+        withoutUnusedImports = RemoveUnusedImports.removeUnusedImports(mergedFileContents);
+      } catch (FormatterException e) {
+        if (verbose) {
+          System.out.printf("gjf threw FormatterException: %s%n", e.getMessage());
+        }
+        withoutUnusedImports = mergedFileContents;
       }
-      gjfFileContents = mergedFileContents;
+    } else {
+      withoutUnusedImports = UnusedImports.removeUnusedImports(mergedFileContents);
     }
+    unusedImports.end();
 
     return new ConflictedFile(
-        gjfFileContents, false, Path.of("google-java-format on merged version of " + cf.path));
+        withoutUnusedImports, false, Path.of("unused imports removed from merged " + cf.path));
   }
 
   /**
-   * Returns true if the given merge conflict is not an import block.
+   * Returns 0, because the file that {@link #resolveConflicts} returns is made from common lines
+   * only.
    *
-   * @param mc a merge conflict
-   * @return true if the argument has non-{@code import} lines
+   * @param newCf a conflicted file that {@link #resolveConflicts} returned
+   * @return 0
    */
-  static boolean isOutsideImports(MergeConflict mc) {
-    List<String> base = mc.base();
-    return !(isImportBlock(mc.left())
-        && isImportBlock(mc.right())
-        && (base == null || isImportBlock(base)));
+  @Override
+  int numRemainingConflicts(ConflictedFile newCf) {
+    return 0;
   }
 
   /**
-   * Given some lines of code, return true if they can all be part of an import block: every line
-   * satisfies {@link JavaLibrary#isImportBlockLine}.
+   * Returns true if the given merge conflict is not an import block.
    *
-   * @param lines some lines of code
-   * @return true if the argument is an import block
+   * @param mc a merge conflict
+   * @return true if the argument has non-{@code import} lines
    */
-  static boolean isImportBlock(List<String> lines) {
-    return CollectionsP.allMatch(lines, JavaLibrary::isImportBlockLine);
+  static boolean isOutsideImports(MergeConflict mc) {
+    LineKinds baseKinds = mc.baseKinds();
+    return !(mc.leftKinds().isImportBlock()
+        && mc.rightKinds().isImportBlock()
+        && (baseKinds == null || baseKinds.isImportBlock()));
   }
 
   /**
@@ -189,7 +241,10 @@ public class JavaImportsMerger extends Merger {
    * <p>This results in a file that contains (nearly) every import from both parents. A subsequent
    * pass will remove the unnecessary ones.
    *
-   * @param fileLines the lines of the file
+   * <p>Each diff3 hunk is mapped to an index in {@code fileLines}, before which its imports are
+   * inserted. Then the result is built in one pass over {@code fileLines}.
+   *
+   * @param fileLines the lines of the file; is not side-effected
    * @param diff3file the diffs
    * @return the lines of the file, after inserting more import statements
    */
@@ -216,8 +271,7 @@ public class JavaImportsMerger extends Merger {
       System.out.printf("insertRemovedImports: diff3file=%s%n", diff3file);
     }
 
-    // TODO: Carefully document the value of this variable.
-    int startLineOffset = 0;
+    List<LineInsertion> insertions = new ArrayList<>();
     for (Diff3Hunk h : diff3file.contents()) {
       if (verbose) {
         System.out.printf("h=%s%n", h);
@@ -235,13 +289,6 @@ public class JavaImportsMerger extends Merger {
 
       if (importStatementsThatAreRemoved.isEmpty()) {
         // Merging this hunk did not remove any import statements.
-        if (verbose) {
-          System.out.printf(
-              "no import statements removed, old Startlineoffset=%d,"
-                  + " h.lineChangeSize()=%d, new startlineoffset=%d%n",
-              startLineOffset, h.lineChangeSize(), startLineOffset + h.lineChangeSize());
-        }
-        startLineOffset += h.lineChangeSize();
         continue;
       }
       if (verbose) {
@@ -249,20 +296,25 @@ public class JavaImportsMerger extends Merger {
       }
 
       // The 3 sections are (in order) left, base, right.
-      // We use `edit` only to determine where to insert the import statements (and how to adjust
-      // the startLineOffset).
+      // We use `edit` only to determine where to insert the import statements.  Its line numbers
+      // are in the file that it edits; `other` is the section of the other parent.
       Diff3HunkSection edit;
+      Diff3HunkSection other;
       switch (h.kind()) {
-        case ONE_DIFFERS -> edit = h.section1();
-        case THREE_DIFFERS -> edit = h.section3();
+        case ONE_DIFFERS -> {
+          edit = h.section1();
+          other = h.section3();
+        }
+        case THREE_DIFFERS -> {
+          edit = h.section3();
+          other = h.section1();
+        }
         case TWO_DIFFERS -> {
-          // no change to startLineOffset;
           continue;
         }
         case THREE_WAY -> {
           // A 3-way conflict must be from an import statement, but each such conflict has already
           // been solved by being unioned, above.
-          startLineOffset += h.lineChangeSize();
           continue;
         }
         default -> throw new Error("Unhandled kind: " + h.kind());
@@ -294,27 +346,24 @@ public class JavaImportsMerger extends Merger {
           throw new Error("Unhandled kind: " + edit.command().kind());
         }
       }
+      // The merged file has the other parent's changes before this hunk, but `startLine` does not
+      // account for them.  Their net size is the distance between where the hunk starts in the
+      // other parent and where it starts in the base.
+      int otherGrowth = linesBefore(other.command()) - linesBefore(h.section2().command());
       if (verbose) {
         System.out.printf(
-            "from case %s: old startLine = %s, startLineOffset = %s, new startLine = %s%n",
-            edit.command().kind(), startLine, startLineOffset, startLine + startLineOffset);
+            "from case %s: startLine in edited file = %s, in merged file = %s%n",
+            edit.command().kind(), startLine, startLine + otherGrowth);
       }
-      startLine += startLineOffset;
-      if (startLine < 0 || startLine >= fileLines.size()) {
+      startLine += otherGrowth;
+      if (startLine < 1 || startLine > fileLines.size() + 1) {
         System.out.printf("problem in insertRemovedImports.%n");
         System.out.printf("diff3file = %s%n", diff3file);
         System.out.printf("startLine = %s%n", startLine);
-        System.out.printf("startLineOffset = %s%n", startLineOffset);
         System.out.printf("hunk = %s%n", h);
         System.out.printf("edit = %s%n", edit);
         System.out.printf("fileLines = %s%n", fileLines);
       }
-      if (verbose) {
-        System.out.printf(
-            "Before inserting import lines at line %d (startLineOffset=%d): %s%n",
-            startLine, startLineOffset, fileLines);
-      }
-      // TODO: I probably need to adjust lastImportLineInFile based on previous insertions.
       if (firstImportLineInFile != -1 && lastImportLineInFile != -1) {
         startLine = Math.max(startLine, firstImportLineInFile);
         startLine = Math.min(startLine, lastImportLineInFile + 1);
@@ -322,22 +371,72 @@ public class JavaImportsMerger extends Merger {
           System.out.printf("Adjusted startLine: %d%n", startLine);
         }
       }
-      fileLines.addAll(startLine - 1, importStatementsThatAreRemoved);
-      // TODO: Also adjust startLineOffset to account for the inserted lines?
-      startLineOffset += h.lineChangeSize();
-      if (verbose) {
-        System.out.printf(
-            "After inserting import lines at line %d (index %d)"
-                + " (lineChangeSize=%d, startLineOffset=%d): %s%n",
-            startLine, startLine - 1, h.lineChangeSize(), startLineOffset, fileLines);
-      }
+      insertions.add(new LineInsertion(startLine - 1, importStatementsThatAreRemoved));
     }
 
+    List<String> result = insertLines(fileLines, insertions);
+
     if (verbose) {
-      System.out.printf("insertRemovedImports returning: %s%n", fileLines);
+      System.out.printf("insertRemovedImports returning: %s%n", result);
     }
 
-    return fileLines;
+    return result;
+  }
+
+  /**
+   * Returns the number of lines of its file that precede the lines that the given command edits.
+   *
+   * @param command a diff3 command
+   * @return the number of lines that precede the command's lines
+   */
+  private static int linesBefore(Diff3Command command) {
+    return switch (command.kind()) {
+      // "5a" appends after line 5.
+      case APPEND -> command.startLine();
+      // "5,7c" changes lines 5 through 7.
+      case CHANGE -> command.startLine() - 1;
+    };
+  }
+
+  /**
+   * Lines to insert into a list of lines.
+   *
+   * @param index the index in the original list before which to insert the lines; the length of
+   *     the original list means at the end
+   * @param lines the lines to insert
+   */
+  static record LineInsertion(int index, List<String> lines) {}
+
+  /**
+   * Returns a new list that consists of the given lines, with the given insertions. Each index is
+   * relative to {@code lines}, not to the result of earlier insertions. Insertions at the same
+   * index appear in the result in the order in which they are given.
+   *
+   * @param lines the original lines; is not side-effected
+   * @param insertions the lines to insert; is not side-effected
+   * @return the lines, with the insertions
+   */
+  static List<String> insertLines(List<String> lines, List<LineInsertion> insertions) {
+    List<LineInsertion> sorted = new ArrayList<>(insertions);
+    // The sort is stable, and is linear if the insertions are already in order.
+    sorted.sort(Comparator.comparingInt(LineInsertion::index));
+    int size = lines.size();
+    for (LineInsertion insertion : sorted) {
+      size += insertion.lines().size();
+    }
+    List<String> result = new ArrayList<>(size);
+    int next = 0;
+    for (LineInsertion insertion : sorted) {
+      int index = insertion.index();
+      if (index < next || index > lines.size()) {
+        throw new IndexOutOfBoundsException("Index " + index + ", size " + lines.size());
+      }
+      result.addAll(lines.subList(next, index));
+      result.addAll(insertion.lines());
+      next = index;
+    }
+    result.addAll(lines.subList(next, lines.size()));
+    return result;
   }
 
   /**
@@ -361,8 +460,8 @@ public class JavaImportsMerger extends Merger {
       return new CommonLines(rightLines);
     }
 
-    List<String> leftComments = JavaLibrary.commentLines(leftLines);
-    assert leftComments.equals(JavaLibrary.commentLines(rightLines));
+    List<String> leftComments = mc.leftCommentLines();
+    assert mc.sameCommentLines();
 
     List<String> result = new ArrayList<>();
 
@@ -1,10 +1,19 @@
 package org.plumelib.merging;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 import org.plumelib.util.CollectionsP;
 
-/** This class contains static methods related to Java code. */
+/**
+ * This class contains static methods related to Java code.
+ *
+ * <p>The line predicates are hand-written scanners that allocate nothing, because they run on every
+ * line of every file that the import merger examines. Each one is documented with the regular
+ * expression that it is equivalent to. In those regular expressions, {@code \s} matches {@code [
+ * \t\n\x0B\f\r]}; {@code .} matches any character except a line terminator (LF, CR, U+0085, U+2028,
+ * or U+2029); and {@code \R} matches CR LF or any one of LF, VT, FF, CR, U+0085, U+2028, and
+ * U+2029. JavaLibraryTest checks the equivalence.
+ */
 public final class JavaLibrary {
 
   /** Do not instantiate. */
@@ -12,33 +21,151 @@ public final class JavaLibrary {
     throw new Error("do not instantiate");
   }
 
-  /** A pattern that matches a string consisting only of whitespace. */
-  private static Pattern whitespacePattern = Pattern.compile("\\s*\\R*");
+  /**
+   * Returns true if the given character is matched by the regex {@code \s}.
+   *
+   * @param c a character
+   * @return true if the character is whitespace
+   */
+  static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * Returns true if the given character is a line terminator, which the regex {@code .} does not
+   * match.
+   *
+   * @param c a character
+   * @return true if the character is a line terminator
+   */
+  static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Returns true if the given character is matched by the regex {@code \R} on its own.
+   *
+   * @param c a character
+   * @return true if the character is a linebreak
+   */
+  private static boolean isLinebreak(char c) {
+    return isLineTerminator(c) || c == '\u000B' || c == '\f';
+  }
+
+  /**
+   * Returns the index of the first non-whitespace character of {@code line} that is at or after
+   * {@code start}.
+   *
+   * @param line a string
+   * @param start the index at which to start
+   * @return the index of the first non-whitespace character at or after {@code start}, or the
+   *     length of the string
+   */
+  static int skipWhitespace(String line, int start) {
+    int length = line.length();
+    int i = start;
+    while (i < length && isWhitespace(line.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
 
   /**
-   * Returns true if the given string is a blank line.
+   * Returns true if {@code line.substring(start, end)} contains no line terminator; that is, if the
+   * regex {@code .*} matches it.
+   *
+   * @param line a string
+   * @param start the start of the region, inclusive
+   * @param end the end of the region, exclusive
+   * @return true if the region contains no line terminator
+   */
+  private static boolean hasNoLineTerminator(String line, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (isLineTerminator(line.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the given string is a blank line. Equivalent to matching the regex {@code
+   * \s*\R*}.
    *
    * @param line a string
    * @return true if the given string is a blank line
    */
   public static boolean isBlankLine(String line) {
-    return whitespacePattern.matcher(line).matches();
+    return isBlankLine(line, 0);
   }
 
   /**
-   * A pattern that matches a comment line. Because of use of {@code matches()}, no regex anchoring
-   * is needed.
+   * Returns true if {@code line.substring(start)} is a blank line.
+   *
+   * @param line a string
+   * @param start the index at which the region starts
+   * @return true if the region is a blank line
    */
-  private static Pattern commentLinePattern = Pattern.compile("\\s*(//.*|/\\*.*\\*/\\s*)\\R?");
+  private static boolean isBlankLine(String line, int start) {
+    int length = line.length();
+    for (int i = skipWhitespace(line, start); i < length; i++) {
+      if (!isLinebreak(line.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
 
   /**
-   * Returns true if the given line is a comment line.
+   * Returns true if the given line is a comment line. Equivalent to matching the regex <code>
+   * \s*(//.*|/\*.*\*&#47;\s*)\R?</code>.
    *
    * @param line a line of code, which may be terminated by a line separator
    * @return true if the line is a comment line
    */
   public static boolean isCommentLine(String line) {
-    return commentLinePattern.matcher(line).matches();
+    return isCommentLine(line, 0);
+  }
+
+  /**
+   * Returns true if {@code line.substring(start)} is a comment line.
+   *
+   * @param line a line of code, which may be terminated by a line separator
+   * @param start the index at which the region starts
+   * @return true if the region is a comment line
+   */
+  private static boolean isCommentLine(String line, int start) {
+    int length = line.length();
+    int i = skipWhitespace(line, start);
+    if (i + 1 >= length || line.charAt(i) != '/') {
+      return false;
+    }
+    char c = line.charAt(i + 1);
+    if (c == '/') {
+      // "//.*\R?": the first line terminator, if any, must be the line's final linebreak.
+      for (int j = i + 2; j < length; j++) {
+        if (isLineTerminator(line.charAt(j))) {
+          return j == length - 1 || (j == length - 2 && line.startsWith("\r\n", j));
+        }
+      }
+      return true;
+    } else if (c == '*') {
+      // "/\*.*\*/\s*\R?": only whitespace follows the comment's "*/", so it is the last "*/" in the
+      // line.
+      int end = line.lastIndexOf("*/");
+      if (end < i + 2 || !hasNoLineTerminator(line, i + 2, end)) {
+        return false;
+      }
+      for (int j = end + 2; j < length; j++) {
+        char d = line.charAt(j);
+        if (!isWhitespace(d) && !(j == length - 1 && isLinebreak(d))) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      return false;
+    }
   }
 
   /**
@@ -52,19 +179,50 @@ public final class JavaLibrary {
   }
 
   /**
-   * A pattern that matches a package line in Java code. Does not match package lines with a
-   * trailing comment.
+   * Returns true if the given line is a statement that starts with the given keyword. Equivalent to
+   * matching the regex {@code \s*KEYWORD\s.*;\R?}. Does not match a statement with a trailing
+   * comment.
+   *
+   * @param line a line of Java code
+   * @param keyword the keyword that starts the statement
+   * @return true if the given line is a statement that starts with the keyword
    */
-  private static Pattern packagePattern = Pattern.compile("\\s*package\\s.*;\\R?");
+  private static boolean isStatement(String line, String keyword) {
+    int length = line.length();
+    int i = skipWhitespace(line, 0);
+    if (!line.startsWith(keyword, i)) {
+      return false;
+    }
+    i += keyword.length();
+    if (i >= length || !isWhitespace(line.charAt(i))) {
+      return false;
+    }
+    i++;
+    // The semicolon is the last character, or is followed by one linebreak.
+    int semicolon;
+    if (line.endsWith(";")) {
+      semicolon = length - 1;
+    } else if (line.endsWith(";\r\n")) {
+      semicolon = length - 3;
+    } else if (length >= 2 && isLinebreak(line.charAt(length - 1))) {
+      semicolon = length - 2;
+    } else {
+      return false;
+    }
+    return semicolon >= i
+        && line.charAt(semicolon) == ';'
+        && hasNoLineTerminator(line, i, semicolon);
+  }
 
   /**
-   * Returns true if the given line is a package statement.
+   * Returns true if the given line is a package statement. Equivalent to matching the regex {@code
+   * \s*package\s.*;\R?}. Does not match package lines with a trailing comment.
    *
    * @param line a line of Java code
    * @return true if the given line is a package statement
    */
   public static boolean isPackageStatement(String line) {
-    return packagePattern.matcher(line).matches();
+    return isStatement(line, "package");
   }
 
   /**
@@ -84,19 +242,14 @@ public final class JavaLibrary {
   }
 
   /**
-   * A pattern that matches an import line in Java code. Does not match import lines with a trailing
-   * comment.
-   */
-  private static Pattern importPattern = Pattern.compile("\\s*import\\s.*;\\R?");
-
-  /**
-   * Returns true if the given line is an import statement.
+   * Returns true if the given line is an import statement. Equivalent to matching the regex {@code
+   * \s*import\s.*;\R?}. Does not match import lines with a trailing comment.
    *
    * @param line a line of Java code
    * @return true if the given line is an import statement
    */
   public static boolean isImportStatement(String line) {
-    return importPattern.matcher(line).matches();
+    return isStatement(line, "import");
   }
 
   /**
@@ -115,6 +268,40 @@ public final class JavaLibrary {
     return -1;
   }
 
+  /**
+   * Returns true if the given line is a statement that starts with the given keyword, possibly
+   * preceded by <code>/* ... *&#47;</code> comments and followed by a comment. Unlike {@link
+   * #isStatement}, this matches lines such as {@code import a.B; // NOPMD} and <code>
+   * /* c *&#47; import x;</code>.
+   *
+   * @param line a line of Java code
+   * @param keyword the keyword that starts the statement
+   * @return true if the given line is a statement, possibly with comments, that starts with the
+   *     keyword
+   */
+  private static boolean isStatementWithComments(String line, String keyword) {
+    int length = line.length();
+    int i = skipWhitespace(line, 0);
+    while (line.startsWith("/*", i)) {
+      int commentEnd = line.indexOf("*/", i + 2);
+      if (commentEnd == -1) {
+        return false;
+      }
+      i = skipWhitespace(line, commentEnd + 2);
+    }
+    if (!line.startsWith(keyword, i)) {
+      return false;
+    }
+    i += keyword.length();
+    if (i >= length || !isWhitespace(line.charAt(i))) {
+      return false;
+    }
+    int semicolon = line.indexOf(';', i);
+    return semicolon != -1
+        && hasNoLineTerminator(line, i, semicolon)
+        && (isBlankLine(line, semicolon + 1) || isCommentLine(line, semicolon + 1));
+  }
+
   /**
    * Given a line of code, return true if it can appear in an import block: it is an {@code import},
    * blank line, or comment.
@@ -126,11 +313,75 @@ public final class JavaLibrary {
     return line.isEmpty() || isBlankLine(line) || isCommentLine(line) || isImportStatement(line);
   }
 
-  /** Matches the beginning of a line that starts a comment. */
-  private static Pattern commentStartPattern = Pattern.compile("^\\s*/[/*]");
+  /**
+   * Returns the header of a Java file: the lines before its first type (or module) declaration.
+   * The header consists of the {@code package} statement, the {@code import} statements, the blank
+   * lines and comments among and before them, and any annotations on the {@code package} statement.
+   * A {@code package} or {@code import} statement may have comments on the same line. The header
+   * ends at the first other line, which is normally the start of a declaration. Iterates over no
+   * more of {@code lines} than the header and the line after it, so it is cheap even for a large
+   * file whose lines are read lazily.
+   *
+   * @param lines the lines of a Java file
+   * @return the lines of the file's header
+   */
+  public static List<String> headerLines(List<String> lines) {
+    List<String> result = new ArrayList<>();
+    boolean inComment = false;
+    boolean seenPackage = false;
+    for (String line : lines) {
+      if (inComment) {
+        int commentEnd = line.indexOf("*/");
+        if (commentEnd != -1) {
+          if (!isBlankLine(line.substring(commentEnd + 2))) {
+            // Code follows the comment.
+            break;
+          }
+          inComment = false;
+        }
+      } else if (isBlankLine(line)
+          || isCommentLine(line)
+          || isImportStatement(line)
+          || isStatementWithComments(line, "import")) {
+        // The line is part of the header.
+      } else if (isPackageStatement(line) || isStatementWithComments(line, "package")) {
+        seenPackage = true;
+      } else if (line.startsWith("/*", skipWhitespace(line, 0))
+          && line.indexOf("*/", skipWhitespace(line, 0) + 2) == -1) {
+        // The line starts a comment that continues onto the next line.
+        inComment = true;
+      } else if (!seenPackage && line.startsWith("@", skipWhitespace(line, 0))) {
+        // An annotation on the package statement, as in a package-info.java file.
+      } else {
+        break;
+      }
+      result.add(line);
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the given line starts with a comment, after optional whitespace. Equivalent to
+   * finding the regex <code>^\s*&#47;[/*]</code>.
+   *
+   * @param line a line of code
+   * @return true if the line starts with a comment
+   */
+  private static boolean startsComment(String line) {
+    int i = skipWhitespace(line, 0);
+    return line.startsWith("//", i) || line.startsWith("/*", i);
+  }
 
-  /** Matches the beginning of a line that ends a comment. */
-  private static Pattern commentEndPattern = Pattern.compile("^\\s*[*]/");
+  /**
+   * Returns true if the given line starts with the end of a comment, after optional whitespace.
+   * Equivalent to finding the regex {@code ^\s*[*]/}.
+   *
+   * @param line a line of code
+   * @return true if the line starts with the end of a comment
+   */
+  private static boolean startsWithCommentEnd(String line) {
+    return line.startsWith("*/", skipWhitespace(line, 0));
+  }
 
   /**
    * Returns the zero-based line number of the first line that does not start within a comment. That
@@ -146,10 +397,10 @@ public final class JavaLibrary {
     int linesSize = lines.size();
     for (int i = 0; i < linesSize; i++) {
       String line = lines.get(i);
-      if (commentStartPattern.matcher(line).find()) {
+      if (startsComment(line)) {
         return i;
       }
-      if (commentEndPattern.matcher(line).find()) {
+      if (startsWithCommentEnd(line)) {
         return i + 1;
       }
     }
@@ -0,0 +1,203 @@
+package org.plumelib.merging;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.dataflow.qual.Pure;
+
+/**
+ * The classification of each line in a list of lines of Java code, as a blank line, a comment line,
+ * a {@code package} statement, an {@code import} statement, or none of those. Each line is
+ * classified at most once, the first time it is queried; afterward, each query about it takes
+ * constant time. Queries that examine many lines, such as {@link #isImportBlock}, stop as soon as
+ * they know the answer, so they classify no more lines than necessary. The classifications are
+ * those of {@link JavaLibrary#isBlankLine}, {@link JavaLibrary#isCommentLine}, {@link
+ * JavaLibrary#isPackageStatement}, and {@link JavaLibrary#isImportStatement}.
+ *
+ * <p>A LineKinds must not be used after its list of lines is side-effected.
+ */
+public final class LineKinds {
+
+  /** The flag for a line that {@link JavaLibrary#isBlankLine} accepts. */
+  public static final byte BLANK = 1;
+
+  /** The flag for a line that {@link JavaLibrary#isCommentLine} accepts. */
+  public static final byte COMMENT = 2;
+
+  /** The flag for a line that {@link JavaLibrary#isPackageStatement} accepts. */
+  public static final byte PACKAGE = 4;
+
+  /** The flag for a line that {@link JavaLibrary#isImportStatement} accepts. */
+  public static final byte IMPORT = 8;
+
+  /** The flags of a line that can appear in an import block. */
+  private static final byte IMPORT_BLOCK = BLANK | COMMENT | IMPORT;
+
+  /**
+   * The flag that indicates that a line has been classified. An element of {@link #kinds} that is
+   * 0 has not yet been classified.
+   */
+  private static final byte CLASSIFIED = 16;
+
+  /** The lines that are classified. */
+  private final List<String> lines;
+
+  /** The flags for each line, including {@link #CLASSIFIED} if the line has been classified. */
+  private final byte[] kinds;
+
+  /**
+   * Creates a LineKinds for the given lines. No line is classified until it is queried.
+   *
+   * @param lines lines of Java code, each of which may be terminated by a line separator
+   */
+  public LineKinds(List<String> lines) {
+    this.lines = lines;
+    this.kinds = new byte[lines.size()];
+  }
+
+  /**
+   * Returns the flags for the given line.
+   *
+   * @param line a line of Java code, which may be terminated by a line separator
+   * @return the flags for the line: a combination of {@link #BLANK}, {@link #COMMENT}, {@link
+   *     #PACKAGE}, and {@link #IMPORT}
+   */
+  public static byte classify(String line) {
+    // The kinds are mutually exclusive, so there is no need to test for more than one.
+    if (JavaLibrary.isBlankLine(line)) {
+      return BLANK;
+    } else if (JavaLibrary.isCommentLine(line)) {
+      return COMMENT;
+    } else if (JavaLibrary.isImportStatement(line)) {
+      return IMPORT;
+    } else if (JavaLibrary.isPackageStatement(line)) {
+      return PACKAGE;
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the number of lines.
+   *
+   * @return the number of lines
+   */
+  @Pure
+  public int size() {
+    return kinds.length;
+  }
+
+  /**
+   * Returns true if the given line has any of the given flags.
+   *
+   * @param index the index of a line
+   * @param flags a combination of {@link #BLANK}, {@link #COMMENT}, {@link #PACKAGE}, and {@link
+   *     #IMPORT}
+   * @return true if the line has any of the flags
+   */
+  public boolean is(int index, int flags) {
+    return (kind(index) & flags) != 0;
+  }
+
+  /**
+   * Returns the flags for the given line, classifying it if it has not yet been classified.
+   *
+   * @param index the index of a line
+   * @return the flags for the line, including {@link #CLASSIFIED}
+   */
+  private byte kind(int index) {
+    byte result = kinds[index];
+    if (result == 0) {
+      result = (byte) (classify(lines.get(index)) | CLASSIFIED);
+      kinds[index] = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the given line is a blank line.
+   *
+   * @param index the index of a line
+   * @return true if the line is a blank line
+   */
+  public boolean isBlank(int index) {
+    return is(index, BLANK);
+  }
+
+  /**
+   * Returns true if the given line is a comment line.
+   *
+   * @param index the index of a line
+   * @return true if the line is a comment line
+   */
+  public boolean isComment(int index) {
+    return is(index, COMMENT);
+  }
+
+  /**
+   * Returns true if the given line is a {@code package} statement.
+   *
+   * @param index the index of a line
+   * @return true if the line is a {@code package} statement
+   */
+  public boolean isPackage(int index) {
+    return is(index, PACKAGE);
+  }
+
+  /**
+   * Returns true if the given line is an {@code import} statement.
+   *
+   * @param index the index of a line
+   * @return true if the line is an {@code import} statement
+   */
+  public boolean isImport(int index) {
+    return is(index, IMPORT);
+  }
+
+  /**
+   * Returns true if every line can be part of an import block, as determined by {@link
+   * JavaLibrary#isImportBlockLine}.
+   *
+   * @return true if the lines are an import block
+   */
+  public boolean isImportBlock() {
+    for (int i = 0; i < kinds.length; i++) {
+      if (!is(i, IMPORT_BLOCK)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the first line that has any of the given flags, or -1 if there is none.
+   *
+   * @param flags a combination of {@link #BLANK}, {@link #COMMENT}, {@link #PACKAGE}, and {@link
+   *     #IMPORT}
+   * @return the index of the first line with any of the flags, or -1
+   */
+  public int first(int flags) {
+    for (int i = 0; i < kinds.length; i++) {
+      if (is(i, flags)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the lines that have any of the given flags, in order.
+   *
+   * @param flags a combination of {@link #BLANK}, {@link #COMMENT}, {@link #PACKAGE}, and {@link
+   *     #IMPORT}
+   * @return the lines with any of the flags
+   */
+  public List<String> linesWith(int flags) {
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < kinds.length; i++) {
+      if (is(i, flags)) {
+        result.add(lines.get(i));
+      }
+    }
+    return result;
+  }
+}
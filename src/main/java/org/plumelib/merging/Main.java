@@ -2,9 +2,13 @@ package org.plumelib.merging;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -25,6 +29,22 @@ public class Main implements Callable<Integer> {
   /** Creates a Main. */
   public Main() {}
 
+  /** The exit status of the program when {@link #exitErroneously} is called. */
+  static final int ERRONEOUS_EXIT_STATUS = 129;
+
+  /**
+   * True while {@link #runInProcess} is running on this thread, so that {@link #exitErroneously}
+   * throws an exception instead of exiting.
+   */
+  private static final ThreadLocal<Boolean> runningInProcess =
+      ThreadLocal.withInitial(() -> false);
+
+  /**
+   * A merged file at least this large, in bytes, is processed without reading it into memory, if
+   * no enabled merger needs the whole file.
+   */
+  private static final long STREAMING_THRESHOLD = 64L * 1024 * 1024;
+
   /** Whether to run as a merge driver or a merge tool. */
   @Parameters(index = "0", description = "\"driver\" or \"tool\"")
   MergeMode command;
@@ -92,6 +112,13 @@ public class Main implements Callable<Integer> {
       defaultValue = "false")
   public boolean only_java_imports = false;
 
+  /** If true, the Java imports merger uses google-java-format to remove unused imports. */
+  @Option(
+      names = "--gjf-unused-imports",
+      description = "Remove unused imports with google-java-format (slower)",
+      defaultValue = "false")
+  public boolean gjf_unused_imports = false;
+
   /** If true, merge version numbers. */
   @Option(names = "--version-numbers", negatable = true, description = "Merge version numbers")
   public Optional<Boolean> version_numbers_optional = Optional.empty();
@@ -106,10 +133,37 @@ public class Main implements Callable<Integer> {
       defaultValue = "false")
   public boolean only_version_numbers = false;
 
+  /**
+   * The path of the merged file in the repository, as git's {@code %P} supplies it to a merge
+   * driver, or null if it was not supplied. A merge driver is passed temporary file names, so this
+   * is its only way to know whether the file is a Java file.
+   */
+  @Option(
+      names = "--path",
+      paramLabel = "PATH",
+      description = "The path of the merged file in the repository, such as git's %P")
+  public @Nullable Path path = null;
+
   /** If true, print diagnostics for debugging. */
   @Option(names = "--verbose", description = "Print diagnostics", defaultValue = "false")
   public boolean verbose = false;
 
+  /** If non-null, report statistics about the run in this format. */
+  @Option(
+      names = "--stats",
+      arity = "0..1",
+      fallbackValue = "text",
+      paramLabel = "FORMAT",
+      description = "Report the time and allocation of each phase, as \"text\" or \"json\"")
+  public MergeStats.@Nullable Format stats = null;
+
+  /** Where to append the statistics report; if null, it is printed to standard error. */
+  @Option(
+      names = "--stats-file",
+      paramLabel = "FILE",
+      description = "Append the --stats report to FILE instead of printing it")
+  public @Nullable Path stats_file = null;
+
   /** If false, don't run `git merge-file`, just work from the conflicts that exist in the file. */
   @Option(
       names = "--git-merge-file",
@@ -132,6 +186,39 @@ public class Main implements Callable<Integer> {
     System.exit(exitCode);
   }
 
+  /**
+   * Acts as a git merge driver or merge tool, as {@link #main} does, but returns the exit status
+   * instead of exiting. This is for a client that runs the program many times in one JVM.
+   *
+   * @param args the command-line arguments
+   * @return the exit status
+   * @throws ErroneousExitException if the program would have exited erroneously
+   */
+  static int runInProcess(String... args) {
+    List<RuntimeException> thrown = new ArrayList<>(1);
+    CommandLine commandLine = new CommandLine(new Main());
+    commandLine.setExecutionExceptionHandler(
+        (e, cl, parseResult) -> {
+          if (e instanceof RuntimeException re) {
+            thrown.add(re);
+            return ERRONEOUS_EXIT_STATUS;
+          }
+          throw e;
+        });
+    boolean wasRunningInProcess = runningInProcess.get();
+    runningInProcess.set(true);
+    int exitCode;
+    try {
+      exitCode = commandLine.execute(args);
+    } finally {
+      runningInProcess.set(wasRunningInProcess);
+    }
+    if (!thrown.isEmpty()) {
+      throw thrown.get(0);
+    }
+    return exitCode;
+  }
+
   /**
    * Set the java.home property if it is not set. That is the case when running under GraalVM. See
    * https://github.com/oracle/graal/issues/2835#issuecomment-1333308238.
@@ -229,6 +316,32 @@ public class Main implements Callable<Integer> {
   public Integer call() {
     checkArgs();
 
+    MergeStats.Format format = stats;
+    if (format == null) {
+      return merge();
+    }
+
+    MergeStats mergeStats = MergeStats.enable();
+    int exitStatus;
+    MergeStats.Phase phase = MergeStats.begin("total");
+    try {
+      exitStatus = merge();
+    } finally {
+      phase.end();
+      MergeStats.disable();
+    }
+    Path reportedPath = mergedPath == null ? leftPath : mergedPath;
+    writeStats(mergeStats.report(format, reportedPath.toString(), exitStatus));
+    return exitStatus;
+  }
+
+  /**
+   * Runs the enabled mergers.
+   *
+   * @return the exit status
+   */
+  private int merge() {
+    MergeEvents.PhaseEvent prepare = new MergeEvents.PhaseEvent();
     @SuppressWarnings("nullness:argument") // command == tool => mergedPath != null
     MergeState ms =
         switch (command) {
@@ -236,6 +349,13 @@ public class Main implements Callable<Integer> {
           // Pass "true" for `hasConflictInitially` to make sure work happens.
           case tool -> new MergeState(leftPath, basePath, rightPath, mergedPath, true);
         };
+    prepare.finish("prepare");
+
+    if (useStreaming(ms, STREAMING_THRESHOLD)) {
+      return mergeStreaming(ms);
+    }
+
+    MergeEvents.PhaseEvent mergers = new MergeEvents.PhaseEvent();
 
     // Even if ms.gitMergeFileExitCode is 0, give fixups a chance to run.
 
@@ -268,10 +388,15 @@ public class Main implements Callable<Integer> {
       if (verbose) {
         System.out.println("calling imports");
       }
-      new JavaImportsMerger(verbose).merge(ms);
+      new JavaImportsMerger(verbose, gjf_unused_imports).merge(ms);
     }
+    mergers.finish("mergers");
 
+    MergeEvents.PhaseEvent writeBackEvent = new MergeEvents.PhaseEvent();
+    MergeStats.Phase writeBack = MergeStats.begin("write back");
     ms.writeBack(verbose);
+    writeBack.end();
+    writeBackEvent.finish("write back");
 
     int exitStatus = ms.hasConflict() ? 1 : 0;
     if (verbose) {
@@ -280,6 +405,91 @@ public class Main implements Callable<Integer> {
     return exitStatus;
   }
 
+  /**
+   * Returns true if the merged file should be processed by a {@link StreamingMerger}, because it is
+   * very large and no enabled merger needs the whole file.
+   *
+   * @param ms the merge state
+   * @param threshold the size, in bytes, at which a merged file is processed by a {@link
+   *     StreamingMerger}
+   * @return true if the merged file should be processed by a {@link StreamingMerger}
+   */
+  boolean useStreaming(MergeState ms, long threshold) {
+    if (!ms.hasConflict()) {
+      return false;
+    }
+    // The imports merger needs the whole file.
+    if (java_imports && mayBeJavaFile(ms)) {
+      if (verbose) {
+        System.out.println("not streaming, because the file may be a Java file");
+      }
+      return false;
+    }
+    try {
+      return Files.size(ms.mergedPath) >= threshold;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the merged file may be a Java file. If {@code --path} was supplied, it tells.
+   * Otherwise, a merge driver cannot tell, because it is passed temporary file names, so it
+   * assumes that the file may be a Java file; and a merge tool checks the names of the files.
+   *
+   * @param ms the merge state
+   * @return true if the merged file may be a Java file
+   */
+  private boolean mayBeJavaFile(MergeState ms) {
+    if (path != null) {
+      return path.toString().endsWith(".java");
+    }
+    if (command == MergeMode.driver) {
+      return true;
+    }
+    for (Path p : List.of(ms.leftPath, ms.basePath, ms.rightPath, ms.mergedPath)) {
+      if (p.toString().endsWith(".java")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs the enabled mergers that consider each merge conflict on its own, using a {@link
+   * StreamingMerger}.
+   *
+   * @param ms the merge state
+   * @return the exit status
+   */
+  private int mergeStreaming(MergeState ms) {
+    List<PerConflictMerger> mergers = new ArrayList<>();
+    // The same order as in `call()`.
+    if (java_annotations) {
+      mergers.add(new JavaAnnotationsMerger(verbose));
+    }
+    if (version_numbers) {
+      mergers.add(new VersionNumbersMerger(verbose));
+    }
+    if (adjacent) {
+      mergers.add(new AdjacentLinesMerger(verbose));
+    }
+    if (verbose) {
+      System.out.printf("calling streaming merger with %s%n", mergers);
+    }
+    MergeEvents.PhaseEvent event = new MergeEvents.PhaseEvent();
+    MergeStats.Phase streaming = MergeStats.begin("StreamingMerger.merge");
+    boolean hasConflict = new StreamingMerger(mergers, verbose).merge(ms);
+    streaming.end();
+    event.finish("streaming merge");
+
+    int exitStatus = hasConflict ? 1 : 0;
+    if (verbose) {
+      System.out.printf("Exiting with status %d.%n", exitStatus);
+    }
+    return exitStatus;
+  }
+
   /**
    * Returns the MergeState that should be used for a merge driver.
    *
@@ -305,7 +515,9 @@ public class Main implements Callable<Integer> {
 
     int gitMergeFileExitCode;
     if (git_merge_file) {
+      MergeStats.Phase gitMergeFile = MergeStats.begin("git merge-file");
       gitMergeFileExitCode = GitLibrary.performGitMergeFile(leftPath, basePath, rightPath);
+      gitMergeFile.end();
     } else {
       // There is a difference between baseFile and otherFile; otherwise the merge driver would
       // not have been called.  We don't know whether there is a merge conflict in currentFile,
@@ -322,6 +534,31 @@ public class Main implements Callable<Integer> {
         leftFileSavedPath, basePath, rightPath, leftPath, gitMergeFileExitCode != 0);
   }
 
+  /**
+   * Prints the given statistics report to standard error, or appends it to {@link #stats_file}.
+   *
+   * @param report a statistics report
+   */
+  private void writeStats(String report) {
+    if (stats_file == null) {
+      System.err.print(report);
+      return;
+    }
+    try {
+      Files.writeString(
+          stats_file,
+          report,
+          StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      // Statistics are not essential, so do not fail the merge.
+      String message = "Problem writing statistics to " + stats_file + ": " + e.getMessage();
+      System.out.println(message);
+      System.err.println(message);
+    }
+  }
+
   // //////////////////////////////////////////////////////////////////////
   // Utilities
   //
@@ -343,6 +580,28 @@ public class Main implements Callable<Integer> {
   public static void exitErroneously(String errorMessage) {
     System.out.println(errorMessage);
     System.err.println(errorMessage);
-    System.exit(129);
+    if (runningInProcess.get()) {
+      throw new ErroneousExitException(errorMessage);
+    }
+    System.exit(ERRONEOUS_EXIT_STATUS);
+  }
+
+  /**
+   * Thrown by {@link #exitErroneously} instead of exiting, when the program was run by {@link
+   * #runInProcess}.
+   */
+  static final class ErroneousExitException extends RuntimeException {
+
+    /** Unique identifier for serialization. If you add or remove fields, change this number. */
+    private static final long serialVersionUID = 20261018L;
+
+    /**
+     * Creates an ErroneousExitException.
+     *
+     * @param message the error message
+     */
+    ErroneousExitException(String message) {
+      super(message);
+    }
   }
 }
@@ -0,0 +1,210 @@
+package org.plumelib.merging;
+
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+
+/**
+ * Java Flight Recorder events for the merge engine. A recording of many merges (such as a large
+ * rebase, with the merge driver run under {@code -XX:StartFlightRecording}) shows which merge
+ * conflicts were slow and which merger spent the time.
+ *
+ * <p>Each event begins timing when it is created, and its {@code finish} method ends and commits
+ * it. When no recording is in progress, or an event type is disabled, {@code finish} does not
+ * compute the event's fields and the JIT compiler removes the event's allocation, so the events
+ * cost nothing.
+ */
+public final class MergeEvents {
+
+  /** Do not instantiate. */
+  private MergeEvents() {
+    throw new Error("do not instantiate");
+  }
+
+  /** The category of every event. */
+  private static final String CATEGORY = "Plume-lib Merging";
+
+  /** A phase of {@link Main#call}. */
+  @Name("org.plumelib.merging.Phase")
+  @Label("Merge Phase")
+  @Category(CATEGORY)
+  @Description("A phase of a run of the merge driver or merge tool")
+  @StackTrace(false)
+  static final class PhaseEvent extends Event {
+
+    /** The name of the phase. */
+    @Label("Phase")
+    String phase = "";
+
+    /** Creates a PhaseEvent and begins timing it. */
+    PhaseEvent() {
+      begin();
+    }
+
+    /**
+     * Ends this event, and commits it if it is enabled.
+     *
+     * @param phase the name of the phase
+     */
+    void finish(String phase) {
+      end();
+      if (shouldCommit()) {
+        this.phase = phase;
+        commit();
+      }
+    }
+  }
+
+  /** One invocation of {@link Merger#merge}. */
+  @Name("org.plumelib.merging.Merge")
+  @Label("Merger Run")
+  @Category(CATEGORY)
+  @Description("One merger's pass over a conflicted file")
+  @StackTrace(false)
+  static final class MergerEvent extends Event {
+
+    /** The merger. */
+    @Label("Merger")
+    String merger = "";
+
+    /** The number of merge conflicts before the merger ran. */
+    @Label("Conflicts Before")
+    int conflictsBefore;
+
+    /** The number of merge conflicts after the merger ran. */
+    @Label("Conflicts After")
+    int conflictsAfter;
+
+    /** Creates a MergerEvent and begins timing it. */
+    MergerEvent() {
+      begin();
+    }
+
+    /**
+     * Ends this event, and commits it if it is enabled.
+     *
+     * @param merger the merger
+     * @param conflictsBefore the number of merge conflicts before the merger ran
+     * @param conflictsAfter the number of merge conflicts after the merger ran
+     */
+    void finish(Merger merger, int conflictsBefore, int conflictsAfter) {
+      end();
+      if (shouldCommit()) {
+        this.merger = merger.getClass().getSimpleName();
+        this.conflictsBefore = conflictsBefore;
+        this.conflictsAfter = conflictsAfter;
+        commit();
+      }
+    }
+  }
+
+  /** One merger's attempt to resolve one merge conflict. */
+  @Name("org.plumelib.merging.ConflictResolution")
+  @Label("Conflict Resolution")
+  @Category(CATEGORY)
+  @Description("One merger's attempt to resolve one merge conflict")
+  @StackTrace(false)
+  static final class ConflictEvent extends Event {
+
+    /** The merger. */
+    @Label("Merger")
+    String merger = "";
+
+    /** The 1-based line number of the merge conflict's first line. */
+    @Label("Line")
+    int line;
+
+    /** The number of lines in the left side of the merge conflict. */
+    @Label("Left Lines")
+    int leftLines;
+
+    /** The number of lines in the base side of the merge conflict, or -1 if it has none. */
+    @Label("Base Lines")
+    int baseLines;
+
+    /** The number of lines in the right side of the merge conflict. */
+    @Label("Right Lines")
+    int rightLines;
+
+    /** The number of characters in the longest side of the merge conflict. */
+    @Label("Characters")
+    int characters;
+
+    /** "resolved", "unresolved", or "gave up". */
+    @Label("Outcome")
+    String outcome = "";
+
+    /** Creates a ConflictEvent and begins timing it. */
+    ConflictEvent() {
+      begin();
+    }
+
+    /**
+     * Ends this event, and commits it if it is enabled.
+     *
+     * @param merger the merger
+     * @param mc the merge conflict
+     * @param outcome "resolved", "unresolved", or "gave up"
+     */
+    void finish(Merger merger, MergeConflict mc, String outcome) {
+      end();
+      if (shouldCommit()) {
+        this.merger = merger.getClass().getSimpleName();
+        this.line = mc.start() + 1;
+        this.leftLines = mc.left().size();
+        List<String> base = mc.base();
+        this.baseLines = base == null ? -1 : base.size();
+        this.rightLines = mc.right().size();
+        String baseJoined = mc.baseJoined();
+        this.characters =
+            Math.max(
+                Math.max(mc.leftJoined().length(), mc.rightJoined().length()),
+                baseJoined == null ? 0 : baseJoined.length());
+        this.outcome = outcome;
+        commit();
+      }
+    }
+  }
+
+  /** A subprocess, from when it is started until it exits. */
+  @Name("org.plumelib.merging.Subprocess")
+  @Label("Merge Subprocess")
+  @Category(CATEGORY)
+  @Description("A subprocess, such as git merge-file or diff3, run by the merge engine")
+  @StackTrace(false)
+  public static final class SubprocessEvent extends Event {
+
+    /** The command line of the subprocess. */
+    @Label("Command")
+    String command = "";
+
+    /** The exit status of the subprocess, or -1 if it could not be run. */
+    @Label("Exit Status")
+    int exitStatus;
+
+    /** Creates a SubprocessEvent and begins timing it. */
+    public SubprocessEvent() {
+      begin();
+    }
+
+    /**
+     * Ends this event, and commits it if it is enabled.
+     *
+     * @param command the command line of the subprocess
+     * @param exitStatus the exit status of the subprocess, or -1 if it could not be run
+     */
+    public void finish(List<String> command, int exitStatus) {
+      end();
+      if (shouldCommit()) {
+        this.command = String.join(" ", command);
+        this.exitStatus = exitStatus;
+        commit();
+      }
+    }
+  }
+}
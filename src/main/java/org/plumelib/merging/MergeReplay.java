@@ -0,0 +1,513 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Replays the merge commits in a git repository's history, to measure how fast the mergers are
+ * and how often they resolve real merge conflicts.
+ *
+ * <p>For each merge commit with two parents, and each file that both parents changed relative to
+ * their merge base, this runs {@code git merge-file} on the three versions of the file. If that
+ * produces a merge conflict, this runs the merge tool ({@link Main}) in-process on the result, and
+ * records how long the merge tool took, whether it resolved every conflict, and whether its result
+ * is the same as the file in the merge commit. If the merge tool fails on a file, that is recorded
+ * and the replay continues. The versions of the files are read from the repository by one
+ * long-running {@code git cat-file} process.
+ *
+ * <p>Run it as:
+ *
+ * <pre>{@code
+ * ./gradlew replayMerges -PreplayRepo=/path/to/repo
+ * }</pre>
+ */
+@SuppressWarnings({
+  "nullness:initialization.fields.uninitialized", // picocli initializes w/reflection
+  "initializedfields:contracts.postcondition" // picocli initializes w/reflection
+})
+@Command(
+    name = "plumelib-merge-replay",
+    description = "Replays the merge commits in a git repository's history.")
+public class MergeReplay implements Callable<Integer> {
+
+  /** Creates a MergeReplay. */
+  public MergeReplay() {}
+
+  /** A directory in the git repository whose merges to replay. */
+  @Parameters(index = "0", description = "A directory in the git repository")
+  Path repo;
+
+  /** The commit whose history to replay. */
+  @Option(
+      names = "--rev",
+      description = "The commit whose history to replay",
+      defaultValue = "HEAD")
+  public String rev = "HEAD";
+
+  /** The maximum number of merge commits to replay. */
+  @Option(
+      names = "--max-merges",
+      description = "The maximum number of merge commits to replay",
+      defaultValue = "1000")
+  public int max_merges = 1000;
+
+  /** Command-line options to pass to the merge tool. */
+  @Option(
+      names = "--merge-arg",
+      paramLabel = "ARG",
+      description = "An option to pass to the merge tool, such as --adjacent; may be repeated")
+  public List<String> merge_args = new ArrayList<>();
+
+  /**
+   * The merge tool options that {@link MergeReplay} itself records statistics for, so it does not
+   * pass them to the merge tool.
+   */
+  private static final List<String> STATS_OPTIONS = List.of("--stats", "--stats-file");
+
+  /** Where to write the results as JSON, or null to not write them. */
+  @Option(names = "--json", paramLabel = "FILE", description = "Also write the results to FILE")
+  public @Nullable Path json = null;
+
+  /**
+   * Replays the merges in a git repository.
+   *
+   * @param args the command-line arguments
+   */
+  public static void main(String[] args) {
+    int exitCode = new CommandLine(new MergeReplay()).execute(args);
+    System.exit(exitCode);
+  }
+
+  @Override
+  public Integer call() {
+    Results results;
+    try {
+      results = replay();
+    } catch (IOException e) {
+      Main.exitErroneously("Problem replaying merges in " + repo + ": " + e.getMessage());
+      throw new Error("unreachable");
+    }
+    System.out.print(results.toText());
+    if (json != null) {
+      try {
+        Files.writeString(json, results.toJson(), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        Main.exitErroneously("Problem writing " + json + ": " + e.getMessage());
+        throw new Error("unreachable");
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Replays the merges.
+   *
+   * @return the results of replaying the merges
+   * @throws IOException if there is trouble running git or writing temporary files
+   */
+  Results replay() throws IOException {
+    Results results = new Results();
+    List<String> toolArgs = withoutStatsOptions(merge_args);
+    Path tempDir = Files.createTempDirectory("MergeReplay-");
+    MergeStats stats = MergeStats.enable();
+    try (GitBlobReader blobs = new GitBlobReader(repo)) {
+      String revList =
+          git("rev-list", "--merges", "--parents", "--max-count=" + max_merges, rev, "--");
+      if (revList == null) {
+        throw new IOException("git rev-list failed for " + rev);
+      }
+      for (String line : revList.split("\n", -1)) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] commits = line.split(" ", -1);
+        if (commits.length == 3) {
+          replayMerge(commits[0], commits[1], commits[2], toolArgs, blobs, tempDir, results);
+        } else {
+          results.skippedMerges++;
+        }
+      }
+      results.counters.putAll(stats.counters());
+    } finally {
+      MergeStats.disable();
+      try (Stream<Path> paths = Files.walk(tempDir)) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(path);
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns the given merge tool arguments, without {@code --stats} and {@code --stats-file}. The
+   * merge tool's {@code --stats} would replace the statistics that the replay is recording.
+   *
+   * @param args merge tool arguments
+   * @return the arguments, without statistics options
+   */
+  static List<String> withoutStatsOptions(List<String> args) {
+    List<String> result = new ArrayList<>(args.size());
+    for (int i = 0; i < args.size(); i++) {
+      String arg = args.get(i);
+      String name = arg.contains("=") ? arg.substring(0, arg.indexOf('=')) : arg;
+      if (!STATS_OPTIONS.contains(name)) {
+        result.add(arg);
+        continue;
+      }
+      System.err.printf("Ignoring merge tool option %s; the replay reports statistics.%n", arg);
+      // Also skip the option's value, if it is a separate argument.
+      if (!arg.contains("=") && i + 1 < args.size()) {
+        String next = args.get(i + 1);
+        if (name.equals("--stats-file")
+            || next.equals(MergeStats.Format.text.name())
+            || next.equals(MergeStats.Format.json.name())) {
+          i++;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Replays one merge commit.
+   *
+   * @param merge the merge commit
+   * @param left the merge commit's first parent
+   * @param right the merge commit's second parent
+   * @param toolArgs the options to pass to the merge tool
+   * @param blobs reads files from the repository
+   * @param tempDir a directory for temporary files
+   * @param results the results, which are side-effected
+   * @throws IOException if there is trouble running git or writing temporary files
+   */
+  private void replayMerge(
+      String merge,
+      String left,
+      String right,
+      List<String> toolArgs,
+      GitBlobReader blobs,
+      Path tempDir,
+      Results results)
+      throws IOException {
+    String base = git("merge-base", left, right);
+    if (base == null) {
+      results.skippedMerges++;
+      return;
+    }
+    // A criss-cross merge has more than one merge base; like `git merge-file`, use just one.
+    base = base.lines().findFirst().orElse("");
+    results.merges++;
+
+    Set<String> changedOnLeft = new HashSet<>(changedFiles(base, left));
+    for (String path : changedFiles(base, right)) {
+      if (!changedOnLeft.contains(path)) {
+        continue;
+      }
+      byte[] baseContents = blobs.read(base, path);
+      byte[] leftContents = blobs.read(left, path);
+      byte[] rightContents = blobs.read(right, path);
+      byte[] mergedContents = blobs.read(merge, path);
+      if (baseContents == null
+          || leftContents == null
+          || rightContents == null
+          || mergedContents == null) {
+        // The file was added or deleted, which git merge-file cannot handle.
+        results.skippedFiles++;
+        continue;
+      }
+      results.files++;
+      replayFile(
+          merge,
+          path,
+          baseContents,
+          leftContents,
+          rightContents,
+          mergedContents,
+          toolArgs,
+          tempDir,
+          results);
+    }
+  }
+
+  /**
+   * Replays the merge of one file.
+   *
+   * @param merge the merge commit
+   * @param path the file's path in the repository
+   * @param baseContents the base version of the file
+   * @param leftContents the left version of the file
+   * @param rightContents the right version of the file
+   * @param committedContents the version of the file in the merge commit
+   * @param toolArgs the options to pass to the merge tool
+   * @param tempDir a directory for temporary files
+   * @param results the results, which are side-effected
+   * @throws IOException if there is trouble writing temporary files
+   */
+  private void replayFile(
+      String merge,
+      String path,
+      byte[] baseContents,
+      byte[] leftContents,
+      byte[] rightContents,
+      byte[] committedContents,
+      List<String> toolArgs,
+      Path tempDir,
+      Results results)
+      throws IOException {
+    // Keep the file's extension, because some mergers run only on Java files.
+    String fileName = Path.of(path).getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    String extension = dot == -1 ? "" : fileName.substring(dot);
+    Path leftPath = Files.write(tempDir.resolve("left" + extension), leftContents);
+    Path basePath = Files.write(tempDir.resolve("base" + extension), baseContents);
+    Path rightPath = Files.write(tempDir.resolve("right" + extension), rightContents);
+    Path mergedPath = Files.write(tempDir.resolve("merged" + extension), leftContents);
+
+    int gitMergeFileExitCode = GitLibrary.performGitMergeFile(mergedPath, basePath, rightPath);
+    if (gitMergeFileExitCode == 0) {
+      results.cleanFiles++;
+      return;
+    }
+
+    List<String> args = new ArrayList<>(toolArgs);
+    args.addAll(
+        List.of(
+            "tool",
+            leftPath.toString(),
+            basePath.toString(),
+            rightPath.toString(),
+            mergedPath.toString()));
+    long start = System.nanoTime();
+    int exitStatus;
+    try {
+      exitStatus = Main.runInProcess(args.toArray(new String[0]));
+    } catch (RuntimeException e) {
+      results.failures.add(path + " in " + merge + ": " + e);
+      return;
+    }
+    results.latencies.add(System.nanoTime() - start);
+
+    if (exitStatus != 0 && exitStatus != 1) {
+      results.failures.add(path + " in " + merge + ": exit status " + exitStatus);
+    } else if (exitStatus != 0) {
+      results.unresolvedFiles++;
+    } else if (Arrays.equals(Files.readAllBytes(mergedPath), committedContents)) {
+      results.agreeingFiles++;
+    } else {
+      results.disagreeingFiles++;
+    }
+  }
+
+  /**
+   * Returns the files that differ between two commits. Renames are not detected, so a renamed
+   * file appears as two files.
+   *
+   * @param from a commit
+   * @param to a commit
+   * @return the files that differ between the commits
+   * @throws IOException if git fails
+   */
+  private List<String> changedFiles(String from, String to) throws IOException {
+    String output = git("diff", "--name-only", "--no-renames", "-z", from, to, "--");
+    if (output == null) {
+      throw new IOException("git diff failed for " + from + " " + to);
+    }
+    List<String> result = new ArrayList<>();
+    for (String path : output.split("\0", -1)) {
+      if (!path.isEmpty()) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs git in the repository and returns its output, or null if it fails.
+   *
+   * @param args the arguments to git
+   * @return the standard output of git, or null if git exits with a nonzero status
+   * @throws IOException if git cannot be run
+   */
+  private @Nullable String git(String... args) throws IOException {
+    List<String> command = new ArrayList<>(args.length + 3);
+    command.addAll(List.of("git", "-C", repo.toString()));
+    command.addAll(Arrays.asList(args));
+    ProcessBuilder pb = new ProcessBuilder(command);
+    pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+    Process p = pb.start();
+    String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    try {
+      // It is essential to call waitFor *after* reading the output from getInputStream().
+      return p.waitFor() == 0 ? output.strip() : null;
+    } catch (InterruptedException e) {
+      throw new IOException("interrupted while running: " + String.join(" ", command), e);
+    }
+  }
+
+  /** The results of replaying merges. */
+  static final class Results {
+
+    /** The number of merge commits that were replayed. */
+    int merges = 0;
+
+    /** The number of merge commits without a merge base or with more than two parents. */
+    int skippedMerges = 0;
+
+    /** The number of files that both parents changed, and that every version has. */
+    int files = 0;
+
+    /** The number of files that both parents changed, but that some version does not have. */
+    int skippedFiles = 0;
+
+    /** The number of files that {@code git merge-file} merged without conflicts. */
+    int cleanFiles = 0;
+
+    /** The number of conflicted files that the merge tool did not completely resolve. */
+    int unresolvedFiles = 0;
+
+    /** The number of conflicted files that the merge tool resolved as the merge commit did. */
+    int agreeingFiles = 0;
+
+    /** The number of conflicted files that the merge tool resolved differently than the commit. */
+    int disagreeingFiles = 0;
+
+    /** Why the merge tool failed, for each conflicted file on which it failed. */
+    final List<String> failures = new ArrayList<>();
+
+    /** The time that the merge tool took on each conflicted file, in nanoseconds. */
+    final List<Long> latencies = new ArrayList<>();
+
+    /** The merge tool's statistics counters, such as conflicts seen and resolved per merger. */
+    final Map<String, Long> counters = new LinkedHashMap<>();
+
+    /** Creates a Results. */
+    Results() {}
+
+    /**
+     * Returns the number of conflicted files: the files that {@code git merge-file} did not merge.
+     *
+     * @return the number of conflicted files
+     */
+    int conflictedFiles() {
+      return unresolvedFiles + agreeingFiles + disagreeingFiles + failures.size();
+    }
+
+    /**
+     * Returns the given percentile of the merge tool's latency, by the nearest-rank method.
+     *
+     * @param percentile a number between 0 and 100
+     * @return the given percentile of the latency, in milliseconds, or 0 if there are none
+     */
+    double latencyMillis(double percentile) {
+      if (latencies.isEmpty()) {
+        return 0;
+      }
+      List<Long> sorted = new ArrayList<>(latencies);
+      sorted.sort(null);
+      int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+      return sorted.get(Math.max(rank, 1) - 1) / 1e6;
+    }
+
+    /**
+     * Returns a human-readable report of these results.
+     *
+     * @return a human-readable report of these results, ending with a line separator
+     */
+    String toText() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(
+          String.format(
+              "Replayed %d merge commits (skipped %d without a merge base or with more than two"
+                  + " parents).%n",
+              merges, skippedMerges));
+      sb.append(
+          String.format(
+              "%d files were changed by both parents (skipped %d that some version lacks).%n",
+              files, skippedFiles));
+      sb.append(String.format("  %d were merged cleanly by git merge-file.%n", cleanFiles));
+      sb.append(
+          String.format("  %d had merge conflicts, of which the merge tool:%n", conflictedFiles()));
+      sb.append(
+          String.format("    resolved %d the same as the merge commit,%n", agreeingFiles));
+      sb.append(String.format("    resolved %d differently,%n", disagreeingFiles));
+      sb.append(String.format("    left conflicts in %d,%n", unresolvedFiles));
+      sb.append(String.format("    failed on %d.%n", failures.size()));
+      for (String failure : failures) {
+        sb.append(String.format("      %s%n", failure));
+      }
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "Merge tool latency per conflicted file (ms): p50 %.3f, p90 %.3f, p99 %.3f, max"
+                  + " %.3f%n",
+              latencyMillis(50),
+              latencyMillis(90),
+              latencyMillis(99),
+              latencyMillis(100)));
+      sb.append(String.format("Merge tool statistics:%n"));
+      for (Map.Entry<String, Long> entry : counters.entrySet()) {
+        sb.append(String.format("  %-40s %6d%n", entry.getKey(), entry.getValue()));
+      }
+      return sb.toString();
+    }
+
+    /**
+     * Returns these results as a JSON object.
+     *
+     * @return these results as a JSON object, followed by a line separator
+     */
+    String toJson() {
+      StringJoiner countersJson = new StringJoiner(",", "{", "}");
+      for (Map.Entry<String, Long> entry : counters.entrySet()) {
+        countersJson.add(MergeStats.jsonString(entry.getKey()) + ":" + entry.getValue());
+      }
+      StringJoiner failuresJson = new StringJoiner(",", "[", "]");
+      for (String failure : failures) {
+        failuresJson.add(MergeStats.jsonString(failure));
+      }
+      return String.format(
+          Locale.ROOT,
+          "{\"merges\":%d,\"skippedMerges\":%d,\"files\":%d,\"skippedFiles\":%d,"
+              + "\"cleanFiles\":%d,\"conflictedFiles\":%d,\"agreeingFiles\":%d,"
+              + "\"disagreeingFiles\":%d,\"unresolvedFiles\":%d,\"failedFiles\":%d,"
+              + "\"latencyMillis\":{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"max\":%.3f},"
+              + "\"counters\":%s,\"failures\":%s}%n",
+          merges,
+          skippedMerges,
+          files,
+          skippedFiles,
+          cleanFiles,
+          conflictedFiles(),
+          agreeingFiles,
+          disagreeingFiles,
+          unresolvedFiles,
+          failures.size(),
+          latencyMillis(50),
+          latencyMillis(90),
+          latencyMillis(99),
+          latencyMillis(100),
+          countersJson,
+          failuresJson);
+    }
+  }
+}
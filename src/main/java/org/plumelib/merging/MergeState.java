@@ -1,15 +1,24 @@
 package org.plumelib.merging;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.StringJoiner;
 import org.checkerframework.checker.lock.qual.GuardSatisfied;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
-import org.checkerframework.checker.nullness.qual.RequiresNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.Pure;
 import org.plumelib.merging.fileformat.ConflictedFile;
-import org.plumelib.util.FilesP;
+import org.plumelib.merging.fileformat.MappedLines;
+import org.plumelib.merging.fileformat.TextFiles;
+import org.plumelib.merging.fileformat.TextFiles.DecodedText;
 
 /** Data about a merge. */
 public class MergeState {
@@ -27,17 +36,23 @@ public class MergeState {
   public final Path mergedPath;
 
   /** The left file contents. */
-  private @MonotonicNonNull List<String> leftFileLines;
+  private @MonotonicNonNull MappedLines leftFileLines;
 
   /** The base file contents. */
-  private @MonotonicNonNull List<String> baseFileLines;
+  private @MonotonicNonNull MappedLines baseFileLines;
 
   /** The right file contents. */
-  private @MonotonicNonNull List<String> rightFileLines;
+  private @MonotonicNonNull MappedLines rightFileLines;
 
   /** The merged file. */
   private @MonotonicNonNull ConflictedFile conflictedFile;
 
+  /**
+   * The charset in which the merged file was read, and in which it is written back. It is UTF-8
+   * unless the merged file is not valid UTF-8.
+   */
+  private Charset mergedFileCharset = StandardCharsets.UTF_8;
+
   /**
    * True if the merged file contains a conflict when this MergeState was constructed, according to
    * the code that created the MergeState.
@@ -108,7 +123,7 @@ public class MergeState {
    */
   public List<String> baseFileLines() {
     if (baseFileLines == null) {
-      baseFileLines = FilesP.readLinesRetainingSeparators(basePath);
+      baseFileLines = mapLines(basePath);
     }
     return baseFileLines;
   }
@@ -120,7 +135,7 @@ public class MergeState {
    */
   public List<String> leftFileLines() {
     if (leftFileLines == null) {
-      leftFileLines = FilesP.readLinesRetainingSeparators(leftPath);
+      leftFileLines = mapLines(leftPath);
     }
     return leftFileLines;
   }
@@ -132,11 +147,33 @@ public class MergeState {
    */
   public List<String> rightFileLines() {
     if (rightFileLines == null) {
-      rightFileLines = FilesP.readLinesRetainingSeparators(rightPath);
+      rightFileLines = mapLines(rightPath);
     }
     return rightFileLines;
   }
 
+  /**
+   * Returns the lines of the given file. The file is memory-mapped, and a line is decoded only when
+   * it is accessed, so a client that examines only part of a large file does not read all of it.
+   *
+   * <p>The file is decoded in the charset of the merged file, because lines of the left, base, and
+   * right files are copied into the merged file and written back in its charset. Accessing a line
+   * that is malformed in that charset throws {@link java.io.UncheckedIOException}.
+   *
+   * @param path a file
+   * @return the lines of the file
+   */
+  private MappedLines mapLines(Path path) {
+    // Reading the merged file sets mergedFileCharset.
+    conflictedFile();
+    try {
+      return MappedLines.map(path, mergedFileCharset);
+    } catch (IOException e) {
+      Main.exitErroneously("Problem reading " + path + ": " + e.getMessage());
+      throw new Error("unreachable");
+    }
+  }
+
   /**
    * Returns true if the merged file has a conflict.
    *
@@ -157,12 +194,17 @@ public class MergeState {
    */
   @SuppressWarnings({
     "allcheckers:purity.not.deterministic.not.sideeffectfree.assign.field", // assign to cache
+    "allcheckers:purity.not.deterministic.call", // read the file to put in cache
     "allcheckers:purity.not.deterministic.object.creation" // create object to put in cache
   })
   @Pure
   public ConflictedFile conflictedFile(@GuardSatisfied MergeState this) {
     if (conflictedFile == null) {
-      conflictedFile = new ConflictedFile(mergedPath, hasConflictInitially);
+      MergeStats.Phase phase = MergeStats.begin("read merged file");
+      DecodedText decoded = TextFiles.read(mergedPath);
+      mergedFileCharset = decoded.charset();
+      conflictedFile = new ConflictedFile(decoded.text(), hasConflictInitially, mergedPath);
+      phase.end();
     }
     return conflictedFile;
   }
@@ -178,35 +220,171 @@ public class MergeState {
   }
 
   /**
-   * Writes the conflicted file back to the file system, if needed.
+   * Writes the conflicted file back to the file system, if needed. The file is written to a
+   * temporary file that then replaces the merged file, so a reader of the merged file never sees a
+   * partially-written file. If the new contents are the same as the merged file's, the merged file
+   * is not touched, so its modification time does not change.
    *
    * @param verbose if true, print diagnostic information
+   * @return true if the merged file was changed
    */
-  public void writeBack(boolean verbose) {
+  public boolean writeBack(boolean verbose) {
+    boolean changed = false;
     if (conflictedFile != null && (conflictedFileChanged || conflictedFile.hasTrivialConflict())) {
-      if (verbose) {
-        System.out.printf("Writing back to %s.%n", mergedPath);
-      }
-      writeBack(mergedPath);
-      // By default, if a mergetool returns a non-zero status, git discards any edits done by the
-      // mergetool, reverting to the state before the mergetool was run from a backup file. To work
-      // around this, such a tool can write partial results to a *_BACKUP_* file (named analogously
-      // to *_LOCAL_*, *_BASE_*, etc.).
-      String baseFileName = basePath.toString();
-      if (baseFileName.contains("_BASE_")) {
-        writeBack(Path.of(baseFileName.replace("_BASE_", "_BACKUP_")));
+      Path tempPath = createTempMergedFile();
+      try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+        TextFiles.write(out, conflictedFile.textPieces(), mergedFileCharset);
+      } catch (IOException e) {
+        deleteIfExists(tempPath);
+        Main.exitErroneously("Problem writing " + mergedPath + ": " + e.getMessage());
+        throw new Error("unreachable");
       }
+      changed = replaceMergedFile(tempPath, verbose);
       conflictedFileChanged = false;
     }
+    return changed;
+  }
+
+  /**
+   * Creates an empty temporary file in the directory of the merged file, to be passed to {@link
+   * #replaceMergedFile}.
+   *
+   * @return a new temporary file
+   */
+  public Path createTempMergedFile() {
+    Path dir = mergedPath.toAbsolutePath().getParent();
+    try {
+      return Files.createTempFile(
+          dir == null ? Path.of(".") : dir, mergedPath.getFileName() + ".", ".tmp");
+    } catch (IOException e) {
+      Main.exitErroneously("Problem creating a temporary file: " + e.getMessage());
+      throw new Error("unreachable");
+    }
   }
 
   /**
-   * Writes the conflicted file back to the given path, unconditionally.
+   * Replaces the merged file by the given file, which is moved rather than copied. This is an
+   * alternative to {@link #writeBack(boolean)} for a client that has written the merged file
+   * itself.
+   *
+   * <p>If the given file has the same contents as the merged file, the given file is deleted and
+   * the merged file is not touched. Tools such as build systems that compare modification times
+   * then do not consider the merged file to have changed.
+   *
+   * <p>The backup file, if any, is a copy of the new merged file. It is not a hard link, because
+   * git may restore the merged file in place. It is written only if it does not already have the
+   * same contents.
+   *
+   * <p>Records in {@link MergeStats} whether the merged file, and the backup file if any, were
+   * written or left unchanged.
    *
-   * @param path the path to which to write the conflicted file
+   * @param newMergedFile the new contents of the merged file; should be in the same directory as
+   *     the merged file, so that it can be renamed, as by {@link #createTempMergedFile}
+   * @param verbose if true, print diagnostic information
+   * @return true if the merged file was changed
    */
-  @RequiresNonNull("conflictedFile")
-  private void writeBack(Path path) {
-    FilesP.writeString(path, conflictedFile().fileContents());
+  public boolean replaceMergedFile(Path newMergedFile, boolean verbose) {
+    boolean changed;
+    try {
+      changed = !sameContents(newMergedFile, mergedPath);
+      if (!changed) {
+        if (verbose) {
+          System.out.printf("%s is unchanged; not writing it.%n", mergedPath);
+        }
+        MergeStats.count("merged file.unchanged");
+        Files.delete(newMergedFile);
+      } else {
+        if (verbose) {
+          System.out.printf("Writing back to %s.%n", mergedPath);
+        }
+        MergeStats.count("merged file.written");
+        moveToMergedPath(newMergedFile);
+      }
+      Path backupPath = backupPath();
+      if (backupPath != null) {
+        if (sameContents(mergedPath, backupPath)) {
+          MergeStats.count("backup file.unchanged");
+        } else {
+          MergeStats.count("backup file.written");
+          Files.copy(mergedPath, backupPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    } catch (IOException e) {
+      deleteIfExists(newMergedFile);
+      Main.exitErroneously("Problem writing " + mergedPath + ": " + e.getMessage());
+      throw new Error("unreachable");
+    }
+    return changed;
+  }
+
+  /**
+   * Returns true if the two files have the same contents. Returns false if either does not exist.
+   * Files of different sizes are not read.
+   *
+   * @param path1 a file
+   * @param path2 a file
+   * @return true if the two files have the same contents
+   * @throws IOException if there is trouble reading the files
+   */
+  private static boolean sameContents(Path path1, Path path2) throws IOException {
+    if (!Files.exists(path1) || !Files.exists(path2)) {
+      return false;
+    }
+    return Files.size(path1) == Files.size(path2) && Files.mismatch(path1, path2) == -1;
+  }
+
+  /**
+   * Moves the given file to the merged file, replacing it.
+   *
+   * @param newMergedFile the new contents of the merged file
+   * @throws IOException if the file cannot be moved
+   */
+  private void moveToMergedPath(Path newMergedFile) throws IOException {
+    try {
+      Files.setPosixFilePermissions(newMergedFile, Files.getPosixFilePermissions(mergedPath));
+    } catch (UnsupportedOperationException e) {
+      // The file system does not support POSIX permissions.
+    }
+    try {
+      Files.move(
+          newMergedFile,
+          mergedPath,
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(newMergedFile, mergedPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Deletes the given file if it exists, ignoring any error.
+   *
+   * @param path the file to delete
+   */
+  static void deleteIfExists(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      // Nothing to do; the file is a temporary file.
+    }
+  }
+
+  /**
+   * Returns the path of the backup file, or null if there is none.
+   *
+   * <p>By default, if a mergetool returns a non-zero status, git discards any edits done by the
+   * mergetool, reverting to the state before the mergetool was run from a backup file. To work
+   * around this, such a tool can write partial results to a *_BACKUP_* file (named analogously to
+   * *_LOCAL_*, *_BASE_*, etc.).
+   *
+   * @return the path of the backup file, or null
+   */
+  private @Nullable Path backupPath() {
+    String baseFileName = basePath.toString();
+    if (baseFileName.contains("_BASE_")) {
+      return Path.of(baseFileName.replace("_BASE_", "_BACKUP_"));
+    } else {
+      return null;
+    }
   }
 }
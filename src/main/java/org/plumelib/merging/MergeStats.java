@@ -0,0 +1,391 @@
+package org.plumelib.merging;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Statistics about one run of the program: the wall-clock time and the allocation of each phase,
+ * and counts of events such as parses and merge conflicts resolved. Statistics are recorded only
+ * between {@link #enable} and {@link #disable}; otherwise, recording does nothing and allocates
+ * nothing.
+ *
+ * <p>A phase may be entered more than once, and the report gives the total over all entries. A
+ * phase may contain another phase, in which case the time of the inner phase is counted in both.
+ */
+final class MergeStats {
+
+  /** The statistics being recorded, or null if statistics are not being recorded. */
+  private static @Nullable MergeStats current = null;
+
+  /** The format of a statistics report. */
+  enum Format {
+    /** A human-readable table. */
+    text,
+    /** A JSON object on a single line, so that a file of reports is in JSON Lines format. */
+    json
+  }
+
+  /**
+   * The measurer of allocation, or null if this JVM cannot measure the memory that a thread
+   * allocates.
+   */
+  private final com.sun.management.@Nullable ThreadMXBean threadBean;
+
+  /** The totals for each phase, in the order that the phases were first entered. */
+  private final Map<String, PhaseTotal> phases = new LinkedHashMap<>();
+
+  /** The value of each counter, in the order that the counters were first incremented. */
+  private final Map<String, Long> counters = new LinkedHashMap<>();
+
+  /** Why each merge conflict that a merger gave up on was abandoned. */
+  private final List<String> gaveUp = new ArrayList<>();
+
+  /** Creates a MergeStats. */
+  MergeStats() {
+    com.sun.management.ThreadMXBean bean = null;
+    try {
+      if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean tb
+          && tb.isThreadAllocatedMemorySupported()) {
+        tb.setThreadAllocatedMemoryEnabled(true);
+        bean = tb;
+      }
+    } catch (UnsupportedOperationException | SecurityException e) {
+      bean = null;
+    }
+    this.threadBean = bean;
+  }
+
+  /**
+   * Starts recording statistics, discarding any that were recorded before.
+   *
+   * @return the statistics that will be recorded
+   */
+  static MergeStats enable() {
+    MergeStats result = new MergeStats();
+    current = result;
+    return result;
+  }
+
+  /** Stops recording statistics. */
+  static void disable() {
+    current = null;
+  }
+
+  /**
+   * Enters a phase. The caller must call {@link Phase#end} on the result when the phase is over.
+   *
+   * @param name the name of the phase
+   * @return the phase, which records its time and allocation when it ends
+   */
+  static Phase begin(String name) {
+    MergeStats stats = current;
+    if (stats == null) {
+      return Phase.NONE;
+    }
+    return new Phase(stats, name, System.nanoTime(), stats.allocatedBytes());
+  }
+
+  /**
+   * Adds one to the given counter.
+   *
+   * @param counter the name of a counter
+   */
+  static void count(String counter) {
+    add(counter, 1);
+  }
+
+  /**
+   * Adds to the given counter.
+   *
+   * @param counter the name of a counter
+   * @param amount the amount to add
+   */
+  static void add(String counter, long amount) {
+    MergeStats stats = current;
+    if (stats != null) {
+      stats.counters.merge(counter, amount, Long::sum);
+    }
+  }
+
+  /**
+   * Records that a merger gave up on a merge conflict.
+   *
+   * @param merger the merger
+   * @param message why the merger gave up, including where the merge conflict is
+   */
+  static void gaveUp(Merger merger, String message) {
+    MergeStats stats = current;
+    if (stats != null) {
+      stats.counters.merge(merger.getClass().getSimpleName() + ".skipped", 1L, Long::sum);
+      stats.gaveUp.add(message);
+    }
+  }
+
+  /**
+   * Returns true if statistics are being recorded. A caller needs this only to avoid computing a
+   * statistic that is expensive to compute.
+   *
+   * @return true if statistics are being recorded
+   */
+  static boolean isEnabled() {
+    return current != null;
+  }
+
+  /**
+   * Returns the number of bytes that the current thread has allocated, or -1 if that cannot be
+   * measured.
+   *
+   * @return the number of bytes that the current thread has allocated, or -1
+   */
+  private long allocatedBytes() {
+    if (threadBean == null) {
+      return -1;
+    }
+    return threadBean.getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Returns the value of the given counter.
+   *
+   * @param counter the name of a counter
+   * @return the value of the counter, or 0 if it has never been incremented
+   */
+  long counter(String counter) {
+    return counters.getOrDefault(counter, 0L);
+  }
+
+  /**
+   * Returns the value of each counter.
+   *
+   * @return the value of each counter, in the order that the counters were first incremented
+   */
+  Map<String, Long> counters() {
+    return Collections.unmodifiableMap(counters);
+  }
+
+  /**
+   * Returns the number of times the given phase was entered.
+   *
+   * @param phase the name of a phase
+   * @return the number of times the phase was entered and ended
+   */
+  int phaseCount(String phase) {
+    PhaseTotal total = phases.get(phase);
+    return total == null ? 0 : total.count;
+  }
+
+  /**
+   * Returns the total wall-clock time of the given phase.
+   *
+   * @param phase the name of a phase
+   * @return the total wall-clock time of the phase, in nanoseconds
+   */
+  long phaseNanos(String phase) {
+    PhaseTotal total = phases.get(phase);
+    return total == null ? 0 : total.nanos;
+  }
+
+  /**
+   * Returns the total number of bytes allocated during the given phase.
+   *
+   * @param phase the name of a phase
+   * @return the total number of bytes allocated during the phase, or -1 if that cannot be measured
+   */
+  long phaseAllocatedBytes(String phase) {
+    PhaseTotal total = phases.get(phase);
+    return total == null ? 0 : total.bytes;
+  }
+
+  /** One entry into a phase. */
+  static final class Phase {
+
+    /** A phase that records nothing, used when statistics are not being recorded. */
+    static final Phase NONE = new Phase(null, "none", 0, 0);
+
+    /** Where to record the phase, or null if it should not be recorded. */
+    private final @Nullable MergeStats stats;
+
+    /** The name of the phase. */
+    private final String name;
+
+    /** The value of {@link System#nanoTime} when the phase was entered. */
+    private final long startNanos;
+
+    /** The number of bytes allocated by the thread when the phase was entered, or -1. */
+    private final long startBytes;
+
+    /**
+     * Creates a Phase.
+     *
+     * @param stats where to record the phase, or null if it should not be recorded
+     * @param name the name of the phase
+     * @param startNanos the value of {@link System#nanoTime} when the phase was entered
+     * @param startBytes the number of bytes allocated by the thread when the phase was entered
+     */
+    private Phase(@Nullable MergeStats stats, String name, long startNanos, long startBytes) {
+      this.stats = stats;
+      this.name = name;
+      this.startNanos = startNanos;
+      this.startBytes = startBytes;
+    }
+
+    /** Ends this phase, recording its time and allocation. */
+    void end() {
+      if (stats == null) {
+        return;
+      }
+      long nanos = System.nanoTime() - startNanos;
+      long bytes = startBytes < 0 ? -1 : stats.allocatedBytes() - startBytes;
+      PhaseTotal total = stats.phases.computeIfAbsent(name, k -> new PhaseTotal());
+      total.count++;
+      total.nanos += nanos;
+      if (bytes < 0 || total.bytes < 0) {
+        total.bytes = -1;
+      } else {
+        total.bytes += bytes;
+      }
+    }
+  }
+
+  /** The totals over all entries into one phase. */
+  private static final class PhaseTotal {
+
+    /** The number of times the phase was entered. */
+    int count = 0;
+
+    /** The total wall-clock time of the phase, in nanoseconds. */
+    long nanos = 0;
+
+    /** The total number of bytes allocated during the phase, or -1 if unknown. */
+    long bytes = 0;
+
+    /** Creates a PhaseTotal. */
+    PhaseTotal() {}
+  }
+
+  /**
+   * Returns a report of these statistics.
+   *
+   * @param format the format of the report
+   * @param file the merged file, to identify the run
+   * @param exitStatus the exit status of the run
+   * @return a report of these statistics, ending with a line separator
+   */
+  String report(Format format, String file, int exitStatus) {
+    return switch (format) {
+      case text -> toText(file, exitStatus);
+      case json -> toJson(file, exitStatus);
+    };
+  }
+
+  /**
+   * Returns a human-readable report of these statistics.
+   *
+   * @param file the merged file, to identify the run
+   * @param exitStatus the exit status of the run
+   * @return a human-readable report of these statistics, ending with a line separator
+   */
+  private String toText(String file, int exitStatus) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("Statistics for %s (exit status %d):%n", file, exitStatus));
+    sb.append(
+        String.format("  %-40s %6s %12s %14s%n", "phase", "count", "time (ms)", "alloc (KiB)"));
+    for (Map.Entry<String, PhaseTotal> entry : phases.entrySet()) {
+      PhaseTotal total = entry.getValue();
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "  %-40s %6d %12.3f %14s%n",
+              entry.getKey(),
+              total.count,
+              total.nanos / 1e6,
+              total.bytes < 0 ? "n/a" : Long.toString(total.bytes / 1024)));
+    }
+    for (Map.Entry<String, Long> entry : counters.entrySet()) {
+      sb.append(String.format("  %-40s %6d%n", entry.getKey(), entry.getValue()));
+    }
+    for (String message : gaveUp) {
+      sb.append(String.format("  %s%n", message));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns these statistics as a JSON object on a single line.
+   *
+   * @param file the merged file, to identify the run
+   * @param exitStatus the exit status of the run
+   * @return these statistics as a JSON object, followed by a line separator
+   */
+  private String toJson(String file, int exitStatus) {
+    StringJoiner phasesJson = new StringJoiner(",", "{", "}");
+    for (Map.Entry<String, PhaseTotal> entry : phases.entrySet()) {
+      PhaseTotal total = entry.getValue();
+      phasesJson.add(
+          jsonString(entry.getKey())
+              + ":{\"count\":"
+              + total.count
+              + ",\"nanos\":"
+              + total.nanos
+              + (total.bytes < 0 ? "" : ",\"allocatedBytes\":" + total.bytes)
+              + "}");
+    }
+    StringJoiner countersJson = new StringJoiner(",", "{", "}");
+    for (Map.Entry<String, Long> entry : counters.entrySet()) {
+      countersJson.add(jsonString(entry.getKey()) + ":" + entry.getValue());
+    }
+    StringJoiner gaveUpJson = new StringJoiner(",", "[", "]");
+    for (String message : gaveUp) {
+      gaveUpJson.add(jsonString(message));
+    }
+    return "{\"file\":"
+        + jsonString(file)
+        + ",\"exitStatus\":"
+        + exitStatus
+        + ",\"phases\":"
+        + phasesJson
+        + ",\"counters\":"
+        + countersJson
+        + ",\"gaveUp\":"
+        + gaveUpJson
+        + "}"
+        + System.lineSeparator();
+  }
+
+  /**
+   * Returns the given string as a JSON string literal.
+   *
+   * @param s a string
+   * @return a JSON string literal whose value is {@code s}
+   */
+  static String jsonString(String s) {
+    StringBuilder sb = new StringBuilder(s.length() + 2);
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"' -> sb.append("\\\"");
+        case '\\' -> sb.append("\\\\");
+        case '\n' -> sb.append("\\n");
+        case '\r' -> sb.append("\\r");
+        case '\t' -> sb.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+        }
+      }
+    }
+    sb.append('"');
+    return sb.toString();
+  }
+}
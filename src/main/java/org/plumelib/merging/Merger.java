@@ -52,7 +52,7 @@ abstract class Merger {
     }
 
     ConflictedFile cf = mergeState.conflictedFile();
-
+    parse(cf);
     @SuppressWarnings("nullness:assignment") // cf.parseError() == null => cf.hunks() != null
     @NonNull List<ConflictElement> hunks = cf.hunks();
     if (verbose) {
@@ -70,10 +70,53 @@ abstract class Merger {
       return;
     }
 
+    String name = this.getClass().getSimpleName();
+    MergeEvents.MergerEvent event = new MergeEvents.MergerEvent();
+    boolean countConflicts = MergeStats.isEnabled() || event.isEnabled();
+    int numConflicts = countConflicts ? cf.mergeConflicts().size() : 0;
+    MergeStats.Phase phase = MergeStats.begin(name + ".resolveConflicts");
     ConflictedFile newCf = resolveConflicts(cf, mergeState);
+    phase.end();
     if (newCf != null) {
       mergeState.setConflictedFile(newCf);
     }
+    int numRemaining =
+        !countConflicts ? 0 : newCf == null ? numConflicts : numRemainingConflicts(newCf);
+    event.finish(this, numConflicts, numRemaining);
+    MergeStats.add(name + ".seen", numConflicts);
+    MergeStats.add(name + ".resolved", numConflicts - numRemaining);
+  }
+
+  /**
+   * Parses the given conflicted file, if it has not been parsed, and records the parse in {@link
+   * MergeStats}.
+   *
+   * @param cf a conflicted file
+   */
+  private static void parse(ConflictedFile cf) {
+    if (!cf.isParsed()) {
+      MergeStats.count("parses");
+      MergeStats.Phase phase = MergeStats.begin("parse");
+      cf.hunks();
+      phase.end();
+    }
+  }
+
+  /**
+   * Returns the number of merge conflicts in a file that {@link #resolveConflicts} returned. It is
+   * used only for statistics and events.
+   *
+   * <p>This implementation counts the merge conflicts in the file, parsing the file if needed. The
+   * result of {@link ConflictedFile#resolveConflicts} is made from hunks, so counting its merge
+   * conflicts does not parse it. A merger that returns a file made from text, and that knows how
+   * many merge conflicts remain, should override this to avoid parsing the file.
+   *
+   * @param newCf a conflicted file that {@link #resolveConflicts} returned
+   * @return the number of merge conflicts in the file, or 0 if it cannot be parsed
+   */
+  int numRemainingConflicts(ConflictedFile newCf) {
+    parse(newCf);
+    return newCf.hunks() == null ? 0 : newCf.mergeConflicts().size();
   }
 
   /**
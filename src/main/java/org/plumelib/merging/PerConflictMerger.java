@@ -0,0 +1,133 @@
+package org.plumelib.merging;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.plumelib.merging.fileformat.ConflictedFile;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.StepBudget;
+
+/**
+ * A merger that considers each merge conflict on its own. The resolutions are applied to the
+ * existing hunks of the conflicted file, so the next merger does not need to re-parse the file.
+ *
+ * <p>The cost of resolving each merge conflict is bounded, so that one oversized conflict (such as
+ * one that contains a minified or generated line) cannot stall the merge. A merger gives up on a
+ * merge conflict that has a side longer than {@link #MAX_FRAGMENT_LENGTH} characters, or whose
+ * regular-expression matching examines more than {@link #MAX_MATCH_STEPS} characters.
+ */
+abstract class PerConflictMerger extends Merger {
+
+  /** The maximum length, in characters, of each side of a merge conflict that a merger examines. */
+  static final int MAX_FRAGMENT_LENGTH = 100_000;
+
+  /** The maximum number of characters that matching may examine, per merge conflict. */
+  static final long MAX_MATCH_STEPS = 10_000_000;
+
+  /**
+   * Creates a PerConflictMerger.
+   *
+   * @param verbose if true, print diagnostics for debugging
+   */
+  public PerConflictMerger(boolean verbose) {
+    super(verbose);
+  }
+
+  @Override
+  @Nullable ConflictedFile resolveConflicts(ConflictedFile cf, MergeState mergeState) {
+
+    Map<MergeConflict, List<String>> resolutions = new IdentityHashMap<>();
+
+    for (MergeConflict mc : cf.mergeConflicts()) {
+      List<String> resolution = resolveConflictWithinBudget(mc);
+      if (resolution != null) {
+        resolutions.put(mc, resolution);
+      }
+    }
+
+    if (resolutions.isEmpty()) {
+      return null;
+    }
+
+    if (verbose) {
+      System.out.printf("%s: resolutions = %s%n", this.getClass().getSimpleName(), resolutions);
+    }
+    return cf.resolveConflicts(resolutions);
+  }
+
+  /**
+   * Returns the lines that should replace the given merge conflict, including its conflict
+   * markers. Returns null if this merger cannot resolve the merge conflict, or if doing so would
+   * exceed the cost bounds; in the latter case, reports why.
+   *
+   * @param mc a merge conflict
+   * @return the resolution of the merge conflict, or null
+   */
+  final @Nullable List<String> resolveConflictWithinBudget(MergeConflict mc) {
+    MergeEvents.ConflictEvent event = new MergeEvents.ConflictEvent();
+    if (limitsFragmentLength()) {
+      int length = Math.max(mc.leftJoined().length(), mc.rightJoined().length());
+      String baseJoined = mc.baseJoined();
+      if (baseJoined != null) {
+        length = Math.max(length, baseJoined.length());
+      }
+      if (length > MAX_FRAGMENT_LENGTH) {
+        reportGivingUp(
+            mc, "a side has " + length + " characters, more than " + MAX_FRAGMENT_LENGTH);
+        event.finish(this, mc, "gave up");
+        return null;
+      }
+    }
+    List<String> result;
+    try {
+      result = resolveConflict(mc, new StepBudget(MAX_MATCH_STEPS));
+    } catch (StepBudget.ExceededException e) {
+      reportGivingUp(mc, e.getMessage());
+      event.finish(this, mc, "gave up");
+      return null;
+    }
+    event.finish(this, mc, result == null ? "unresolved" : "resolved");
+    return result;
+  }
+
+  /**
+   * Reports that this merger gave up on the given merge conflict.
+   *
+   * @param mc the merge conflict
+   * @param reason why the merger gave up
+   */
+  private void reportGivingUp(MergeConflict mc, @Nullable String reason) {
+    String message =
+        String.format(
+            "%s: gave up on the merge conflict at line %d: %s",
+            this.getClass().getSimpleName(), mc.start() + 1, reason);
+    System.out.println(message);
+    System.err.println(message);
+    MergeStats.gaveUp(this, message);
+  }
+
+  /**
+   * Returns true if this merger gives up on merge conflicts that have a side longer than {@link
+   * #MAX_FRAGMENT_LENGTH} characters. A merger whose cost is not governed by the length of the
+   * text, such as one that works on whole lines, may override this to return false.
+   *
+   * @return true if this merger gives up on merge conflicts that have long sides
+   */
+  boolean limitsFragmentLength() {
+    return true;
+  }
+
+  /**
+   * Returns the lines that should replace the given merge conflict, including its conflict
+   * markers. Returns null if this merger cannot resolve the merge conflict. Clients should call
+   * {@link #resolveConflictWithinBudget} instead.
+   *
+   * @param mc a merge conflict
+   * @param budget the budget for regular-expression matching; its {@link StepBudget#charge}
+   *     should wrap each text that is matched
+   * @return the resolution of the merge conflict, or null
+   * @throws StepBudget.ExceededException if matching exceeds the budget
+   */
+  abstract @Nullable List<String> resolveConflict(MergeConflict mc, StepBudget budget);
+}
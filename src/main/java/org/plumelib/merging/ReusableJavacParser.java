@@ -0,0 +1,177 @@
+package org.plumelib.merging;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.parser.ParserFactory;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Options;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Parses Java code with javac, reusing one javac {@link Context} per thread. Creating a context,
+ * with its options, log, name table, and parser factory, costs much more than parsing a short
+ * fragment of code, and {@code JavacParse} creates a new context for every parse.
+ *
+ * <p>javac accumulates some state in a context, such as its name table and the positions at which
+ * it has reported errors. So, a context is replaced by a fresh one after {@link
+ * #PARSES_PER_CONTEXT} parses.
+ */
+final class ReusableJavacParser {
+
+  /** The number of parses after which a context is replaced by a fresh one. */
+  private static final int PARSES_PER_CONTEXT = 1000;
+
+  /** The parser for each thread. */
+  private static final ThreadLocal<ReusableJavacParser> perThread =
+      ThreadLocal.withInitial(ReusableJavacParser::new);
+
+  /** The positions of the errors that javac has reported during the current parse. */
+  private final List<Long> errorPositions = new ArrayList<>();
+
+  /** Records the position of each error that javac reports. */
+  private final DiagnosticListener<JavaFileObject> errorListener =
+      (Diagnostic<? extends JavaFileObject> d) -> {
+        if (d.getKind() == Diagnostic.Kind.ERROR) {
+          errorPositions.add(d.getPosition());
+        }
+      };
+
+  /** The javac log, which reports errors to {@link #errorListener}. */
+  private Log log;
+
+  /** The factory for parsers that use the current context. */
+  private ParserFactory parserFactory;
+
+  /** The number of parses that have used the current context. */
+  private int parsesWithContext;
+
+  /** Creates a ReusableJavacParser. Clients use {@link #forCurrentThread} instead. */
+  private ReusableJavacParser() {
+    Context context = newContext(errorListener);
+    this.log = Log.instance(context);
+    this.parserFactory = ParserFactory.instance(context);
+    this.parsesWithContext = 0;
+  }
+
+  /**
+   * Returns the parser for the current thread.
+   *
+   * @return the parser for the current thread
+   */
+  static ReusableJavacParser forCurrentThread() {
+    return perThread.get();
+  }
+
+  /**
+   * Creates a javac context that reports diagnostics to the given listener.
+   *
+   * @param listener the listener for diagnostics
+   * @return a new javac context
+   */
+  @SuppressWarnings("allcheckers:required.method.not.called") // the file manager opens no files
+  private static Context newContext(DiagnosticListener<JavaFileObject> listener) {
+    Context context = new Context();
+    context.put(DiagnosticListener.class, listener);
+    // By default, the log stops reporting errors after 100 of them.
+    Options.instance(context).put("-Xmaxerrs", Integer.toString(Integer.MAX_VALUE));
+    // Registers itself in the context.
+    new JavacFileManager(context, true, StandardCharsets.UTF_8);
+    return context;
+  }
+
+  /**
+   * Returns, for each of the given texts, whether it is a compilation unit that consists of exactly
+   * one class declaration and has no syntax errors. This is what {@code
+   * JavacParse.parseTypeDeclaration(text).tree() != null} tests.
+   *
+   * <p>If possible, all the texts are parsed together, as one compilation unit. This is possible if
+   * each of them parses to one type declaration that starts at the beginning of the text, so that
+   * each error can be attributed to one of the texts. Otherwise, each text is parsed separately.
+   *
+   * @param texts the texts to parse; each should start with the class declaration itself
+   * @return for each text, true if it parses as a class declaration
+   */
+  boolean[] parsesAsClasses(String... texts) {
+    int[] starts = new int[texts.length];
+    StringBuilder combined = new StringBuilder();
+    for (int i = 0; i < texts.length; i++) {
+      if (i > 0) {
+        combined.append('\n');
+      }
+      starts[i] = combined.length();
+      combined.append(texts[i]);
+    }
+    JCCompilationUnit unit = parse(combined.toString());
+
+    boolean[] result = new boolean[texts.length];
+    List<JCTree> typeDecls = unit.getTypeDecls();
+    boolean attributable = typeDecls.size() == texts.length;
+    for (int i = 0; attributable && i < texts.length; i++) {
+      JCTree typeDecl = typeDecls.get(i);
+      attributable = typeDecl instanceof ClassTree && TreeInfo.getStartPos(typeDecl) == starts[i];
+      result[i] = true;
+    }
+    for (long pos : errorPositions) {
+      if (!attributable || pos == Diagnostic.NOPOS) {
+        attributable = false;
+        break;
+      }
+      int text = texts.length - 1;
+      while (pos < starts[text]) {
+        text--;
+      }
+      result[text] = false;
+    }
+    if (attributable) {
+      return result;
+    }
+
+    for (int i = 0; i < texts.length; i++) {
+      JCCompilationUnit textUnit = parse(texts[i]);
+      result[i] =
+          errorPositions.isEmpty()
+              && textUnit.getTypeDecls().size() == 1
+              && textUnit.getTypeDecls().get(0) instanceof ClassTree;
+    }
+    return result;
+  }
+
+  /**
+   * Parses the given text as a compilation unit. Afterward, {@link #errorPositions} holds the
+   * positions of its syntax errors.
+   *
+   * @param text the text to parse
+   * @return the compilation unit
+   */
+  private JCCompilationUnit parse(String text) {
+    if (parsesWithContext == PARSES_PER_CONTEXT) {
+      Context context = newContext(errorListener);
+      log = Log.instance(context);
+      parserFactory = ParserFactory.instance(context);
+      parsesWithContext = 0;
+    }
+    parsesWithContext++;
+    errorPositions.clear();
+    // Each parse has its own source object, because javac reports at most one error per position
+    // in a given source.
+    log.useSource(
+        new SimpleJavaFileObject(URI.create("string:///MyClass.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+          }
+        });
+    return parserFactory.newParser(text, false, false, false).parseCompilationUnit();
+  }
+}
@@ -0,0 +1,168 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.plumelib.merging.fileformat.ConflictScanner;
+import org.plumelib.merging.fileformat.ConflictScanner.CommonRegion;
+import org.plumelib.merging.fileformat.ConflictScanner.ConflictRegion;
+import org.plumelib.merging.fileformat.ConflictScanner.Region;
+import org.plumelib.merging.fileformat.ConflictedFile.CommonLines;
+import org.plumelib.merging.fileformat.ConflictedFile.ConflictElement;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.LineIndex;
+
+/**
+ * Resolves the conflicts in a merged file one at a time, without reading the whole file into
+ * memory. Memory use is proportional to the largest merge conflict rather than to the file size.
+ * The text outside merge conflicts is copied directly from the merged file to the output.
+ *
+ * <p>Only mergers that consider each merge conflict on its own can be used. The merged file is
+ * assumed to be encoded in UTF-8; a merge conflict that is not valid UTF-8 is left unresolved.
+ */
+class StreamingMerger {
+
+  /** The mergers to run on each merge conflict, in order. */
+  private final List<PerConflictMerger> mergers;
+
+  /** If true, print diagnostics for debugging. */
+  private final boolean verbose;
+
+  /**
+   * Creates a StreamingMerger.
+   *
+   * @param mergers the mergers to run on each merge conflict, in order
+   * @param verbose if true, print diagnostics for debugging
+   */
+  StreamingMerger(List<PerConflictMerger> mergers, boolean verbose) {
+    this.mergers = mergers;
+    this.verbose = verbose;
+  }
+
+  /**
+   * Resolves conflicts in the merged file of the given merge state, and writes the result back to
+   * the file system if any conflict was resolved.
+   *
+   * @param mergeState the merge to be improved; its merged file is side-effected
+   * @return true if the merged file still contains a conflict
+   */
+  boolean merge(MergeState mergeState) {
+    Path mergedPath = mergeState.mergedPath;
+    Path tempPath = mergeState.createTempMergedFile();
+
+    boolean changed = false;
+    boolean hasConflict = false;
+    try (FileChannel in = FileChannel.open(mergedPath, StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+      ConflictScanner scanner = new ConflictScanner(in, StandardCharsets.UTF_8);
+      for (Region region = scanner.next(); region != null; region = scanner.next()) {
+        switch (region) {
+          case CommonRegion cr -> copyRegion(in, cr, out);
+          case ConflictRegion cr -> {
+            List<String> resolution = resolve(cr.element());
+            if (resolution == null) {
+              copyRegion(in, cr, out);
+              hasConflict = true;
+            } else {
+              ByteBuffer bytes = StandardCharsets.UTF_8.encode(LineIndex.join(resolution));
+              while (bytes.hasRemaining()) {
+                out.write(bytes);
+              }
+              changed = true;
+            }
+          }
+        }
+      }
+      String parseError = scanner.parseError();
+      if (parseError != null) {
+        String message = "StreamingMerger: parse error in merged file: " + parseError;
+        System.out.println(message);
+        System.err.println(message);
+        // As for the other mergers, an unparsable file is left unchanged.
+        changed = false;
+        hasConflict = true;
+      }
+    } catch (IOException e) {
+      MergeState.deleteIfExists(tempPath);
+      Main.exitErroneously("Problem merging " + mergedPath + ": " + e.getMessage());
+      throw new Error("unreachable");
+    }
+
+    if (changed) {
+      mergeState.replaceMergedFile(tempPath, verbose);
+    } else {
+      MergeState.deleteIfExists(tempPath);
+    }
+    return hasConflict;
+  }
+
+  /**
+   * Returns the resolution of the given merge conflict, or null if no merger resolves it.
+   *
+   * @param ce a merge conflict, or a CommonLines for a trivial merge conflict, or null for a merge
+   *     conflict whose text could not be decoded
+   * @return the resolution of the merge conflict, or null
+   */
+  private @Nullable List<String> resolve(@Nullable ConflictElement ce) {
+    if (ce == null) {
+      return null;
+    }
+    return switch (ce) {
+      case CommonLines cl -> cl.textLines();
+      case MergeConflict mc -> resolveMergeConflict(mc);
+    };
+  }
+
+  /**
+   * Returns the resolution of the given merge conflict by the first merger that resolves it, or
+   * null if no merger resolves it.
+   *
+   * @param mc a merge conflict
+   * @return the resolution of the merge conflict, or null
+   */
+  private @Nullable List<String> resolveMergeConflict(MergeConflict mc) {
+    for (PerConflictMerger merger : mergers) {
+      String name = merger.getClass().getSimpleName();
+      MergeStats.count(name + ".seen");
+      MergeStats.Phase phase = MergeStats.begin(name + ".resolveConflict");
+      List<String> resolution = merger.resolveConflictWithinBudget(mc);
+      phase.end();
+      if (resolution != null) {
+        MergeStats.count(name + ".resolved");
+        if (verbose) {
+          System.out.printf(
+              "%s: resolution = %s%n", merger.getClass().getSimpleName(), resolution);
+        }
+        return resolution;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Copies a region of one file to the end of another, without reading it into the heap.
+   *
+   * @param in the file to copy from
+   * @param region the region of {@code in} to copy
+   * @param out the file to copy to
+   * @throws IOException if there is trouble reading or writing
+   */
+  private static void copyRegion(FileChannel in, Region region, FileChannel out)
+      throws IOException {
+    long position = region.offset();
+    long remaining = region.length();
+    while (remaining > 0) {
+      long transferred = in.transferTo(position, remaining, out);
+      if (transferred <= 0) {
+        throw new IOException("Unexpected end of file at offset " + position);
+      }
+      position += transferred;
+      remaining -= transferred;
+    }
+  }
+}
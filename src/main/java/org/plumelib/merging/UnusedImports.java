@@ -0,0 +1,385 @@
+package org.plumelib.merging;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Removes unused {@code import} statements from Java code. This makes the same decisions as
+ * google-java-format's {@code RemoveUnusedImports}, but instead of parsing the file with javac, it
+ * scans the file once with a lightweight lexer.
+ *
+ * <p>An import is used if its simple name appears in the code as an identifier that is not the
+ * right-hand side of a {@code .} or {@code ::}, or as the first identifier of a reference in a
+ * javadoc tag such as {@code @link}, {@code @see}, or {@code @throws}. An import from {@code
+ * java.lang} or from the file's own package is always unused, and any other on-demand ({@code *})
+ * import is always used.
+ *
+ * <p>The lexer does not know which identifiers are declarations, and it examines every javadoc
+ * comment, not just those that document a declaration. So, it might keep an import that
+ * google-java-format would remove, but it does not remove an import that google-java-format would
+ * keep.
+ */
+public final class UnusedImports {
+
+  /** The javadoc tags whose argument is a reference to a program element. */
+  private static final Set<String> referenceTags =
+      Set.of("link", "linkplain", "see", "throws", "exception", "value");
+
+  /**
+   * An {@code import} declaration.
+   *
+   * @param start the index of the {@code import} keyword
+   * @param end the index after the terminating semicolon
+   * @param qualifier the name before the last dot, such as {@code java.util} for {@code import
+   *     java.util.List;}
+   * @param simpleName the name after the last dot, which is {@code *} for an on-demand import
+   */
+  private static record ImportDeclaration(int start, int end, String qualifier, String simpleName) {
+
+    /**
+     * Creates an ImportDeclaration.
+     *
+     * @param start the index of the {@code import} keyword
+     * @param end the index after the terminating semicolon
+     * @param qualifier the name before the last dot
+     * @param simpleName the name after the last dot
+     */
+    private ImportDeclaration {}
+  }
+
+  /** The Java code. */
+  private final String text;
+
+  /** The {@code import} declarations in the code, in order. */
+  private final List<ImportDeclaration> imports = new ArrayList<>();
+
+  /** The simple names that the code and its javadoc use. */
+  private final Set<String> usedNames = new HashSet<>();
+
+  /** The name in the {@code package} declaration, or null if there is none. */
+  private @Nullable String packageName = null;
+
+  /**
+   * Creates an UnusedImports for the given code. Call {@link #scan} to populate it.
+   *
+   * @param text the Java code
+   */
+  private UnusedImports(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Returns the given Java code, without its unused imports. Returns the code unchanged if it
+   * cannot be lexed, as google-java-format does if it cannot be parsed.
+   *
+   * <p>Like google-java-format, this removes the text of an unused import, any spaces after it, and
+   * the line separator that follows them (if that is not the end of the file).
+   *
+   * @param contents the contents of a Java file
+   * @return the contents, without unused imports
+   */
+  public static String removeUnusedImports(String contents) {
+    UnusedImports ui = new UnusedImports(contents);
+    if (!ui.scan()) {
+      return contents;
+    }
+    int length = contents.length();
+    String separator = guessLineSeparator(contents);
+    StringBuilder result = null;
+    int copied = 0;
+    for (ImportDeclaration decl : ui.imports) {
+      if (!ui.isUnused(decl)) {
+        continue;
+      }
+      int end = decl.end();
+      int afterSpaces = end;
+      while (afterSpaces < length && contents.charAt(afterSpaces) == ' ') {
+        afterSpaces++;
+      }
+      if (afterSpaces < length) {
+        end = afterSpaces;
+      }
+      if (end + separator.length() < length && contents.startsWith(separator, end)) {
+        end += separator.length();
+      }
+      if (result == null) {
+        result = new StringBuilder(length);
+      }
+      result.append(contents, copied, decl.start());
+      copied = end;
+    }
+    if (result == null) {
+      return contents;
+    }
+    result.append(contents, copied, length);
+    return result.toString();
+  }
+
+  /**
+   * Returns the first line separator in the given text, or {@code "\n"} if there is none.
+   *
+   * @param text some text
+   * @return the line separator that the text uses
+   */
+  private static String guessLineSeparator(String text) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '\n') {
+        return "\n";
+      } else if (c == '\r') {
+        return text.startsWith("\n", i + 1) ? "\r\n" : "\r";
+      }
+    }
+    return "\n";
+  }
+
+  /**
+   * Returns true if the given import is unused.
+   *
+   * @param decl an import declaration in the code
+   * @return true if the import is unused
+   */
+  private boolean isUnused(ImportDeclaration decl) {
+    String qualifier = decl.qualifier();
+    if (qualifier.equals("java.lang") || qualifier.equals(packageName)) {
+      return true;
+    }
+    if (decl.simpleName().equals("*")) {
+      return false;
+    }
+    return !usedNames.contains(decl.simpleName());
+  }
+
+  /** The kind of the previous token, to the extent that {@link #scan} cares. */
+  private enum Previous {
+    /** A {@code .} or {@code ::}, so the next identifier is not a simple name. */
+    SELECT,
+    /** Any other token. */
+    OTHER
+  }
+
+  /**
+   * Scans the code, populating {@link #imports}, {@link #usedNames}, and {@link #packageName}.
+   *
+   * @return false if the code cannot be lexed because it contains an unterminated comment or
+   *     literal, or an unterminated {@code import} or {@code package} declaration
+   */
+  private boolean scan() {
+    int length = text.length();
+    Previous previous = Previous.OTHER;
+    // Non-null while scanning an import or package declaration: the identifiers and "*" in it.
+    List<String> declarationNames = null;
+    int declarationStart = -1;
+    boolean isImport = false;
+
+    int pos = 0;
+    while (pos < length) {
+      char c = text.charAt(pos);
+      if (Character.isWhitespace(c)) {
+        pos++;
+      } else if (text.startsWith("//", pos)) {
+        int lineEnd = pos;
+        while (lineEnd < length && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+          lineEnd++;
+        }
+        pos = lineEnd;
+      } else if (text.startsWith("/*", pos)) {
+        int commentEnd = text.indexOf("*/", pos + 2);
+        if (commentEnd == -1) {
+          return false;
+        }
+        if (commentEnd > pos + 2 && text.charAt(pos + 2) == '*') {
+          scanJavadoc(pos + 3, commentEnd);
+        }
+        pos = commentEnd + 2;
+      } else if (c == '"' || c == '\'') {
+        pos = skipLiteral(pos);
+        if (pos == -1) {
+          return false;
+        }
+        previous = Previous.OTHER;
+      } else if (Character.isJavaIdentifierStart(c)) {
+        int start = pos;
+        pos++;
+        while (pos < length && Character.isJavaIdentifierPart(text.charAt(pos))) {
+          pos++;
+        }
+        String word = text.substring(start, pos);
+        if (declarationNames != null) {
+          if (!(isImport && declarationNames.isEmpty() && word.equals("static"))) {
+            declarationNames.add(word);
+          }
+        } else if (word.equals("import") || word.equals("package")) {
+          declarationNames = new ArrayList<>();
+          declarationStart = start;
+          isImport = word.equals("import");
+        } else if (previous == Previous.OTHER) {
+          // The word is not the right-hand side of a member select or a method reference.
+          usedNames.add(word);
+        }
+        previous = Previous.OTHER;
+      } else if (Character.isDigit(c)
+          || (c == '.' && pos + 1 < length && Character.isDigit(text.charAt(pos + 1)))) {
+        // A numeric literal.  Any letters in it, as in "0x1F" or "10L", are not identifiers.
+        pos++;
+        while (pos < length
+            && (Character.isJavaIdentifierPart(text.charAt(pos)) || text.charAt(pos) == '.')) {
+          pos++;
+        }
+        previous = Previous.OTHER;
+      } else if (text.startsWith("...", pos)) {
+        pos += 3;
+        previous = Previous.OTHER;
+      } else if (c == '.' || text.startsWith("::", pos)) {
+        pos += (c == '.') ? 1 : 2;
+        previous = Previous.SELECT;
+      } else {
+        if (declarationNames != null) {
+          if (c == '*') {
+            declarationNames.add("*");
+          } else if (c == ';') {
+            if (declarationNames.isEmpty()) {
+              return false;
+            }
+            String name = String.join(".", declarationNames);
+            if (isImport) {
+              int lastDot = name.lastIndexOf('.');
+              imports.add(
+                  new ImportDeclaration(
+                      declarationStart,
+                      pos + 1,
+                      name.substring(0, Math.max(lastDot, 0)),
+                      name.substring(lastDot + 1)));
+            } else {
+              packageName = name;
+            }
+            declarationNames = null;
+          }
+        }
+        pos++;
+        previous = Previous.OTHER;
+      }
+    }
+    return declarationNames == null;
+  }
+
+  /**
+   * Returns the index after the string, text block, or character literal that starts at the given
+   * index.
+   *
+   * @param start the index of the opening quote
+   * @return the index after the closing quote, or -1 if the literal is unterminated
+   */
+  private int skipLiteral(int start) {
+    int length = text.length();
+    if (text.startsWith("\"\"\"", start)) {
+      for (int i = start + 3; i < length; i++) {
+        if (text.charAt(i) == '\\') {
+          i++;
+        } else if (text.startsWith("\"\"\"", i)) {
+          return i + 3;
+        }
+      }
+      return -1;
+    }
+    char quote = text.charAt(start);
+    for (int i = start + 1; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == quote) {
+        return i + 1;
+      } else if (c == '\n' || c == '\r') {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds to {@link #usedNames} the names used by references in the given javadoc comment.
+   *
+   * @param start the index of the start of the comment's text, after the {@code /**}
+   * @param end the index of the comment's closing {@code *}{@code /}
+   */
+  private void scanJavadoc(int start, int end) {
+    int at = text.indexOf('@', start);
+    while (at != -1 && at < end) {
+      int tagEnd = at + 1;
+      while (tagEnd < end && Character.isJavaIdentifierPart(text.charAt(tagEnd))) {
+        tagEnd++;
+      }
+      if (referenceTags.contains(text.substring(at + 1, tagEnd))) {
+        scanReference(tagEnd, end);
+      }
+      at = text.indexOf('@', tagEnd);
+    }
+  }
+
+  /**
+   * Adds to {@link #usedNames} the names used by the javadoc reference, such as {@code
+   * Foo#bar(Baz, int)}, that starts after whitespace at the given index: the first identifier of
+   * the reference's qualifier, and the first identifier of each of its parameter types.
+   *
+   * @param start the index after the tag that precedes the reference
+   * @param end the index of the comment's closing {@code *}{@code /}
+   */
+  private void scanReference(int start, int end) {
+    int pos = start;
+    // Skip whitespace, and the leading "*" of a continuation line.
+    while (pos < end && (Character.isWhitespace(text.charAt(pos)) || text.charAt(pos) == '*')) {
+      pos++;
+    }
+    if (pos == start || pos == end) {
+      // The tag is followed by neither whitespace nor a reference, as in "{@link}".
+      return;
+    }
+    pos = addLeadingIdentifier(pos, end);
+    while (pos < end) {
+      char c = text.charAt(pos);
+      if (Character.isJavaIdentifierPart(c) || c == '.' || c == '#' || c == '/') {
+        pos++;
+      } else {
+        break;
+      }
+    }
+    if (pos < end && text.charAt(pos) == '(') {
+      pos++;
+      while (pos < end && text.charAt(pos) != ')') {
+        while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+          pos++;
+        }
+        pos = addLeadingIdentifier(pos, end);
+        while (pos < end && text.charAt(pos) != ',' && text.charAt(pos) != ')') {
+          pos++;
+        }
+        if (pos < end && text.charAt(pos) == ',') {
+          pos++;
+        }
+      }
+    }
+  }
+
+  /**
+   * If an identifier starts at the given index, adds it to {@link #usedNames}.
+   *
+   * @param start an index in the text
+   * @param end the index at which to stop
+   * @return the index after the identifier, or {@code start} if no identifier starts there
+   */
+  private int addLeadingIdentifier(int start, int end) {
+    if (start >= end || !Character.isJavaIdentifierStart(text.charAt(start))) {
+      return start;
+    }
+    int pos = start + 1;
+    while (pos < end && Character.isJavaIdentifierPart(text.charAt(pos))) {
+      pos++;
+    }
+    usedNames.add(text.substring(start, pos));
+    return pos;
+  }
+}
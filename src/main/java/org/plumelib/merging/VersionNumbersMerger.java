@@ -2,27 +2,22 @@ package org.plumelib.merging;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
 import name.fraser.neil.plaintext.diff_match_patch;
 import name.fraser.neil.plaintext.diff_match_patch.Diff;
 import org.checkerframework.checker.nullness.qual.Nullable;
-import org.checkerframework.checker.regex.qual.Regex;
-import org.plumelib.merging.fileformat.ConflictedFile;
 import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
-import org.plumelib.merging.fileformat.RDiff;
-import org.plumelib.util.CollectionsP;
-import org.plumelib.util.CollectionsP.Replacement;
-import org.plumelib.util.IPair;
-import org.plumelib.util.StringsP;
+import org.plumelib.merging.fileformat.StepBudget;
 
 /**
  * This is a merger that handles conflicts where the edits differ only in version numbers. A version
  * number has the form "N.N", "N.N.N", etc., where "N" consists of digits. It merges such conflicts
  * in favor of the largest version number.
  */
-public class VersionNumbersMerger extends Merger {
+public class VersionNumbersMerger extends PerConflictMerger {
 
   /**
    * Creates a VersionNumbersMerger.
@@ -42,167 +37,363 @@ public class VersionNumbersMerger extends Merger {
   }
 
   @Override
-  @Nullable ConflictedFile resolveConflicts(ConflictedFile cf, MergeState mergeState) {
-
-    List<Replacement<String>> replacements = new ArrayList<>();
-
-    for (MergeConflict mc : cf.mergeConflicts()) {
-      String merged = mergedWithVersionNumbers(mc);
-      if (merged != null) {
-        replacements.add(
-            Replacement.of(mc.start(), mc.end() - 1, Collections.singletonList(merged)));
-      }
-    }
-
-    if (replacements.isEmpty()) {
-      return null;
-    }
-
-    if (verbose) {
-      System.out.printf("VersionNumbersMerger: replacements = %s%n", replacements);
-    }
-    List<String> newLines = CollectionsP.replace(cf.lines(), replacements);
-    ConflictedFile result = new ConflictedFile(newLines, cf.path);
-    return result;
+  @Nullable List<String> resolveConflict(MergeConflict mc, StepBudget budget) {
+    // This merger matches no regular expressions, so it does not use the budget.
+    String merged = mergedWithVersionNumbers(mc);
+    return (merged == null ? null : Collections.singletonList(merged));
   }
 
   /**
    * If all the differences are version numbers, then return a string that contains them all.
    * Otherwise, return null.
    *
+   * <p>Each text is split into version-number tokens and other tokens, each side is diffed against
+   * the base token by token (unless the tokens correspond one-to-one), and the two diffs are
+   * merged. Where the sides disagree, each must replace a version number by a version number that
+   * is no smaller, and the larger one wins.
+   *
    * @param mc the merge conflict
    * @return the merged differences or null
    */
-  @SuppressWarnings("PMD.ForLoopVariableCount")
   private @Nullable String mergedWithVersionNumbers(MergeConflict mc) {
-    List<String> baseLines = mc.base();
-    if (baseLines == null) {
+    String baseText = mc.baseJoined();
+    if (baseText == null) {
       throw new Error("Use 3-way diff for VersionNumbersMerger: " + mc);
     }
-    String baseText = StringsP.join("", baseLines);
-    String leftText = StringsP.join("", mc.left());
-    String rightText = StringsP.join("", mc.right());
-    List<Diff> leftDiffs = dmp.diff_main(baseText, leftText);
-    List<Diff> rightDiffs = dmp.diff_main(baseText, rightText);
-    List<RDiff> leftRDiffs = rdiffsForVersionNumbers(leftDiffs);
-    List<RDiff> rightRDiffs = rdiffsForVersionNumbers(rightDiffs);
-    IPair<List<RDiff>, List<RDiff>> aligned = RDiff.align(leftRDiffs, rightRDiffs);
-    if (aligned == null) {
+    List<VersionToken> base = VersionToken.tokenize(baseText);
+    List<VersionToken> left = VersionToken.tokenize(mc.leftJoined());
+    List<VersionToken> right = VersionToken.tokenize(mc.rightJoined());
+
+    // Usually, the sides change only version numbers, so their tokens correspond one-to-one to the
+    // base's tokens and there is no need to diff them.
+    if (left.size() == base.size() && right.size() == base.size()) {
+      StringBuilder result = new StringBuilder();
+      if (mergeRegion(base, left, right, result)) {
+        return result.toString();
+      }
+    }
+
+    // Encode each distinct token as a character, so that diff_match_patch diffs the tokens.
+    Map<VersionToken, Character> codes = new HashMap<>();
+    String baseCodes = encode(base, codes);
+    String leftCodes = encode(left, codes);
+    String rightCodes = encode(right, codes);
+    if (codes.size() > Character.MAX_VALUE) {
       return null;
     }
-    List<RDiff> leftAligned = aligned.first;
-    List<RDiff> rightAligned = aligned.second;
+    List<Edit> leftEdits = edits(dmp.diff_main(baseCodes, leftCodes, false));
+    List<Edit> rightEdits = edits(dmp.diff_main(baseCodes, rightCodes, false));
+    if (verbose) {
+      System.out.printf("left edits: %s%nright edits: %s%n", leftEdits, rightEdits);
+    }
 
     StringBuilder result = new StringBuilder();
-    for (Iterator<RDiff> i1 = leftAligned.iterator(), i2 = rightAligned.iterator();
-        i1.hasNext() && i2.hasNext(); ) {
-      RDiff d1 = i1.next();
-      RDiff d2 = i2.next();
-
-      // if (verbose) {
-      //   System.out.printf("result = %s%n", result);
-      //   System.out.printf("d1 = %s%n", d1);
-      //   System.out.printf("d2 = %s%n", d2);
-      // }
-
-      String pre = d1.preText();
-      assert pre.equals(d2.preText());
-      String post1 = d1.postText();
-      String post2 = d2.postText();
-
-      if (post1.equals(post2)) {
-        result.append(post1);
-      } else if (StringsP.isVersionNumber(pre)
-          && StringsP.isVersionNumber(post1)
-          && StringsP.isVersionNumber(post2)
-          && StringsP.isVersionNumberLE(pre, post1)
-          && StringsP.isVersionNumberLE(pre, post2)) {
-        if (StringsP.isVersionNumberLE(post1, post2)) {
-          result.append(post2);
+    Iterator<Edit> leftItor = leftEdits.iterator();
+    Iterator<Edit> rightItor = rightEdits.iterator();
+    Edit leftEdit = leftItor.hasNext() ? leftItor.next() : null;
+    Edit rightEdit = rightItor.hasNext() ? rightItor.next() : null;
+    // The number of tokens that each side has inserted, minus the number it has deleted, before
+    // the current position in the base.
+    int leftDelta = 0;
+    int rightDelta = 0;
+    int basePos = 0;
+    while (leftEdit != null || rightEdit != null) {
+      // A region is a maximal run of overlapping or abutting edits, from both sides.
+      int start =
+          Math.min(
+              leftEdit == null ? Integer.MAX_VALUE : leftEdit.baseStart(),
+              rightEdit == null ? Integer.MAX_VALUE : rightEdit.baseStart());
+      appendTexts(result, base.subList(basePos, start));
+      int leftStart = start + leftDelta;
+      int rightStart = start + rightDelta;
+      int end = start;
+      while (true) {
+        if (leftEdit != null && leftEdit.baseStart() <= end) {
+          end = Math.max(end, leftEdit.baseEnd());
+          leftDelta += leftEdit.delta();
+          leftEdit = leftItor.hasNext() ? leftItor.next() : null;
+        } else if (rightEdit != null && rightEdit.baseStart() <= end) {
+          end = Math.max(end, rightEdit.baseEnd());
+          rightDelta += rightEdit.delta();
+          rightEdit = rightItor.hasNext() ? rightItor.next() : null;
         } else {
-          result.append(post1);
+          break;
         }
-      } else {
+      }
+      boolean merged =
+          mergeRegion(
+              base.subList(start, end),
+              left.subList(leftStart, end + leftDelta),
+              right.subList(rightStart, end + rightDelta),
+              result);
+      if (!merged) {
         return null;
       }
+      basePos = end;
     }
+    appendTexts(result, base.subList(basePos, base.size()));
     return result.toString();
   }
 
   /**
-   * Merges or splits operations, to make version number changes atomic.
+   * Merges the two sides' versions of a region of the base, in which at least one side differs
+   * from the base. Appends the merged text to {@code result} and returns true, or returns false if
+   * the region cannot be merged.
    *
-   * @param diffs the differences
-   * @return the rewritten diffs
+   * <p>If the three versions have the same number of tokens, they correspond one-to-one.
+   * Otherwise, or if that correspondence does not yield a merge, the left side is diffed against
+   * the right side, and each token where they differ must be a version number that is no smaller
+   * than the base token that it replaced.
+   *
+   * @param base the base's tokens in the region
+   * @param left the left side's tokens in the region
+   * @param right the right side's tokens in the region
+   * @param result where to append the merged text
+   * @return true if the region was merged
    */
-  private List<RDiff> rdiffsForVersionNumbers(List<Diff> diffs) {
-    List<RDiff> rdiffs = RDiff.diffsToRDiffs(diffs);
-    List<RDiff> result = new ArrayList<>(rdiffs.size());
-    RDiff nextRDiff = null;
-    for (RDiff rdiff : rdiffs) {
-      if (nextRDiff == null) {
-        nextRDiff = rdiff;
-      } else {
-        List<RDiff> versionNumberMerged = versionNumberMerge(nextRDiff, rdiff);
-        int size = versionNumberMerged.size() - 1;
-        result.addAll(versionNumberMerged.subList(0, size));
-        nextRDiff = versionNumberMerged.get(size);
-      }
+  private static boolean mergeRegion(
+      List<VersionToken> base,
+      List<VersionToken> left,
+      List<VersionToken> right,
+      StringBuilder result) {
+    if (left.equals(right)) {
+      appendTexts(result, left);
+      return true;
     }
-    if (nextRDiff != null) {
-      result.add(nextRDiff);
+    int size = base.size();
+    if (left.size() == size && right.size() == size) {
+      int resultLength = result.length();
+      int i = 0;
+      while (i < size) {
+        VersionToken merged = mergeTokens(base, left.get(i), i, right.get(i), i);
+        if (merged == null) {
+          break;
+        }
+        result.append(merged.text);
+        i++;
+      }
+      if (i == size) {
+        return true;
+      }
+      result.setLength(resultLength);
     }
-    return result;
+    return mergeRegionByDiff(base, left, right, result);
   }
 
-  /** Matches part of a version number at the beginning of a string. */
-  private static final Pattern versionNumberPrefixPattern =
-      Pattern.compile("^([.0-9]+).*$", Pattern.DOTALL);
+  /**
+   * Merges the two sides' versions of a region of the base by diffing the left side against the
+   * right side. Appends the merged text to {@code result} and returns true, or returns false if
+   * the region cannot be merged.
+   *
+   * @param base the base's tokens in the region
+   * @param left the left side's tokens in the region
+   * @param right the right side's tokens in the region
+   * @param result where to append the merged text
+   * @return true if the region was merged
+   */
+  private static boolean mergeRegionByDiff(
+      List<VersionToken> base,
+      List<VersionToken> left,
+      List<VersionToken> right,
+      StringBuilder result) {
+    Map<VersionToken, Character> codes = new HashMap<>();
+    String baseCodes = encode(base, codes);
+    String leftCodes = encode(left, codes);
+    String rightCodes = encode(right, codes);
+    if (codes.size() > Character.MAX_VALUE) {
+      return false;
+    }
+    int[] leftBase = baseIndices(edits(dmp.diff_main(baseCodes, leftCodes, false)), left.size());
+    int[] rightBase = baseIndices(edits(dmp.diff_main(baseCodes, rightCodes, false)), right.size());
 
-  /** Matches part of a version number at the end of a string. */
-  private static final @Regex(1) Pattern versionNumberSuffixPattern =
-      Pattern.compile("^.*?([.0-9]+)$", Pattern.DOTALL);
+    // In these edits, the left side plays the role of the base.
+    List<Edit> edits = edits(dmp.diff_main(leftCodes, rightCodes, false));
+    StringBuilder merged = new StringBuilder();
+    int leftPos = 0;
+    int rightDelta = 0;
+    for (Edit edit : edits) {
+      if (edit.delta() != 0) {
+        // One side has tokens that the other does not, so they are not just version numbers.
+        return false;
+      }
+      appendTexts(merged, left.subList(leftPos, edit.baseStart()));
+      for (int l = edit.baseStart(); l < edit.baseEnd(); l++) {
+        int r = l + rightDelta;
+        VersionToken token =
+            mergeTokens(base, left.get(l), leftBase[l], right.get(r), rightBase[r]);
+        if (token == null) {
+          return false;
+        }
+        merged.append(token.text);
+      }
+      leftPos = edit.baseEnd();
+      rightDelta += edit.delta();
+    }
+    appendTexts(merged, left.subList(leftPos, left.size()));
+    result.append(merged);
+    return true;
+  }
 
   /**
-   * If the given RDiffs may abut within a version number, split into up to 3 RDiffs, such that the
-   * potential version number is in its own RDiff.
+   * Merges a left token and a right token. If they are equal, returns either. Otherwise, returns
+   * the larger one if both are version numbers that are no smaller than the base tokens they
+   * replaced, and returns null if not. At least one of them must have replaced a base token.
    *
-   * @param r1 a RDiff
-   * @param r2 a RDiff
-   * @return the merge of {@code r1} and {@code r2}
+   * @param base the base's tokens
+   * @param left the left token
+   * @param leftBase the index in {@code base} of the token that {@code left} replaced, or -1
+   * @param right the right token
+   * @param rightBase the index in {@code base} of the token that {@code right} replaced, or -1
+   * @return the merged token, or null
    */
-  private List<RDiff> versionNumberMerge(RDiff r1, RDiff r2) {
-
-    IPair<RDiff, RDiff> pair1 = r1.suffixSplit(versionNumberSuffixPattern);
-    RDiff r1NonVersionNumber = pair1.first;
-    RDiff r1VersionNumber = pair1.second;
-    IPair<RDiff, RDiff> pair2 = r2.prefixSplit(versionNumberPrefixPattern);
-    RDiff r2VersionNumber = pair2.first;
-    RDiff r2NonVersionNumber = pair2.second;
-    if (verbose) {
-      System.out.printf("versionNumberMerge(%s, %s)%n", r1, r2);
-      System.out.printf(
-          "  intermediate: %s %s %s %s%n",
-          r1NonVersionNumber, r1VersionNumber, r2VersionNumber, r2NonVersionNumber);
+  private static @Nullable VersionToken mergeTokens(
+      List<VersionToken> base, VersionToken left, int leftBase, VersionToken right, int rightBase) {
+    if (left.equals(right)) {
+      return left;
+    }
+    if (!left.isVersionNumber()
+        || !right.isVersionNumber()
+        || (leftBase == -1 && rightBase == -1)) {
+      return null;
+    }
+    for (int b : new int[] {leftBase, rightBase}) {
+      if (b != -1) {
+        VersionToken baseToken = base.get(b);
+        if (!baseToken.isVersionNumber()
+            || !baseToken.isVersionNumberLE(left)
+            || !baseToken.isVersionNumberLE(right)) {
+          return null;
+        }
+      }
     }
+    return left.isVersionNumberLE(right) ? right : left;
+  }
 
-    List<RDiff> result = new ArrayList<>(3);
-    if (!r1NonVersionNumber.isNoOp()) {
-      result.add(r1NonVersionNumber);
+  /**
+   * Returns, for each token of a side, the index of the base token that it is or that it replaced,
+   * or -1 if there is none. An unchanged token corresponds to the equal base token. Within an edit,
+   * the side's tokens correspond to the replaced base tokens by position from the start of the
+   * edit, and any further tokens by position from the end of the edit.
+   *
+   * @param edits the edits from the base to the side
+   * @param sideSize the number of tokens of the side
+   * @return the index of the base token for each token of the side, or -1
+   */
+  private static int[] baseIndices(List<Edit> edits, int sideSize) {
+    int[] result = new int[sideSize];
+    int basePos = 0;
+    int sidePos = 0;
+    for (Edit edit : edits) {
+      while (basePos < edit.baseStart()) {
+        result[sidePos++] = basePos++;
+      }
+      int baseLength = edit.baseEnd() - edit.baseStart();
+      for (int i = 0; i < edit.length(); i++) {
+        int j = (i < baseLength) ? i : baseLength - (edit.length() - i);
+        result[sidePos++] = (j < 0) ? -1 : edit.baseStart() + j;
+      }
+      basePos = edit.baseEnd();
     }
-    if (!r1VersionNumber.isNoOp()) {
-      if (r2VersionNumber.isNoOp()) {
-        result.add(r1VersionNumber);
-      } else {
-        result.add(r1VersionNumber.merge(r2VersionNumber));
+    while (sidePos < sideSize) {
+      result[sidePos++] = basePos++;
+    }
+    return result;
+  }
+
+  /**
+   * Appends the texts of the given tokens.
+   *
+   * @param sb where to append the texts
+   * @param tokens the tokens
+   */
+  private static void appendTexts(StringBuilder sb, List<VersionToken> tokens) {
+    for (VersionToken token : tokens) {
+      sb.append(token.text);
+    }
+  }
+
+  /**
+   * Encodes the given tokens as a string with one character per token. Equal tokens are encoded as
+   * the same character. The encoding is only meaningful if, afterward, {@code codes} has no more
+   * than {@code Character.MAX_VALUE} entries.
+   *
+   * @param tokens the tokens to encode
+   * @param codes the character for each token seen so far; is side-effected
+   * @return the encoded tokens
+   */
+  private static String encode(List<VersionToken> tokens, Map<VersionToken, Character> codes) {
+    StringBuilder result = new StringBuilder(tokens.size());
+    for (VersionToken token : tokens) {
+      Character code = codes.get(token);
+      if (code == null) {
+        code = (char) codes.size();
+        codes.put(token, code);
       }
-    } else {
-      if (!r2VersionNumber.isNoOp()) {
-        result.add(r2VersionNumber);
+      result.append(code.charValue());
+    }
+    return result.toString();
+  }
+
+  /**
+   * An edit that replaces the base tokens in [baseStart, baseEnd) by {@code length} tokens of a
+   * side.
+   *
+   * @param baseStart the index of the first base token that is replaced
+   * @param baseEnd the index after the last base token that is replaced
+   * @param length the number of tokens that replace them
+   */
+  private static record Edit(int baseStart, int baseEnd, int length) {
+
+    /**
+     * Returns the number of tokens that this edit inserts, minus the number it deletes.
+     *
+     * @return the change in the number of tokens
+     */
+    int delta() {
+      return length - (baseEnd - baseStart);
+    }
+  }
+
+  /**
+   * Converts the diff of two encoded token sequences to edits.
+   *
+   * @param diffs the diff of the base's tokens and a side's tokens, each encoded by {@link
+   *     #encode}
+   * @return the edits, in order
+   */
+  private static List<Edit> edits(List<Diff> diffs) {
+    List<Edit> result = new ArrayList<>();
+    int basePos = 0;
+    int editStart = -1;
+    int editLength = 0;
+    for (Diff diff : diffs) {
+      int length = diff.text.length();
+      switch (diff.operation) {
+        case EQUAL -> {
+          if (editStart != -1) {
+            result.add(new Edit(editStart, basePos, editLength));
+            editStart = -1;
+            editLength = 0;
+          }
+          basePos += length;
+        }
+        case DELETE -> {
+          if (editStart == -1) {
+            editStart = basePos;
+          }
+          basePos += length;
+        }
+        case INSERT -> {
+          if (editStart == -1) {
+            editStart = basePos;
+          }
+          editLength += length;
+        }
+        default -> throw new Error("unexpected operation " + diff.operation);
       }
     }
-    if (!r2NonVersionNumber.isNoOp()) {
-      result.add(r2NonVersionNumber);
+    if (editStart != -1) {
+      result.add(new Edit(editStart, basePos, editLength));
     }
     return result;
   }
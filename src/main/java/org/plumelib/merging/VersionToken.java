@@ -0,0 +1,160 @@
+package org.plumelib.merging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.checkerframework.checker.lock.qual.GuardSatisfied;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.qual.Pure;
+import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.plumelib.util.StringsP;
+
+/**
+ * A token of text, for {@link VersionNumbersMerger}. A token is either a version number, whose
+ * components are parsed when the text is tokenized, or a maximal run of other text.
+ */
+final class VersionToken {
+
+  /** The text of this token. */
+  final String text;
+
+  /** The components of this version number, or null if this token is not a version number. */
+  private final int @Nullable [] components;
+
+  /**
+   * Creates a VersionToken.
+   *
+   * @param text the text of the token
+   * @param components the components of the version number, or null if the token is not one
+   */
+  private VersionToken(String text, int @Nullable [] components) {
+    this.text = text;
+    this.components = components;
+  }
+
+  /**
+   * Splits the given text into tokens. A run of digits separated by periods is a version-number
+   * token if {@link StringsP#isVersionNumber} accepts it and each component fits in an {@code int};
+   * all other text is gathered into tokens that lie between version numbers.
+   *
+   * @param text the text to split
+   * @return the tokens, whose texts concatenate to {@code text}
+   */
+  static List<VersionToken> tokenize(String text) {
+    List<VersionToken> result = new ArrayList<>();
+    int otherStart = 0;
+    int length = text.length();
+    int i = 0;
+    while (i < length) {
+      if (!isDigit(text.charAt(i))) {
+        i++;
+        continue;
+      }
+      int end = i + 1;
+      while (end < length
+          && (isDigit(text.charAt(end))
+              || (text.charAt(end) == '.' && end + 1 < length && isDigit(text.charAt(end + 1))))) {
+        end++;
+      }
+      String run = text.substring(i, end);
+      int[] components = StringsP.isVersionNumber(run) ? parseComponents(run) : null;
+      if (components != null) {
+        if (otherStart < i) {
+          result.add(new VersionToken(text.substring(otherStart, i), null));
+        }
+        result.add(new VersionToken(run, components));
+        otherStart = end;
+      }
+      i = end;
+    }
+    if (otherStart < length) {
+      result.add(new VersionToken(text.substring(otherStart), null));
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the given character is an ASCII digit.
+   *
+   * @param c a character
+   * @return true if {@code c} is an ASCII digit
+   */
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Returns the components of the given version number, or null if one does not fit in an {@code
+   * int}.
+   *
+   * @param versionNumber digits separated by periods
+   * @return the components of the version number, or null
+   */
+  private static int @Nullable [] parseComponents(String versionNumber) {
+    String[] parts = versionNumber.split("\\.", -1);
+    int[] result = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      try {
+        result[i] = Integer.parseInt(parts[i]);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if this token is a version number.
+   *
+   * @return true if this token is a version number
+   */
+  @Pure
+  boolean isVersionNumber() {
+    return components != null;
+  }
+
+  /**
+   * Returns true if this version number is less than or equal to the given one. Components are
+   * compared numerically from left to right, and if one version number is a prefix of the other, it
+   * is the lesser.
+   *
+   * @param other a version number
+   * @return true if this version number is less than or equal to {@code other}
+   * @throws IllegalStateException if either token is not a version number
+   */
+  boolean isVersionNumberLE(VersionToken other) {
+    int[] these = components;
+    int[] those = other.components;
+    if (these == null || those == null) {
+      throw new IllegalStateException("not a version number: " + (these == null ? this : other));
+    }
+    int common = Math.min(these.length, those.length);
+    for (int i = 0; i < common; i++) {
+      if (these[i] != those[i]) {
+        return these[i] < those[i];
+      }
+    }
+    return these.length <= those.length;
+  }
+
+  @Override
+  @Pure
+  public boolean equals(@GuardSatisfied VersionToken this, @GuardSatisfied @Nullable Object obj) {
+    return obj instanceof VersionToken other && text.equals(other.text);
+  }
+
+  @Override
+  @Pure
+  public int hashCode(@GuardSatisfied VersionToken this) {
+    return text.hashCode();
+  }
+
+  @Override
+  @SideEffectFree
+  public String toString(@GuardSatisfied VersionToken this) {
+    return (components == null ? "Other" : "Version" + Arrays.toString(components))
+        + "{"
+        + text
+        + "}";
+  }
+}
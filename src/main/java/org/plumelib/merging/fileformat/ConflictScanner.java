@@ -0,0 +1,451 @@
+package org.plumelib.merging.fileformat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.plumelib.merging.fileformat.ConflictedFile.ConflictElement;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+
+/**
+ * Reads a file that may contain conflict markers, one region at a time, without reading the whole
+ * file into memory. This is an alternative to {@link ConflictedFile} for very large files.
+ *
+ * <p>The file is read through a fixed-size buffer. A region of common lines is reported as a range
+ * of the file, and its text is never decoded. Only the text of a merge conflict is decoded, so the
+ * memory needed is proportional to the largest merge conflict rather than to the file size.
+ *
+ * <p>Conflict markers are recognized as in {@link ConflictedFile}, and lines are split as in {@link
+ * LineIndex}: a line ends with CRLF, or with any character that the regular expression {@code \R}
+ * matches (LF, VT, FF, CR, NEL, LS, or PS), as encoded in the file's charset. The charset must be a
+ * superset of ASCII. Every conflict marker consists of ASCII characters, so they are recognized
+ * without decoding the file.
+ */
+public final class ConflictScanner {
+
+  /** The size of the read buffer, in bytes. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** The file being scanned. The caller is responsible for closing it. */
+  private final FileChannel channel;
+
+  /** The size of the file being scanned. */
+  private final long size;
+
+  /** The charset of the file being scanned. */
+  private final Charset charset;
+
+  /**
+   * The encoding, in {@link #charset}, of each line separator other than CR. CR is handled
+   * separately, because it may be followed by LF.
+   */
+  private final byte[][] separators;
+
+  /** Whether each byte, indexed by its unsigned value, is the first byte of a separator. */
+  private final boolean[] startsSeparator = new boolean[256];
+
+  /** The read buffer. It holds the bytes of the file starting at {@link #bufferStart}. */
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+  /** The file offset of the first byte in {@link #buffer}. */
+  private long bufferStart = 0;
+
+  /** The file offset of the next byte to be read. */
+  private long position = 0;
+
+  /** The index of the next line to be read. */
+  private int lineNumber = 0;
+
+  /** The file offset of the start of the line most recently read by {@link #readLine}. */
+  private long lineStart;
+
+  /**
+   * If the line most recently read by {@link #readLine} starts with a conflict marker (six
+   * identical characters among {@code <|=>}), this is that character. Otherwise, it is 0.
+   */
+  private byte lineMarker;
+
+  /**
+   * If non-negative, the file offset of a {@code <<<<<<} line that has already been read, but
+   * whose merge conflict has not yet been returned.
+   */
+  private long pendingConflictStart = -1;
+
+  /** The index of the line that starts at {@link #pendingConflictStart}. */
+  private int pendingConflictLine;
+
+  /** The error message indicating why the file could not be parsed, or null. */
+  private @MonotonicNonNull String parseError = null;
+
+  /**
+   * Creates a ConflictScanner.
+   *
+   * @param channel the file to scan; the caller is responsible for closing it
+   * @param charset the charset of the file, used to decode the text of merge conflicts
+   * @throws IOException if the file size cannot be determined
+   */
+  public ConflictScanner(FileChannel channel, Charset charset) throws IOException {
+    this.channel = channel;
+    this.size = channel.size();
+    this.charset = charset;
+    this.separators = encodeSeparators(charset);
+    for (byte[] separator : separators) {
+      startsSeparator[separator[0] & 0xFF] = true;
+    }
+    buffer.limit(0);
+  }
+
+  /**
+   * Returns the encoding, in the given charset, of each line separator other than CR. A line
+   * separator that the charset cannot encode cannot appear in the file, so it is omitted.
+   *
+   * @param charset a charset
+   * @return the encoding of each line separator other than CR
+   * @throws CharacterCodingException if a line separator cannot be encoded
+   */
+  private static byte[][] encodeSeparators(Charset charset) throws CharacterCodingException {
+    CharsetEncoder encoder = charset.newEncoder();
+    List<byte[]> result = new ArrayList<>();
+    for (char c : new char[] {'\n', '\u000B', '\f', '\u0085', '\u2028', '\u2029'}) {
+      if (encoder.canEncode(c)) {
+        ByteBuffer encoded = encoder.encode(CharBuffer.wrap(new char[] {c}));
+        result.add(Arrays.copyOf(encoded.array(), encoded.limit()));
+      }
+    }
+    return result.toArray(new byte[0][]);
+  }
+
+  /**
+   * Returns the error message indicating why the file could not be parsed, or null. If this is
+   * non-null, then the last region returned by {@link #next} is a {@link CommonRegion} for the
+   * unparsable remainder of the file.
+   *
+   * @return the parse error, or null
+   */
+  public @Nullable String parseError() {
+    return parseError;
+  }
+
+  /** A region of a file: either {@link CommonRegion} or {@link ConflictRegion}. */
+  public static sealed interface Region permits CommonRegion, ConflictRegion {
+    /**
+     * Returns the file offset of the start of the region.
+     *
+     * @return the file offset of the start of the region
+     */
+    long offset();
+
+    /**
+     * Returns the length of the region, in bytes.
+     *
+     * @return the length of the region, in bytes
+     */
+    long length();
+  }
+
+  /**
+   * A region of the file that is not in a merge conflict.
+   *
+   * @param offset the file offset of the start of the region
+   * @param length the length of the region, in bytes
+   */
+  public static record CommonRegion(long offset, long length) implements Region {
+
+    /**
+     * Creates a CommonRegion.
+     *
+     * @param offset the file offset of the start of the region
+     * @param length the length of the region, in bytes
+     */
+    public CommonRegion {}
+  }
+
+  /**
+   * A region of the file that is a merge conflict, including its conflict markers.
+   *
+   * @param offset the file offset of the {@code <<<<<<} line
+   * @param length the length of the region, in bytes, through the {@code >>>>>>} line
+   * @param element the merge conflict, or a CommonLines if the merge conflict is trivial, or null
+   *     if the text of the merge conflict is not valid in the file's charset
+   */
+  public static record ConflictRegion(long offset, long length, @Nullable ConflictElement element)
+      implements Region {
+
+    /**
+     * Creates a ConflictRegion.
+     *
+     * @param offset the file offset of the {@code <<<<<<} line
+     * @param length the length of the region, in bytes, through the {@code >>>>>>} line
+     * @param element the merge conflict, or a CommonLines if the merge conflict is trivial, or
+     *     null if the text of the merge conflict is not valid in the file's charset
+     */
+    public ConflictRegion {}
+  }
+
+  /**
+   * Returns the next region of the file, or null if the whole file has been returned. Adjacent
+   * regions are contiguous, and no region is empty.
+   *
+   * @return the next region of the file, or null
+   * @throws IOException if there is trouble reading the file
+   */
+  public @Nullable Region next() throws IOException {
+    if (pendingConflictStart >= 0) {
+      long conflictStart = pendingConflictStart;
+      pendingConflictStart = -1;
+      return readConflict(conflictStart, pendingConflictLine);
+    }
+    if (position == size) {
+      return null;
+    }
+    long commonStart = position;
+    while (position < size) {
+      int thisLine = lineNumber;
+      readLine();
+      if (lineMarker == '<') {
+        if (lineStart == commonStart) {
+          return readConflict(lineStart, thisLine);
+        }
+        pendingConflictStart = lineStart;
+        pendingConflictLine = thisLine;
+        return new CommonRegion(commonStart, lineStart - commonStart);
+      }
+    }
+    return new CommonRegion(commonStart, position - commonStart);
+  }
+
+  /**
+   * Reads a merge conflict whose {@code <<<<<<} line has already been read. If the merge conflict
+   * is not terminated, sets {@link #parseError} and returns the rest of the file as a
+   * CommonRegion.
+   *
+   * @param conflictStart the file offset of the {@code <<<<<<} line
+   * @param conflictLine the index of the {@code <<<<<<} line
+   * @return the merge conflict
+   * @throws IOException if there is trouble reading the file
+   */
+  private Region readConflict(long conflictStart, int conflictLine) throws IOException {
+    // The line numbers in error messages are 1-based, as in ConflictedFile.
+    String startMessage = " line found after <<<<<< on line " + (conflictLine + 1);
+    long leftStart = position;
+    readLinesUntil('|', '=');
+    if (lineMarker == 0) {
+      return unterminated(conflictStart, "No ====== or ||||||" + startMessage);
+    }
+    long leftEnd = lineStart;
+    long baseStart = -1;
+    long baseEnd = -1;
+    if (lineMarker == '|') {
+      startMessage += " and |||||| on line " + lineNumber;
+      baseStart = position;
+      readLinesUntil('=', '=');
+      if (lineMarker == 0) {
+        return unterminated(conflictStart, "No ======" + startMessage);
+      }
+      baseEnd = lineStart;
+    }
+    startMessage += " and ====== on line " + lineNumber;
+    long rightStart = position;
+    readLinesUntil('>', '>');
+    if (lineMarker == 0) {
+      return unterminated(conflictStart, "No >>>>>>" + startMessage);
+    }
+    long rightEnd = lineStart;
+    long conflictEnd = position;
+
+    ConflictElement element;
+    try {
+      List<String> left = decodeLines(leftStart, leftEnd);
+      List<String> base = (baseStart < 0 ? null : decodeLines(baseStart, baseEnd));
+      List<String> right = decodeLines(rightStart, rightEnd);
+      element = MergeConflict.of(base, left, right, conflictLine, lineNumber);
+    } catch (CharacterCodingException e) {
+      element = null;
+    }
+    return new ConflictRegion(conflictStart, conflictEnd - conflictStart, element);
+  }
+
+  /**
+   * Records a parse error, and returns the rest of the file as a CommonRegion.
+   *
+   * @param conflictStart the file offset of the unterminated {@code <<<<<<} line
+   * @param message the parse error message
+   * @return a CommonRegion from {@code conflictStart} to the end of the file
+   */
+  private Region unterminated(long conflictStart, String message) {
+    parseError = message;
+    return new CommonRegion(conflictStart, size - conflictStart);
+  }
+
+  /**
+   * Reads lines until one that starts with a conflict marker made of either of the given
+   * characters, or until the end of the file. Afterward, {@link #lineMarker} is 0 if no such line
+   * was found.
+   *
+   * @param marker1 a conflict marker character
+   * @param marker2 a conflict marker character
+   * @throws IOException if there is trouble reading the file
+   */
+  private void readLinesUntil(char marker1, char marker2) throws IOException {
+    while (position < size) {
+      readLine();
+      if (lineMarker == marker1 || lineMarker == marker2) {
+        return;
+      }
+    }
+    lineMarker = 0;
+  }
+
+  /**
+   * Reads one line, setting {@link #lineStart} and {@link #lineMarker}. Requires that the file
+   * has not been completely read.
+   *
+   * @throws IOException if there is trouble reading the file
+   */
+  private void readLine() throws IOException {
+    lineStart = position;
+    lineNumber++;
+    byte first = 0;
+    int run = 0;
+    while (position < size) {
+      byte b = readByte();
+      if (b == '\r') {
+        if (position < size && peekByte() == '\n') {
+          readByte();
+        }
+        break;
+      } else if (startsSeparator[b & 0xFF] && readSeparatorRest(b)) {
+        break;
+      }
+      if (run == 0) {
+        first = b;
+        run = 1;
+      } else if (run > 0 && run < 6) {
+        run = (b == first) ? run + 1 : -1;
+      }
+    }
+    lineMarker =
+        (run == 6 && (first == '<' || first == '|' || first == '=' || first == '>')) ? first : 0;
+  }
+
+  /**
+   * If the given byte, which was just read, and the bytes after it are a line separator other than
+   * CR, advances past the separator and returns true. Otherwise, returns false without advancing.
+   *
+   * @param first the byte just before {@link #position}
+   * @return true if a line separator was read
+   * @throws IOException if there is trouble reading the file
+   */
+  private boolean readSeparatorRest(byte first) throws IOException {
+    for (byte[] separator : separators) {
+      if (separator[0] != first || position + separator.length - 1 > size) {
+        continue;
+      }
+      int i = 1;
+      while (i < separator.length && byteAt(position + i - 1) == separator[i]) {
+        i++;
+      }
+      if (i == separator.length) {
+        position += separator.length - 1;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the byte at the given file offset, without consuming it. Requires {@code position <=
+   * offset < size}, and that {@code offset - position} is much smaller than the buffer.
+   *
+   * @param offset a file offset
+   * @return the byte at the offset
+   * @throws IOException if there is trouble reading the file
+   */
+  private byte byteAt(long offset) throws IOException {
+    if (offset - bufferStart >= buffer.limit()) {
+      fill();
+    }
+    return buffer.get((int) (offset - bufferStart));
+  }
+
+  /**
+   * Returns the byte at {@link #position} without consuming it. Requires {@code position < size}.
+   *
+   * @return the next byte of the file
+   * @throws IOException if there is trouble reading the file
+   */
+  private byte peekByte() throws IOException {
+    return byteAt(position);
+  }
+
+  /**
+   * Returns the byte at {@link #position} and advances past it. Requires {@code position < size}.
+   *
+   * @return the next byte of the file
+   * @throws IOException if there is trouble reading the file
+   */
+  private byte readByte() throws IOException {
+    byte result = peekByte();
+    position++;
+    return result;
+  }
+
+  /**
+   * Refills {@link #buffer} with the bytes starting at {@link #position}.
+   *
+   * @throws IOException if there is trouble reading the file
+   */
+  private void fill() throws IOException {
+    buffer.clear();
+    bufferStart = position;
+    while (buffer.hasRemaining() && bufferStart + buffer.position() < size) {
+      if (channel.read(buffer, bufferStart + buffer.position()) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+    if (!buffer.hasRemaining()) {
+      throw new IOException("Unexpected end of file at offset " + position);
+    }
+  }
+
+  /**
+   * Reads and decodes the given range of the file, and splits it into lines.
+   *
+   * @param start the file offset of the start of the range
+   * @param end the file offset of the end of the range
+   * @return the lines in the range
+   * @throws IOException if there is trouble reading the file
+   * @throws CharacterCodingException if the range is not valid in the file's charset
+   */
+  private List<String> decodeLines(long start, long end) throws IOException {
+    long length = end - start;
+    if (length > Integer.MAX_VALUE - 8) {
+      // Too large to decode into a String; treat it like undecodable text.
+      throw new CharacterCodingException();
+    }
+    ByteBuffer bytes = ByteBuffer.allocate((int) length);
+    while (bytes.hasRemaining()) {
+      if (channel.read(bytes, start + bytes.position()) < 0) {
+        throw new IOException("Unexpected end of file at offset " + (start + bytes.position()));
+      }
+    }
+    bytes.flip();
+    CharBuffer chars =
+        charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .decode(bytes);
+    return new LineIndex(chars.toString());
+  }
+}
@@ -3,18 +3,19 @@ package org.plumelib.merging.fileformat;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import org.checkerframework.checker.lock.qual.GuardSatisfied;
 import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.checker.nullness.qual.RequiresNonNull;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.plumelib.merging.JavaLibrary;
+import org.plumelib.merging.LineKinds;
 import org.plumelib.merging.Main;
 import org.plumelib.util.CollectionsP;
-import org.plumelib.util.FilesP;
-import org.plumelib.util.StringsP;
 
 // This class is needed because it seems that JGit's MergeResult is produced only by its own tools;
 // that is, one cannot create a JGit MergeResult by parsing a conflicted file.
@@ -89,7 +90,7 @@ public class ConflictedFile {
    */
   @SideEffectFree
   public ConflictedFile(Path path) {
-    this(FilesP.readString(path), path);
+    this(TextFiles.read(path).text(), path);
   }
 
   /**
@@ -100,7 +101,7 @@ public class ConflictedFile {
    */
   @SideEffectFree
   public ConflictedFile(Path path, boolean hasConflict) {
-    this(FilesP.readString(path), hasConflict, path);
+    this(TextFiles.read(path).text(), hasConflict, path);
   }
 
   /**
@@ -147,6 +148,21 @@ public class ConflictedFile {
     this.path = path;
   }
 
+  /**
+   * Create a new ConflictedFile from its hunks. Clients should use {@link #resolveConflicts}.
+   *
+   * @param hunks the hunks of the conflicted file; the line numbers of its merge conflicts must be
+   *     consistent with the hunks
+   * @param hasTrivialConflict true if the file had trivial conflicts that were resolved
+   * @param path the path to the conflicted file
+   */
+  @SideEffectFree
+  private ConflictedFile(List<ConflictElement> hunks, boolean hasTrivialConflict, Path path) {
+    this.hunks = hunks;
+    this.hasTrivialConflict = hasTrivialConflict;
+    this.path = path;
+  }
+
   // //////////////////////////////////////////////////////////////////////
   // End of constructors
   //
@@ -165,6 +181,17 @@ public class ConflictedFile {
     return hunks;
   }
 
+  /**
+   * Returns true if this has been parsed, successfully or not. Parsing happens on demand, when the
+   * hunks are first needed.
+   *
+   * @return true if this has been parsed
+   */
+  @Pure
+  public boolean isParsed() {
+    return hunks != null || parseError != null;
+  }
+
   /**
    * Returns the merge conflicts in this.
    *
@@ -187,6 +214,28 @@ public class ConflictedFile {
     return result;
   }
 
+  /**
+   * Returns a new ConflictedFile in which each of the given merge conflicts is replaced by its
+   * resolution. The result reuses the hunks of this, rather than re-parsing a list of lines. Its
+   * lines and contents are not computed until a client requests them.
+   *
+   * @param resolutions a map from some of the merge conflicts of this to their resolutions
+   * @return a new ConflictedFile with the given merge conflicts resolved
+   */
+  public ConflictedFile resolveConflicts(Map<MergeConflict, List<String>> resolutions) {
+    hunks();
+    if (hunks == null) {
+      Main.exitErroneously("parsing failed for " + path + ": " + parseError());
+      throw new Error("unreachable");
+    }
+    List<ConflictElement> newHunks = new ArrayList<>(hunks.size());
+    for (ConflictElement ce : hunks) {
+      List<String> resolution = (ce instanceof MergeConflict mc ? resolutions.get(mc) : null);
+      newHunks.add(resolution == null ? ce : new CommonLines(resolution));
+    }
+    return new ConflictedFile(renumber(newHunks), hasTrivialConflict, path);
+  }
+
   /**
    * Returns the format error of the conflicted file, or null if the file format is not erroneous.
    *
@@ -259,11 +308,27 @@ public class ConflictedFile {
   @EnsuresNonNull("fileContents")
   public String fileContents(@GuardSatisfied ConflictedFile this) {
     if (fileContents == null) {
-      fileContents = String.join("", lines());
+      fileContents = LineIndex.join(lines());
     }
     return fileContents;
   }
 
+  /**
+   * Returns pieces of text whose concatenation is {@link #fileContents()}. Unlike {@link
+   * #fileContents()}, this does not join the lines of the file into one string, so it is
+   * appropriate for writing the file. Clients should not mutate the return value.
+   *
+   * @return pieces of text whose concatenation is the contents of the conflicted file
+   */
+  @SuppressWarnings({"allcheckers:purity", "lock"}) // pure from clients' point of view
+  @Pure
+  public List<String> textPieces(@GuardSatisfied ConflictedFile this) {
+    if (fileContents != null) {
+      return List.of(fileContents);
+    }
+    return lines();
+  }
+
   /**
    * Returns the lines of the conflicted file, including conflict markers. Clients should not mutate
    * the return value.
@@ -277,7 +342,7 @@ public class ConflictedFile {
   public List<String> lines() {
     if (lines == null) {
       if (fileContents != null) {
-        lines = StringsP.splitLinesRetainSeparators(fileContents);
+        lines = new LineIndex(fileContents);
       } else if (hunks != null) {
         lines = new ArrayList<>();
         for (ConflictElement ce : hunks) {
@@ -353,6 +418,41 @@ public class ConflictedFile {
     /** The line after the conflict --- that is, the line after the one with {@code >>>>>>}. */
     int end;
 
+    /**
+     * The lines from {@link #start} to {@link #end}, including the conflict markers, as they
+     * appeared in the file that was parsed. Null if this merge conflict was not read from a file.
+     * Retaining them lets {@link #toLines} reproduce the original conflict markers.
+     */
+    @Nullable List<String> conflictLines;
+
+    // The following fields cache data derived from the texts, so that each is computed at most once
+    // no matter how many mergers examine this merge conflict.  A merge conflict is immutable, so
+    // the caches never become stale.
+
+    /** The base text as a single string, or null if not yet computed or if the base is unknown. */
+    private @MonotonicNonNull String baseJoined;
+
+    /** The left text as a single string, or null if not yet computed. */
+    private @MonotonicNonNull String leftJoined;
+
+    /** The right text as a single string, or null if not yet computed. */
+    private @MonotonicNonNull String rightJoined;
+
+    /** The classification of the lines of the base text, or null if not yet computed. */
+    private @MonotonicNonNull LineKinds baseKinds;
+
+    /** The classification of the lines of the left text, or null if not yet computed. */
+    private @MonotonicNonNull LineKinds leftKinds;
+
+    /** The classification of the lines of the right text, or null if not yet computed. */
+    private @MonotonicNonNull LineKinds rightKinds;
+
+    /** The comment lines in the left text, or null if not yet computed. */
+    private @MonotonicNonNull List<String> leftCommentLines;
+
+    /** The comment lines in the right text, or null if not yet computed. */
+    private @MonotonicNonNull List<String> rightCommentLines;
+
     /**
      * Creates a MergeConflict. Clients should use {@link #of} instead.
      *
@@ -475,41 +575,193 @@ public class ConflictedFile {
     }
 
     /**
-     * Returns the base text as a single string.
+     * Returns the base text as a single string. The result is cached.
      *
      * @return the base text as a single string
      */
     public @Nullable String baseJoined() {
-      if (base == null) {
-        return null;
-      } else {
-        return String.join("", base);
+      if (baseJoined == null && base != null) {
+        baseJoined = LineIndex.join(base);
       }
+      return baseJoined;
     }
 
     /**
-     * Returns the left text as a single string.
+     * Returns the left text as a single string. The result is cached.
      *
      * @return the left text as a single string
      */
     public String leftJoined() {
-      return String.join("", left);
+      if (leftJoined == null) {
+        leftJoined = LineIndex.join(left);
+      }
+      return leftJoined;
     }
 
     /**
-     * Returns the right text as a single string.
+     * Returns the right text as a single string. The result is cached.
      *
      * @return the right text as a single string
      */
     public String rightJoined() {
-      return String.join("", right);
+      if (rightJoined == null) {
+        rightJoined = LineIndex.join(right);
+      }
+      return rightJoined;
+    }
+
+    /**
+     * Returns the classification of the lines of the base text, or null if the base text is
+     * unknown. The result is cached.
+     *
+     * @return the classification of the lines of the base text, or null
+     */
+    public @Nullable LineKinds baseKinds() {
+      if (baseKinds == null && base != null) {
+        baseKinds = new LineKinds(base);
+      }
+      return baseKinds;
+    }
+
+    /**
+     * Returns the classification of the lines of the left text. The result is cached.
+     *
+     * @return the classification of the lines of the left text
+     */
+    public LineKinds leftKinds() {
+      if (leftKinds == null) {
+        leftKinds = new LineKinds(left);
+      }
+      return leftKinds;
+    }
+
+    /**
+     * Returns the classification of the lines of the right text. The result is cached.
+     *
+     * @return the classification of the lines of the right text
+     */
+    public LineKinds rightKinds() {
+      if (rightKinds == null) {
+        rightKinds = new LineKinds(right);
+      }
+      return rightKinds;
+    }
+
+    /**
+     * Returns the comment lines in the left text. The result is cached. Clients should not
+     * side-effect it.
+     *
+     * @return the comment lines in the left text
+     * @see JavaLibrary#commentLines
+     */
+    public List<String> leftCommentLines() {
+      if (leftCommentLines == null) {
+        leftCommentLines = leftKinds().linesWith(LineKinds.COMMENT);
+      }
+      return leftCommentLines;
+    }
+
+    /**
+     * Returns the comment lines in the right text. The result is cached. Clients should not
+     * side-effect it.
+     *
+     * @return the comment lines in the right text
+     * @see JavaLibrary#commentLines
+     */
+    public List<String> rightCommentLines() {
+      if (rightCommentLines == null) {
+        rightCommentLines = rightKinds().linesWith(LineKinds.COMMENT);
+      }
+      return rightCommentLines;
+    }
+
+    /**
+     * Returns a merge conflict that is the same as this one, but that starts at the given line.
+     *
+     * @param newStart the first line in the result --- that is, the line with {@code <<<<<<}
+     * @return a copy of this that starts at {@code newStart}, or this if it already does
+     */
+    private MergeConflict renumbered(int newStart) {
+      if (newStart == start) {
+        return this;
+      }
+      MergeConflict result = new MergeConflict(base, left, right, newStart, newStart + end - start);
+      result.conflictLines = conflictLines;
+      result.baseJoined = baseJoined;
+      result.leftJoined = leftJoined;
+      result.rightJoined = rightJoined;
+      result.baseKinds = baseKinds;
+      result.leftKinds = leftKinds;
+      result.rightKinds = rightKinds;
+      result.leftCommentLines = leftCommentLines;
+      result.rightCommentLines = rightCommentLines;
+      return result;
+    }
+
+    /**
+     * Splits off the lines at the beginning and at the end of this merge conflict that are the same
+     * in the left, base, and right texts. (If the conflict is in diff style, only the left and
+     * right texts are compared.) {@code git merge-file --diff3} leaves such lines within the
+     * conflict markers, but no merger needs to examine them.
+     *
+     * <p>No text is copied: the prefix, the core, and the suffix are views of this conflict's
+     * lists. The core has the same {@link #start} and {@link #end} as the receiver, because a
+     * resolution of the core (surrounded by the prefix and suffix) replaces the same part of the
+     * file.
+     *
+     * @return this merge conflict, with its common prefix and suffix split off
+     */
+    public TrimmedConflict trim() {
+      int leftSize = left.size();
+      int rightSize = right.size();
+      int baseSize = (base == null ? Integer.MAX_VALUE : base.size());
+      int minSize = Math.min(Math.min(leftSize, rightSize), baseSize);
+
+      int prefixSize = 0;
+      while (prefixSize < minSize && isCommonLine(prefixSize, prefixSize, prefixSize)) {
+        prefixSize++;
+      }
+      int suffixSize = 0;
+      while (suffixSize < minSize - prefixSize
+          && isCommonLine(
+              leftSize - 1 - suffixSize, baseSize - 1 - suffixSize, rightSize - 1 - suffixSize)) {
+        suffixSize++;
+      }
+
+      if (prefixSize == 0 && suffixSize == 0) {
+        return new TrimmedConflict(CommonLines.EMPTY, this, CommonLines.EMPTY);
+      }
+      MergeConflict core =
+          new MergeConflict(
+              (base == null ? null : base.subList(prefixSize, baseSize - suffixSize)),
+              left.subList(prefixSize, leftSize - suffixSize),
+              right.subList(prefixSize, rightSize - suffixSize),
+              start,
+              end);
+      return new TrimmedConflict(
+          new CommonLines(left.subList(0, prefixSize)),
+          core,
+          new CommonLines(left.subList(leftSize - suffixSize, leftSize)));
+    }
+
+    /**
+     * Returns true if the given lines of the left, base, and right texts are all the same. The base
+     * index is ignored if the merge conflict is in diff style.
+     *
+     * @param leftIndex an index into the left text
+     * @param baseIndex an index into the base text
+     * @param rightIndex an index into the right text
+     * @return true if the given lines are all the same
+     */
+    private boolean isCommonLine(int leftIndex, int baseIndex, int rightIndex) {
+      String leftLine = left.get(leftIndex);
+      return leftLine.equals(right.get(rightIndex))
+          && (base == null || leftLine.equals(base.get(baseIndex)));
     }
 
     @Override
     public boolean sameCommentLines() {
-      List<String> leftComments = JavaLibrary.commentLines(left());
-      List<String> rightComments = JavaLibrary.commentLines(right());
-      return leftComments.equals(rightComments);
+      return leftCommentLines().equals(rightCommentLines());
     }
 
     @SuppressWarnings({
@@ -519,6 +771,9 @@ public class ConflictedFile {
     @Pure
     @Override
     public List<String> toLines() {
+      if (conflictLines != null) {
+        return conflictLines;
+      }
       List<String> result =
           new ArrayList<>(left.size() + right.size() + (base == null ? 0 : (base.size() + 1)) + 3);
       // TODO: Use the file separator from the file.
@@ -550,6 +805,9 @@ public class ConflictedFile {
    */
   public static record CommonLines(List<String> textLines) implements ConflictElement {
 
+    /** A CommonLines that contains no lines. */
+    public static final CommonLines EMPTY = new CommonLines(List.of());
+
     /**
      * Creates a CommonLines record.
      *
@@ -573,7 +831,7 @@ public class ConflictedFile {
      * @return the lines as a single string
      */
     public String joinedLines() {
-      return String.join("", textLines);
+      return LineIndex.join(textLines);
     }
 
     /**
@@ -628,10 +886,77 @@ public class ConflictedFile {
     }
   }
 
+  /**
+   * A merge conflict whose common prefix and suffix have been split off. Created by {@link
+   * MergeConflict#trim}.
+   *
+   * @param prefix the lines at the beginning of the conflict that are the same in all its texts
+   * @param core the conflict, without its common prefix and suffix
+   * @param suffix the lines at the end of the conflict that are the same in all its texts
+   */
+  public static record TrimmedConflict(CommonLines prefix, MergeConflict core, CommonLines suffix) {
+
+    /**
+     * Creates a TrimmedConflict record.
+     *
+     * @param prefix the lines at the beginning of the conflict that are the same in all its texts
+     * @param core the conflict, without its common prefix and suffix
+     * @param suffix the lines at the end of the conflict that are the same in all its texts
+     */
+    public TrimmedConflict {}
+
+    /**
+     * Returns true if any lines were trimmed from the original merge conflict.
+     *
+     * @return true if the prefix or the suffix is non-empty
+     */
+    public boolean isTrimmed() {
+      return !prefix.textLines().isEmpty() || !suffix.textLines().isEmpty();
+    }
+
+    /**
+     * Given a resolution of the core, returns a resolution of the original merge conflict.
+     *
+     * @param coreResolution a resolution of {@link #core}
+     * @return the resolution, surrounded by the common prefix and suffix
+     */
+    public List<String> untrim(List<String> coreResolution) {
+      if (!isTrimmed()) {
+        return coreResolution;
+      }
+      List<String> prefixLines = prefix.textLines();
+      List<String> suffixLines = suffix.textLines();
+      List<String> result =
+          new ArrayList<>(prefixLines.size() + coreResolution.size() + suffixLines.size());
+      result.addAll(prefixLines);
+      result.addAll(coreResolution);
+      result.addAll(suffixLines);
+      return result;
+    }
+  }
+
   // //////////////////////////////////////////////////////////////////////
   // Parsing
   //
 
+  /**
+   * Returns true if the given line of this file starts with the given prefix. Does not create the
+   * line, if it has not already been created.
+   *
+   * @param index the index of a line in {@link #lines}
+   * @param prefix a string that contains no line separator
+   * @return true if line {@code index} starts with {@code prefix}
+   */
+  @RequiresNonNull("lines")
+  @Pure
+  private boolean lineStartsWith(int index, String prefix) {
+    if (lines instanceof LineIndex li) {
+      return li.lineStartsWith(index, prefix);
+    } else {
+      return lines.get(index).startsWith(prefix);
+    }
+  }
+
   /** Parse a conflicted file, filling in the {@link #hunks} or {@link #parseError} field. */
   @SuppressWarnings({"allcheckers:purity", "lock"}) // pure from clients' point of view
   @Pure
@@ -644,8 +969,7 @@ public class ConflictedFile {
       int i = 0;
       int lastConflictEnder = -1;
       while (i < numLines) {
-        String line = lines.get(i);
-        if (!line.startsWith("<<<<<<")) {
+        if (!lineStartsWith(i, "<<<<<<")) {
           i++;
           continue;
         }
@@ -668,9 +992,8 @@ public class ConflictedFile {
         List<String> left = null;
         boolean foundBaseSeparator = false;
         while (i < numLines) {
-          line = lines.get(i);
-          foundBaseSeparator = line.startsWith("||||||");
-          if (foundBaseSeparator || line.startsWith("======")) {
+          foundBaseSeparator = lineStartsWith(i, "||||||");
+          if (foundBaseSeparator || lineStartsWith(i, "======")) {
             left = lines.subList(leftConflictMarker + 1, i);
             break;
           } else {
@@ -690,8 +1013,7 @@ public class ConflictedFile {
           baseConflictMarker = i;
           i++;
           while (i < numLines) {
-            line = lines.get(i);
-            if (line.startsWith("======")) {
+            if (lineStartsWith(i, "======")) {
               base = lines.subList(baseConflictMarker + 1, i);
               break;
             }
@@ -710,17 +1032,13 @@ public class ConflictedFile {
           }
         }
         // We have read the left conflict text, and the base conflict text if any.
-        @SuppressWarnings({"interning:not.interned", "PMD.UseEqualsToCompareStrings"})
-        boolean sameLine = (line == lines.get(i));
-        assert sameLine;
-        assert line.startsWith("======")
-            : "line " + (i + 1) + " doesn't start with \"======\": " + line;
+        assert lineStartsWith(i, "======")
+            : "line " + (i + 1) + " doesn't start with \"======\": " + lines.get(i);
         int rightConflictMarker = i;
         i++;
         List<String> right = null;
         while (i < numLines) {
-          line = lines.get(i);
-          if (line.startsWith(">>>>>>")) {
+          if (lineStartsWith(i, ">>>>>>")) {
             right = lines.subList(rightConflictMarker + 1, i);
             break;
           }
@@ -736,7 +1054,9 @@ public class ConflictedFile {
           return;
         }
         ConflictElement ce = MergeConflict.of(base, left, right, conflictStart, i + 1);
-        if (ce instanceof CommonLines) {
+        if (ce instanceof MergeConflict mc) {
+          mc.conflictLines = lines.subList(conflictStart, i + 1);
+        } else {
           hasTrivialConflict = true;
         }
         result.add(ce);
@@ -748,9 +1068,12 @@ public class ConflictedFile {
       if (!lastCommon.isEmpty()) {
         result.add(new CommonLines(lastCommon));
       }
-      hunks = result;
       if (hasTrivialConflict) {
+        // Resolving the trivial conflicts changed the line numbers of the later conflicts.
+        hunks = renumber(result);
         resetLinesAndFileContents();
+      } else {
+        hunks = result;
       }
     } catch (Throwable e) {
       System.out.println(this);
@@ -758,6 +1081,33 @@ public class ConflictedFile {
     }
   }
 
+  /**
+   * Returns hunks whose merge conflicts have line numbers that are consistent with the given hunks.
+   * Needed after some conflicts in {@code hunks} have been replaced by common lines of a different
+   * length.
+   *
+   * @param hunks the hunks of a conflicted file
+   * @return the same hunks, with merge conflicts renumbered as needed
+   */
+  private static List<ConflictElement> renumber(List<ConflictElement> hunks) {
+    List<ConflictElement> result = new ArrayList<>(hunks.size());
+    int lineNumber = 0;
+    for (ConflictElement ce : hunks) {
+      switch (ce) {
+        case CommonLines cl -> {
+          result.add(cl);
+          lineNumber += cl.textLines().size();
+        }
+        case MergeConflict mc -> {
+          MergeConflict renumbered = mc.renumbered(lineNumber);
+          result.add(renumbered);
+          lineNumber = renumbered.end;
+        }
+      }
+    }
+    return result;
+  }
+
   /**
    * Sets {@link #lines} and {@link fileContents} to null. This is a separate method so that a
    * {@code @SuppressWarnings} annotation can be written on it.
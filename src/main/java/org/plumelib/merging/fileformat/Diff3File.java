@@ -2,6 +2,7 @@ package org.plumelib.merging.fileformat;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -10,6 +11,7 @@ import java.util.stream.Collectors;
 import org.checkerframework.checker.lock.qual.GuardSatisfied;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.plumelib.merging.MergeEvents.SubprocessEvent;
 import org.plumelib.util.CollectionsP;
 import org.plumelib.util.FilesP;
 import org.plumelib.util.IPair;
@@ -588,6 +590,7 @@ public final class Diff3File {
       System.out.printf("About to call: %s%n", pbDiff3.command());
     }
     String diff3Output;
+    SubprocessEvent event = new SubprocessEvent();
     try {
       Process pDiff3 = pbDiff3.start();
       diff3Output = new String(pDiff3.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
@@ -596,11 +599,13 @@ public final class Diff3File {
       }
       // It is essential to call waitFor *after* reading the output from getInputStream().
       int diff3ExitCode = pDiff3.waitFor();
+      event.finish(pbDiff3.command(), diff3ExitCode);
       if (diff3ExitCode != 0 && diff3ExitCode != 1) {
         // `diff3` erred, so abort the merge
         throw new Error("diff3 erred (status " + diff3ExitCode + "): " + diff3Output);
       }
     } catch (IOException | InterruptedException e) {
+      event.finish(pbDiff3.command(), -1);
       String eMessage = e.getMessage();
       throw new Diff3ParseException(
           String.format(
@@ -612,6 +617,41 @@ public final class Diff3File {
     return diff3file;
   }
 
+  /**
+   * Runs diff3 on the given texts and returns the result. The texts are written to temporary files
+   * in UTF-8.
+   *
+   * @param leftLines the lines of the left text
+   * @param baseLines the lines of the base text
+   * @param rightLines the lines of the right text
+   * @return the diff3 of the texts
+   * @throws Diff3ParseException if the texts cannot be written, or if there is trouble parsing the
+   *     diff3 output
+   */
+  public static Diff3File from3texts(
+      List<String> leftLines, List<String> baseLines, List<String> rightLines)
+      throws Diff3ParseException {
+    List<Path> paths = new ArrayList<>(3);
+    try {
+      for (List<String> lines : List.of(leftLines, baseLines, rightLines)) {
+        Path path = Files.createTempFile("diff3-", ".txt");
+        paths.add(path);
+        Files.writeString(path, LineIndex.join(lines), StandardCharsets.UTF_8);
+      }
+      return from3paths(paths.get(0), paths.get(1), paths.get(2));
+    } catch (IOException e) {
+      throw new Diff3ParseException("error while writing input to diff3", e);
+    } finally {
+      for (Path path : paths) {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          // Leave the temporary file behind.
+        }
+      }
+    }
+  }
+
   // //////////////////////////////////////////////////////////////////////
 
   /** An error when parsing the output of diff3. This is a checked exception. */
@@ -0,0 +1,229 @@
+package org.plumelib.merging.fileformat;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import org.checkerframework.checker.lock.qual.GuardSatisfied;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.qual.Pure;
+import org.checkerframework.dataflow.qual.SideEffectFree;
+
+/**
+ * An immutable list of the lines of a text, including their line separators. The text is stored
+ * once, as a single string, along with the offset at which each line starts. A line is a substring
+ * of the text; it is created the first time it is requested, and then cached. A sublist is a view
+ * that shares the text, the offsets, and the cache.
+ *
+ * <p>This is equivalent to {@code StringsP.splitLinesRetainSeparators(text)}, but it does not
+ * create a string per line unless a client requests the line, and {@link #text()} returns the text
+ * without joining the lines. A line separator is anything that the regular expression {@code \R}
+ * matches.
+ */
+public final class LineIndex extends AbstractList<String> implements RandomAccess {
+
+  /** The complete text, of which this list is a contiguous range of lines. */
+  private final String buffer;
+
+  /**
+   * The offset in {@link #buffer} of the start of each line, followed by the length of {@link
+   * #buffer}. Line i is {@code buffer.substring(lineStarts[i], lineStarts[i + 1])}. Shared by all
+   * views of the same buffer.
+   */
+  private final int[] lineStarts;
+
+  /** The lines that have been created so far, indexed like {@link #lineStarts}. Shared by views. */
+  private final @Nullable String[] lineCache;
+
+  /** The index, in {@link #lineStarts}, of the first line of this list. */
+  private final int fromLine;
+
+  /** The index, in {@link #lineStarts}, of the line after the last line of this list. */
+  private final int toLine;
+
+  /**
+   * Creates a LineIndex for the given text.
+   *
+   * @param text the text to split into lines
+   */
+  @SideEffectFree
+  public LineIndex(String text) {
+    this.buffer = text;
+    this.lineStarts = computeLineStarts(text);
+    this.lineCache = new String[lineStarts.length - 1];
+    this.fromLine = 0;
+    this.toLine = lineStarts.length - 1;
+  }
+
+  /**
+   * Creates a view of some of the lines of another LineIndex.
+   *
+   * @param other the LineIndex whose text, offsets, and cache to share
+   * @param fromLine the index, in {@code other.lineStarts}, of the first line of the view
+   * @param toLine the index, in {@code other.lineStarts}, of the line after the view
+   */
+  @SideEffectFree
+  private LineIndex(LineIndex other, int fromLine, int toLine) {
+    this.buffer = other.buffer;
+    this.lineStarts = other.lineStarts;
+    this.lineCache = other.lineCache;
+    this.fromLine = fromLine;
+    this.toLine = toLine;
+  }
+
+  /**
+   * Returns the offset of the start of each line in {@code text}, followed by the length of {@code
+   * text}. An empty text has no lines. The last line need not end with a line separator.
+   *
+   * @param text a text
+   * @return the offsets of the line starts, followed by the text length
+   */
+  private static int[] computeLineStarts(String text) {
+    int length = text.length();
+    int[] result = new int[Math.max(16, length / 32)];
+    int numStarts = 0;
+    int i = 0;
+    while (i < length) {
+      if (numStarts + 1 >= result.length) {
+        result = Arrays.copyOf(result, result.length * 2);
+      }
+      result[numStarts++] = i;
+      // Find the end of this line.
+      while (i < length) {
+        char c = text.charAt(i++);
+        if (c == '\r') {
+          if (i < length && text.charAt(i) == '\n') {
+            i++;
+          }
+          break;
+        } else if (isLineSeparatorChar(c)) {
+          break;
+        }
+      }
+    }
+    result[numStarts++] = length;
+    return Arrays.copyOf(result, numStarts);
+  }
+
+  /**
+   * Returns true if the given character, by itself, is a line separator. Carriage return is also
+   * the first character of the two-character line separator CRLF.
+   *
+   * @param c a character
+   * @return true if {@code c} is a line separator
+   */
+  private static boolean isLineSeparatorChar(char c) {
+    switch (c) {
+      case '\n', '\u000B', '\f', '\r', '\u0085', '\u2028', '\u2029' -> {
+        return true;
+      }
+      default -> {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Returns the text of all the lines in the given list, concatenated. Does not copy if the list is
+   * a LineIndex that contains all of its text, and does not split a {@link MappedLines} into lines.
+   *
+   * @param lines a list of lines
+   * @return the concatenation of the lines
+   */
+  public static String join(List<String> lines) {
+    if (lines instanceof LineIndex li) {
+      return li.text();
+    } else if (lines instanceof MappedLines ml) {
+      return ml.text();
+    } else {
+      return String.join("", lines);
+    }
+  }
+
+  /**
+   * Returns the text of this list: the concatenation of its lines.
+   *
+   * @return the text of this list
+   */
+  @Pure
+  public String text(@GuardSatisfied LineIndex this) {
+    return buffer.substring(lineStarts[fromLine], lineStarts[toLine]);
+  }
+
+  /**
+   * Returns true if the given line starts with the given prefix. Does not create the line.
+   *
+   * @param index the index of a line in this list
+   * @param prefix a string that contains no line separator
+   * @return true if line {@code index} starts with {@code prefix}
+   */
+  @Pure
+  public boolean lineStartsWith(@GuardSatisfied LineIndex this, int index, String prefix) {
+    int line = absoluteIndex(index);
+    return buffer.startsWith(prefix, lineStarts[line]);
+  }
+
+  /**
+   * Converts an index into this list to an index into {@link #lineStarts}.
+   *
+   * @param index an index into this list
+   * @return the corresponding index into {@link #lineStarts}
+   */
+  @Pure
+  private int absoluteIndex(@GuardSatisfied LineIndex this, int index) {
+    if (index < 0 || index >= toLine - fromLine) {
+      throw new IndexOutOfBoundsException("Index " + index + ", size " + (toLine - fromLine));
+    }
+    return fromLine + index;
+  }
+
+  @SuppressWarnings({"allcheckers:purity", "lock"}) // pure from clients' point of view
+  @Pure
+  @Override
+  public String get(@GuardSatisfied LineIndex this, int index) {
+    int line = absoluteIndex(index);
+    String result = lineCache[line];
+    if (result == null) {
+      result = buffer.substring(lineStarts[line], lineStarts[line + 1]);
+      lineCache[line] = result;
+    }
+    return result;
+  }
+
+  @Pure
+  @Override
+  public int size(@GuardSatisfied LineIndex this) {
+    return toLine - fromLine;
+  }
+
+  @SideEffectFree
+  @Override
+  public LineIndex subList(@GuardSatisfied LineIndex this, int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException(
+          "fromIndex " + fromIndex + ", toIndex " + toIndex + ", size " + size());
+    }
+    return new LineIndex(this, fromLine + fromIndex, fromLine + toIndex);
+  }
+
+  // Two LineIndexes with the same text have the same lines, because a LineIndex always starts and
+  // ends at a line boundary.  So, this compares the texts rather than creating the lines.
+  @Pure
+  @Override
+  public boolean equals(@GuardSatisfied LineIndex this, @GuardSatisfied @Nullable Object other) {
+    if (!(other instanceof LineIndex li)) {
+      return super.equals(other);
+    }
+    int start = lineStarts[fromLine];
+    int length = lineStarts[toLine] - start;
+    int otherStart = li.lineStarts[li.fromLine];
+    int otherLength = li.lineStarts[li.toLine] - otherStart;
+    return length == otherLength && buffer.regionMatches(start, li.buffer, otherStart, length);
+  }
+
+  @Pure
+  @Override
+  public int hashCode(@GuardSatisfied LineIndex this) {
+    return super.hashCode();
+  }
+}
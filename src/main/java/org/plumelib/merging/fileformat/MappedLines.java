@@ -0,0 +1,255 @@
+package org.plumelib.merging.fileformat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import org.checkerframework.checker.lock.qual.GuardSatisfied;
+import org.checkerframework.dataflow.qual.Pure;
+
+/**
+ * An immutable list of the lines of a file, including their line separators. The file is
+ * memory-mapped rather than read. Line boundaries are found lazily: accessing line i scans the file
+ * only as far as the end of line i. A line is decoded each time it is accessed, and is not cached,
+ * so a client that accesses only a few lines of a large file uses little memory.
+ *
+ * <p>The file is decoded in a charset that the client supplies, usually the one that {@link
+ * TextFiles#read} chose for a related file. Only the lines that are accessed are checked against
+ * the charset: decoding a line that is malformed in it throws {@link UncheckedIOException}.
+ *
+ * <p>{@link #size()} scans the whole file, but {@link #iterator()} does not scan past the lines it
+ * has returned.
+ *
+ * <p>This is equivalent to {@code FilesP.readLinesRetainingSeparators(path)}. A line separator is
+ * anything that the regular expression {@code \R} matches, as in {@link LineIndex}. The file must
+ * be smaller than 2 GiB.
+ */
+public final class MappedLines extends AbstractList<String> implements RandomAccess {
+
+  /** The contents of the file. */
+  private final MappedByteBuffer buffer;
+
+  /** The charset in which the file is decoded: UTF-8 or ISO-8859-1. */
+  private final Charset charset;
+
+  /** True if {@link #charset} is UTF-8. */
+  private final boolean utf8;
+
+  /** Decodes lines in {@link #charset}, reporting malformed input rather than replacing it. */
+  private final CharsetDecoder decoder;
+
+  /**
+   * The offset in {@link #buffer} of the start of each line that has been found so far. If {@link
+   * #scanned} is true, this is followed by the length of the buffer.
+   */
+  private int[] lineStarts = new int[64];
+
+  /** The number of valid elements of {@link #lineStarts}. */
+  private int numStarts = 0;
+
+  /** The offset in {@link #buffer} at which scanning for the next line start resumes. */
+  private int scanPosition = 0;
+
+  /** True if the whole file has been scanned. */
+  private boolean scanned = false;
+
+  /**
+   * Creates a MappedLines for the given buffer.
+   *
+   * @param buffer the contents of a file
+   * @param charset the charset in which to decode the file: UTF-8 or ISO-8859-1
+   */
+  private MappedLines(MappedByteBuffer buffer, Charset charset) {
+    this.buffer = buffer;
+    this.charset = charset;
+    this.utf8 = charset.equals(StandardCharsets.UTF_8);
+    this.decoder =
+        charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+  }
+
+  /**
+   * Maps the given file into memory. The mapping remains valid after this method closes the file.
+   * This reads none of the file's contents.
+   *
+   * @param path a file
+   * @param charset the charset in which to decode the file: UTF-8 or ISO-8859-1
+   * @return the lines of the file
+   * @throws IOException if the file cannot be read or is too large to map
+   */
+  public static MappedLines map(Path path, Charset charset) throws IOException {
+    if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.ISO_8859_1)) {
+      throw new IllegalArgumentException("Unsupported charset: " + charset);
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File is too large (" + size + " bytes): " + path);
+      }
+      return new MappedLines(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), charset);
+    }
+  }
+
+  /**
+   * Scans the file until at least {@code n} line starts are known, or until the whole file has
+   * been scanned.
+   *
+   * @param n the number of line starts required
+   */
+  private void scanTo(@GuardSatisfied MappedLines this, int n) {
+    int limit = buffer.limit();
+    while (numStarts < n && !scanned) {
+      if (numStarts + 1 >= lineStarts.length) {
+        lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+      }
+      if (scanPosition == limit) {
+        lineStarts[numStarts++] = limit;
+        scanned = true;
+        break;
+      }
+      lineStarts[numStarts++] = scanPosition;
+      scanPosition = lineEnd(scanPosition, limit);
+    }
+  }
+
+  /**
+   * Returns the offset just after the line that starts at the given offset.
+   *
+   * @param start the offset of the start of a line
+   * @param limit the length of the buffer
+   * @return the offset of the end of the line, including its line separator
+   */
+  private int lineEnd(@GuardSatisfied MappedLines this, int start, int limit) {
+    int i = start;
+    while (i < limit) {
+      byte b = buffer.get(i++);
+      switch (b) {
+        case '\n', '\u000B', '\f' -> {
+          return i;
+        }
+        case '\r' -> {
+          if (i < limit && buffer.get(i) == '\n') {
+            i++;
+          }
+          return i;
+        }
+        case (byte) 0x85 -> {
+          // U+0085 NEXT LINE, in ISO-8859-1
+          if (!utf8) {
+            return i;
+          }
+        }
+        case (byte) 0xC2 -> {
+          // U+0085 NEXT LINE, in UTF-8
+          if (utf8 && i < limit && buffer.get(i) == (byte) 0x85) {
+            return i + 1;
+          }
+        }
+        case (byte) 0xE2 -> {
+          // U+2028 LINE SEPARATOR and U+2029 PARAGRAPH SEPARATOR, in UTF-8
+          if (utf8
+              && i + 1 < limit
+              && buffer.get(i) == (byte) 0x80
+              && (buffer.get(i + 1) == (byte) 0xA8 || buffer.get(i + 1) == (byte) 0xA9)) {
+            return i + 2;
+          }
+        }
+        default -> {}
+      }
+    }
+    return limit;
+  }
+
+  /**
+   * Returns true if the file has at least {@code index + 1} lines, scanning only as far as needed.
+   *
+   * @param index a line index
+   * @return true if line {@code index} exists
+   */
+  private boolean hasLine(@GuardSatisfied MappedLines this, int index) {
+    // Line `index` exists if the offset after it is known: either the start of the next line, or
+    // the end of the file.
+    scanTo(index + 2);
+    return index + 1 < numStarts;
+  }
+
+  /**
+   * Decodes the bytes between the given offsets.
+   *
+   * @param start the offset of the first byte
+   * @param end the offset after the last byte
+   * @return the decoded text
+   * @throws UncheckedIOException if the bytes are malformed in the file's charset
+   */
+  private String decode(@GuardSatisfied MappedLines this, int start, int end) {
+    try {
+      return decoder.decode(buffer.slice(start, end - start)).toString();
+    } catch (CharacterCodingException e) {
+      throw new UncheckedIOException(
+          "Bytes " + start + "-" + end + " are not valid " + charset.name(), e);
+    }
+  }
+
+  /**
+   * Returns the text of the file. This decodes the whole file, but does not scan it for lines.
+   *
+   * @return the text of the file
+   * @throws UncheckedIOException if the file is malformed in its charset
+   */
+  public String text(@GuardSatisfied MappedLines this) {
+    return decode(0, buffer.limit());
+  }
+
+  @SuppressWarnings({"allcheckers:purity", "lock"}) // pure from clients' point of view
+  @Pure
+  @Override
+  public String get(@GuardSatisfied MappedLines this, int index) {
+    if (index < 0 || !hasLine(index)) {
+      throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+    }
+    return decode(lineStarts[index], lineStarts[index + 1]);
+  }
+
+  @SuppressWarnings({"allcheckers:purity", "lock"}) // pure from clients' point of view
+  @Pure
+  @Override
+  public int size(@GuardSatisfied MappedLines this) {
+    scanTo(Integer.MAX_VALUE);
+    return numStarts - 1;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      /** The index of the next line to return. */
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return hasLine(next);
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return get(next++);
+      }
+    };
+  }
+}
@@ -138,16 +138,18 @@ public abstract sealed class RDiff permits RDiff.Replace, RDiff.Insert, RDiff.Eq
    * @param p a pattern that matches text that should be in the first part. It must be of the form
    *     "^(PATTERN).*$", where the PATTERN subpattern matches text that should be in the first
    *     part.
+   * @param budget the budget for matching {@code p}
    * @return a pair of RDiffs that are together equivalent to this one
+   * @throws StepBudget.ExceededException if matching exceeds the budget
    */
   @SuppressWarnings("nullness:dereference.of.nullable") // p is @Regex(1) => group(1) is non-null
-  public IPair<RDiff, RDiff> prefixSplit(@Regex(1) Pattern p) {
+  public IPair<RDiff, RDiff> prefixSplit(@Regex(1) Pattern p, StepBudget budget) {
     Matcher m;
 
     String before = preText();
     String before1;
     String before2;
-    m = p.matcher(before);
+    m = p.matcher(budget.charge(before));
     if (m.matches()) {
       before1 = m.group(1);
       before2 = before.substring(before1.length());
@@ -159,7 +161,7 @@ public abstract sealed class RDiff permits RDiff.Replace, RDiff.Insert, RDiff.Eq
     String after = postText();
     String after1;
     String after2;
-    m = p.matcher(after);
+    m = p.matcher(budget.charge(after));
     if (m.matches()) {
       after1 = m.group(1);
       after2 = after.substring(after1.length());
@@ -178,16 +180,18 @@ public abstract sealed class RDiff permits RDiff.Replace, RDiff.Insert, RDiff.Eq
    * @param p a pattern that matches characters that should be in the second part. It must be of the
    *     form "^.*?(PATTERN)$", where the PATTERN subpattern matches text that should be in the
    *     second part.
+   * @param budget the budget for matching {@code p}
    * @return a pair of RDiffs that are together equivalent to this one
+   * @throws StepBudget.ExceededException if matching exceeds the budget
    */
   @SuppressWarnings("nullness:dereference.of.nullable") // p is @Regex(1) => group(1) is non-null
-  public IPair<RDiff, RDiff> suffixSplit(@Regex(1) Pattern p) {
+  public IPair<RDiff, RDiff> suffixSplit(@Regex(1) Pattern p, StepBudget budget) {
     Matcher m;
 
     String before = preText();
     String before1;
     String before2;
-    m = p.matcher(before);
+    m = p.matcher(budget.charge(before));
     if (m.matches()) {
       before2 = m.group(1);
       before1 = before.substring(0, before.length() - before2.length());
@@ -200,7 +204,7 @@ public abstract sealed class RDiff permits RDiff.Replace, RDiff.Insert, RDiff.Eq
     String after = postText();
     String after1;
     String after2;
-    m = p.matcher(after);
+    m = p.matcher(budget.charge(after));
     if (m.matches()) {
       after2 = m.group(1);
       after1 = after.substring(0, after.length() - after2.length());
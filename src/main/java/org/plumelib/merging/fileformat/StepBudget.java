@@ -0,0 +1,121 @@
+package org.plumelib.merging.fileformat;
+
+import org.checkerframework.checker.lock.qual.GuardSatisfied;
+import org.checkerframework.dataflow.qual.Pure;
+import org.checkerframework.dataflow.qual.SideEffectFree;
+
+/**
+ * A limit on the number of characters that regular-expression matching may examine. A regular
+ * expression that backtracks can examine each character of its input many times, so on a long
+ * input, matching can take much longer than its length suggests.
+ *
+ * <p>To limit a match, match against {@link #charge charge(text)} instead of {@code text}. Each
+ * character that the matcher reads consumes one step of the budget, and once the budget is used
+ * up, reading throws {@link ExceededException}. One budget can be shared by many matches, to limit
+ * their total cost.
+ */
+public final class StepBudget {
+
+  /** Thrown when work exceeds its budget. */
+  public static final class ExceededException extends RuntimeException {
+
+    /** Unique identifier for serialization. If you add or remove fields, change this number. */
+    private static final long serialVersionUID = 20_261_018L;
+
+    /**
+     * Creates an ExceededException.
+     *
+     * @param message why the work was abandoned
+     */
+    public ExceededException(String message) {
+      super(message);
+    }
+  }
+
+  /** The number of steps that the budget initially permits. */
+  private final long limit;
+
+  /** The number of steps that remain. */
+  private long remaining;
+
+  /**
+   * Creates a StepBudget.
+   *
+   * @param limit the number of steps that the budget permits
+   */
+  public StepBudget(long limit) {
+    this.limit = limit;
+    this.remaining = limit;
+  }
+
+  /**
+   * Returns a budget that is never exceeded.
+   *
+   * @return a budget that is never exceeded
+   */
+  public static StepBudget unlimited() {
+    return new StepBudget(Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a view of the given text, each of whose character reads consumes a step of this budget.
+   *
+   * @param text some text
+   * @return a view of the text that charges this budget for each character read
+   */
+  public CharSequence charge(CharSequence text) {
+    return new Charged(text);
+  }
+
+  /**
+   * Consumes one step of this budget.
+   *
+   * @throws ExceededException if the budget has been used up
+   */
+  private void step() {
+    if (--remaining < 0) {
+      remaining = 0;
+      throw new ExceededException("regular-expression matching exceeded " + limit + " steps");
+    }
+  }
+
+  /** A view of some text, each of whose character reads consumes a step of the budget. */
+  private final class Charged implements CharSequence {
+
+    /** The text. */
+    private final CharSequence text;
+
+    /**
+     * Creates a Charged.
+     *
+     * @param text the text
+     */
+    Charged(CharSequence text) {
+      this.text = text;
+    }
+
+    @Override
+    @Pure
+    public int length(@GuardSatisfied Charged this) {
+      return text.length();
+    }
+
+    @Override
+    public char charAt(@GuardSatisfied Charged this, int index) {
+      step();
+      return text.charAt(index);
+    }
+
+    @Override
+    @SideEffectFree
+    public CharSequence subSequence(@GuardSatisfied Charged this, int start, int end) {
+      return new Charged(text.subSequence(start, end));
+    }
+
+    @Override
+    @SideEffectFree
+    public String toString(@GuardSatisfied Charged this) {
+      return text.toString();
+    }
+  }
+}
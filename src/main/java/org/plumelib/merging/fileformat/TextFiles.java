@@ -0,0 +1,179 @@
+package org.plumelib.merging.fileformat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.checkerframework.dataflow.qual.SideEffectFree;
+
+/**
+ * Reads and writes text files without altering bytes that a merger did not change.
+ *
+ * <p>A file is decoded as UTF-8 if it is valid UTF-8. Otherwise, it is decoded as ISO-8859-1, which
+ * maps each byte to one character, so that a file in some other encoding, such as a legacy Latin-1
+ * source file, can still be merged. Conflict markers and line separators are ASCII, so they are
+ * recognized either way. Writing the text back in the charset that it was read in reproduces the
+ * original bytes of every line that was not changed.
+ */
+public final class TextFiles {
+
+  /** The size of the buffer through which {@link #write} encodes text, in bytes. */
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  /** Do not instantiate. */
+  private TextFiles() {
+    throw new Error("do not instantiate");
+  }
+
+  /**
+   * The text of a file, and the charset it was decoded with.
+   *
+   * @param text the text of the file
+   * @param charset the charset that the file was decoded with; write the text back in this charset
+   */
+  public static record DecodedText(String text, Charset charset) {
+
+    /**
+     * Creates a DecodedText.
+     *
+     * @param text the text of the file
+     * @param charset the charset that the file was decoded with
+     */
+    public DecodedText {}
+  }
+
+  /**
+   * Reads the given file, as UTF-8 if possible and otherwise as ISO-8859-1.
+   *
+   * @param path the file to read
+   * @return the text of the file, and its charset
+   * @throws UncheckedIOException if the file cannot be read
+   */
+  @SuppressWarnings("allcheckers:purity.not.sideeffectfree.call") // reads the file system
+  @SideEffectFree
+  public static DecodedText read(Path path) {
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return decode(bytes);
+  }
+
+  /**
+   * Decodes the given bytes, as UTF-8 if possible and otherwise as ISO-8859-1.
+   *
+   * @param bytes the contents of a file
+   * @return the text, and the charset it was decoded with
+   */
+  @SuppressWarnings("allcheckers:purity.not.sideeffectfree.call") // creates and uses a decoder
+  @SideEffectFree
+  public static DecodedText decode(byte[] bytes) {
+    try {
+      CharBuffer chars =
+          StandardCharsets.UTF_8
+              .newDecoder()
+              .onMalformedInput(CodingErrorAction.REPORT)
+              .onUnmappableCharacter(CodingErrorAction.REPORT)
+              .decode(ByteBuffer.wrap(bytes));
+      return new DecodedText(chars.toString(), StandardCharsets.UTF_8);
+    } catch (CharacterCodingException e) {
+      return new DecodedText(
+          new String(bytes, StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+    }
+  }
+
+  /**
+   * Writes the concatenation of the given pieces of text to the given channel, in the given
+   * charset. The text is encoded through a fixed-size buffer, so the pieces are never joined into
+   * one string or one array of bytes.
+   *
+   * @param out the channel to write to
+   * @param pieces the text to write; no piece may end in the middle of a surrogate pair
+   * @param charset the charset to encode the text in
+   * @throws IOException if the channel cannot be written
+   * @throws CharacterCodingException if the text contains a character that the charset cannot
+   *     represent
+   */
+  public static void write(WritableByteChannel out, List<String> pieces, Charset charset)
+      throws IOException {
+    CharsetEncoder encoder =
+        charset
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    for (String piece : pieces) {
+      CharBuffer chars = CharBuffer.wrap(piece);
+      while (true) {
+        CoderResult result = encoder.encode(chars, buffer, false);
+        if (result.isError()) {
+          result.throwException();
+        } else if (result.isOverflow()) {
+          drain(out, buffer);
+        } else if (chars.hasRemaining()) {
+          // The piece ends with half of a surrogate pair.
+          throw new MalformedInputException(chars.remaining());
+        } else {
+          break;
+        }
+      }
+    }
+    CharBuffer empty = CharBuffer.allocate(0);
+    while (encoder.encode(empty, buffer, true).isOverflow()) {
+      drain(out, buffer);
+    }
+    while (encoder.flush(buffer).isOverflow()) {
+      drain(out, buffer);
+    }
+    drain(out, buffer);
+  }
+
+  /**
+   * Writes the contents of the given buffer to the given channel, and clears the buffer.
+   *
+   * @param out the channel to write to
+   * @param buffer the bytes to write, in write mode; that is, before {@code flip()}
+   * @throws IOException if the channel cannot be written
+   */
+  private static void drain(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Encodes the given text in the given charset.
+   *
+   * @param text the text to encode
+   * @param charset the charset to encode the text in
+   * @return the encoded text
+   * @throws CharacterCodingException if the text contains a character that the charset cannot
+   *     represent
+   */
+  public static byte[] encode(String text, Charset charset) throws CharacterCodingException {
+    ByteBuffer bb =
+        charset
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .encode(CharBuffer.wrap(text));
+    byte[] result = new byte[bb.remaining()];
+    bb.get(result);
+    return result;
+  }
+}
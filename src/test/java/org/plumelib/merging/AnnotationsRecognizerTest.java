@@ -0,0 +1,113 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+final class AnnotationsRecognizerTest {
+
+  /** Creates a new AnnotationsRecognizerTest. */
+  AnnotationsRecognizerTest() {}
+
+  /**
+   * Asserts that each recognizer agrees with the regex that specifies it.
+   *
+   * @param s the text to recognize
+   */
+  void assertAgrees(String s) {
+    assertEquals(
+        JavaAnnotationsMerger.annotationsPattern.matcher(s).matches(),
+        AnnotationsRecognizer.isAnnotations(s),
+        s);
+    assertEquals(
+        JavaAnnotationsMerger.thisPattern.matcher(s).matches(),
+        AnnotationsRecognizer.isReceiverParameter(s),
+        s);
+    assertEquals(
+        JavaAnnotationsMerger.extendsPattern.matcher(s).matches(),
+        AnnotationsRecognizer.isExtendsObject(s),
+        s);
+  }
+
+  @Test
+  void testIsAnnotations() {
+    assertTrue(AnnotationsRecognizer.isAnnotations("@Nullable"));
+    assertTrue(AnnotationsRecognizer.isAnnotations("@A(1) final\n@B (x = {\"a\", \"}\", })"));
+    assertTrue(AnnotationsRecognizer.isAnnotations("@A(value = -.5, b = java . lang.Object)"));
+    assertFalse(AnnotationsRecognizer.isAnnotations(""));
+    assertFalse(AnnotationsRecognizer.isAnnotations("@A "));
+    assertFalse(AnnotationsRecognizer.isAnnotations("finally"));
+    assertFalse(AnnotationsRecognizer.isAnnotations("@java.lang.Deprecated"));
+    assertFalse(AnnotationsRecognizer.isAnnotations("@A(1,)"));
+    assertFalse(AnnotationsRecognizer.isAnnotations("@A({{1}})"));
+    assertFalse(AnnotationsRecognizer.isAnnotations("@A(\"a\\\nb\")"));
+  }
+
+  @Test
+  void testIsReceiverParameter() {
+    assertTrue(AnnotationsRecognizer.isReceiverParameter("@A MyClass this"));
+    assertTrue(AnnotationsRecognizer.isReceiverParameter("MyClass<@B final T, U> this ,"));
+    // A modifier keyword can be the type.
+    assertTrue(AnnotationsRecognizer.isReceiverParameter("final this"));
+    assertTrue(AnnotationsRecognizer.isReceiverParameter("final this this"));
+    assertTrue(AnnotationsRecognizer.isReceiverParameter("@A final . x<final> this"));
+    assertFalse(AnnotationsRecognizer.isReceiverParameter("MyClass this x"));
+    assertFalse(AnnotationsRecognizer.isReceiverParameter("MyClass <T> this"));
+    assertFalse(AnnotationsRecognizer.isReceiverParameter("MyClass . this"));
+  }
+
+  @Test
+  void testIsExtendsObject() {
+    assertTrue(AnnotationsRecognizer.isExtendsObject("extends Object"));
+    assertTrue(AnnotationsRecognizer.isExtendsObject("extends @A(\"x\")\nfinal Object"));
+    assertFalse(AnnotationsRecognizer.isExtendsObject("extendsObject"));
+    assertFalse(AnnotationsRecognizer.isExtendsObject("extends Object2"));
+    assertFalse(AnnotationsRecognizer.isExtendsObject("extends java.lang.Object"));
+  }
+
+  /** Tests an annotation that is too long for the regex, which overflows the stack. */
+  @Test
+  void testLongAnnotation() {
+    StringBuilder sb = new StringBuilder("@SuppressWarnings({");
+    for (int i = 0; i < 10_000; i++) {
+      sb.append("\n    \"warning.key.").append(i).append("\",");
+    }
+    sb.append("\n})");
+    assertTrue(AnnotationsRecognizer.isAnnotations(sb.toString()));
+    assertTrue(JavaAnnotationsMerger.isJavaAnnotations(sb.toString()));
+  }
+
+  /** Text that might be part of an annotation, a receiver parameter, or an extends clause. */
+  private static final String[] tokens = {
+    "@A", "@Foo", "@", "final", "public", "finalx", "this", "this,", "extends", "Object", "T",
+    "java", "x", "\u00e9", "$", " ", " ", "  ", "\n", "\t", "\u000B", "(", ")", "{", "}", ",",
+    "=", ".", "<", ">", "\"s\"", "\"", "\\", "\"\\\"\"", "1", "-2", ".5", "3.", "+", " "
+  };
+
+  /** Compares the recognizers to the regexes on random sequences of tokens. */
+  @Test
+  void testRandomText() {
+    Random random = new Random(41);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      sb.setLength(0);
+      int prefix = random.nextInt(3);
+      if (prefix == 0) {
+        sb.append("@A(");
+      } else if (prefix == 1) {
+        sb.append("extends ");
+      }
+      int numTokens = random.nextInt(10);
+      for (int j = 0; j < numTokens; j++) {
+        sb.append(tokens[random.nextInt(tokens.length)]);
+      }
+      if (random.nextBoolean()) {
+        sb.append(random.nextBoolean() ? " this" : " Object");
+      }
+      assertAgrees(sb.toString());
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.ConflictScanner;
+import org.plumelib.merging.fileformat.ConflictScanner.CommonRegion;
+import org.plumelib.merging.fileformat.ConflictScanner.ConflictRegion;
+import org.plumelib.merging.fileformat.ConflictScanner.Region;
+import org.plumelib.merging.fileformat.ConflictedFile;
+import org.plumelib.merging.fileformat.ConflictedFile.CommonLines;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+
+final class ConflictScannerTest {
+
+  /** Creates a new ConflictScannerTest. */
+  ConflictScannerTest() {}
+
+  /**
+   * Scans the given text with a ConflictScanner, and checks that the result agrees with {@link
+   * ConflictedFile}.
+   *
+   * @param text the contents of a conflicted file
+   * @return the regions of the file
+   */
+  private List<Region> scanAndCompare(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    List<Region> regions = new ArrayList<>();
+    String parseError;
+    try {
+      Path path = Files.createTempFile("ConflictScannerTest-", ".txt");
+      try {
+        Files.write(path, bytes);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+          ConflictScanner scanner = new ConflictScanner(channel, StandardCharsets.UTF_8);
+          for (Region region = scanner.next(); region != null; region = scanner.next()) {
+            regions.add(region);
+          }
+          parseError = scanner.parseError();
+        }
+      } finally {
+        Files.delete(path);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    // The regions are non-empty and cover the file.
+    long offset = 0;
+    for (Region region : regions) {
+      Assertions.assertEquals(offset, region.offset());
+      Assertions.assertTrue(region.length() > 0);
+      offset += region.length();
+    }
+    Assertions.assertEquals(bytes.length, offset);
+
+    ConflictedFile cf = new ConflictedFile(text, Path.of("ConflictScannerTest"));
+    Assertions.assertEquals(cf.parseError(), parseError);
+    // After a trivial conflict, ConflictedFile renumbers the later conflicts.
+    if (parseError == null && !cf.hasTrivialConflict()) {
+      List<MergeConflict> actual = new ArrayList<>();
+      for (Region region : regions) {
+        if (region instanceof ConflictRegion cr && cr.element() instanceof MergeConflict mc) {
+          actual.add(mc);
+        }
+      }
+      Assertions.assertEquals(toString(cf.mergeConflicts()), toString(actual));
+    }
+    return regions;
+  }
+
+  /**
+   * Returns a string representation of the given merge conflicts, which do not override {@code
+   * equals}.
+   *
+   * @param mcs merge conflicts
+   * @return a string representation of the merge conflicts
+   */
+  private static String toString(List<MergeConflict> mcs) {
+    StringBuilder sb = new StringBuilder();
+    for (MergeConflict mc : mcs) {
+      sb.append(mc.start()).append('-').append(mc.end()).append(mc).append(System.lineSeparator());
+    }
+    return sb.toString();
+  }
+
+  @Test
+  void testSimple() {
+    @SuppressWarnings("StringConcatToTextBlock") // TODO
+    String text =
+        "before\n"
+            + "<<<<<<< OURS\n"
+            + "left\n"
+            + "||||||| BASE\n"
+            + "base\n"
+            + "=======\n"
+            + "right\n"
+            + ">>>>>>> THEIRS\n"
+            + "<<<<<<< OURS\n"
+            + "same\n"
+            + "=======\n"
+            + "same\n"
+            + ">>>>>>> THEIRS\n"
+            + "after";
+    List<Region> regions = scanAndCompare(text);
+    Assertions.assertEquals(4, regions.size());
+    Assertions.assertTrue(regions.get(0) instanceof CommonRegion);
+    Assertions.assertTrue(regions.get(3) instanceof CommonRegion);
+    ConflictRegion cr1 = (ConflictRegion) regions.get(1);
+    MergeConflict mc = (MergeConflict) cr1.element();
+    Assertions.assertNotNull(mc);
+    Assertions.assertEquals(List.of("left\n"), mc.left());
+    Assertions.assertEquals(List.of("base\n"), mc.base());
+    Assertions.assertEquals(List.of("right\n"), mc.right());
+    Assertions.assertEquals(1, mc.start());
+    Assertions.assertEquals(8, mc.end());
+    ConflictRegion cr2 = (ConflictRegion) regions.get(2);
+    Assertions.assertEquals(List.of("same\n"), ((CommonLines) cr2.element()).textLines());
+  }
+
+  @Test
+  void testNoConflict() {
+    Assertions.assertEquals(List.of(), scanAndCompare(""));
+    Assertions.assertEquals(1, scanAndCompare("a\r\nb\rc\n").size());
+  }
+
+  @Test
+  void testLineSeparators() {
+    // Every separator that \R matches, and non-separators whose UTF-8 encoding starts like one.
+    String text =
+        "a\u2028<<<<<<< OURS\u0085left\u00A0\u000Bmore\u2026\f=======\u2029right\r>>>>>>> THEIRS\n"
+            + "b\u2028<<<<<<< OURS\nl\n=======\nr\n>>>>>>> THEIRS\u0085after";
+    List<Region> regions = scanAndCompare(text);
+    Assertions.assertEquals(5, regions.size());
+    MergeConflict mc = (MergeConflict) ((ConflictRegion) regions.get(1)).element();
+    Assertions.assertNotNull(mc);
+    Assertions.assertEquals(List.of("left\u00A0\u000B", "more\u2026\f"), mc.left());
+    Assertions.assertEquals(List.of("right\r"), mc.right());
+    Assertions.assertEquals(1, mc.start());
+  }
+
+  @Test
+  void testParseErrors() {
+    scanAndCompare("a\n<<<<<<< OURS\nleft\n");
+    scanAndCompare("a\n<<<<<<< OURS\nleft\n||||||| BASE\nbase\n");
+    scanAndCompare("a\n<<<<<<< OURS\nleft\n||||||| BASE\nbase\n=======\nright\n");
+    scanAndCompare("a\n<<<<<<< OURS\nleft\n=======\nright\n");
+  }
+
+  @Test
+  void testLargeFile() {
+    // Conflicts and lines that straddle the boundaries of the scanner's buffer.
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20_000; i++) {
+      sb.append("line ").append(i).append(i % 3 == 0 ? "\r\n" : i % 7 == 0 ? "\u2028" : "\n");
+      if (i % 997 == 0) {
+        sb.append("<<<<<<< OURS\nleft ")
+            .append(i)
+            .append("\n||||||| BASE\nbase\n=======\nright ")
+            .append(i)
+            .append("\n>>>>>>> THEIRS\n");
+      }
+    }
+    List<Region> regions = scanAndCompare(sb.toString());
+    Assertions.assertEquals(2 * 21 + 1, regions.size());
+  }
+}
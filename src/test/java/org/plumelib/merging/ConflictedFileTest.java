@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -12,6 +13,7 @@ import org.plumelib.merging.fileformat.ConflictedFile;
 import org.plumelib.merging.fileformat.ConflictedFile.CommonLines;
 import org.plumelib.merging.fileformat.ConflictedFile.ConflictElement;
 import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.ConflictedFile.TrimmedConflict;
 import org.plumelib.util.FilesP;
 
 final class ConflictedFileTest {
@@ -157,4 +159,136 @@ final class ConflictedFileTest {
       Assertions.assertTrue(hunks7.get(1) instanceof CommonLines);
     }
   }
+
+  @Test
+  void testTrim() {
+    @SuppressWarnings("StringConcatToTextBlock") // TODO
+    ConflictedFile cf =
+        new ConflictedFile(
+            "before\n"
+                + "<<<<<<< OURS\n"
+                + "common 1\n"
+                + "common 2\n"
+                + "left\n"
+                + "common 3\n"
+                + "||||||| BASE\n"
+                + "common 1\n"
+                + "common 2\n"
+                + "base\n"
+                + "common 3\n"
+                + "=======\n"
+                + "common 1\n"
+                + "common 2\n"
+                + "right 1\n"
+                + "right 2\n"
+                + "common 3\n"
+                + ">>>>>>> THEIRS\n"
+                + "after\n",
+            Path.of("testTrim JUnit test"));
+    @SuppressWarnings("nullness:assignment")
+    @NonNull List<ConflictElement> hunks = cf.hunks();
+    Assertions.assertEquals(3, hunks.size());
+    MergeConflict mc = (MergeConflict) hunks.get(1);
+    TrimmedConflict trimmed = mc.trim();
+    Assertions.assertTrue(trimmed.isTrimmed());
+    Assertions.assertEquals(List.of("common 1\n", "common 2\n"), trimmed.prefix().textLines());
+    Assertions.assertEquals(List.of("common 3\n"), trimmed.suffix().textLines());
+    MergeConflict core = trimmed.core();
+    Assertions.assertEquals(List.of("left\n"), core.left());
+    Assertions.assertEquals(List.of("base\n"), core.base());
+    Assertions.assertEquals(List.of("right 1\n", "right 2\n"), core.right());
+    Assertions.assertEquals(mc.start(), core.start());
+    Assertions.assertEquals(mc.end(), core.end());
+    Assertions.assertEquals(
+        List.of("common 1\n", "common 2\n", "merged\n", "common 3\n"),
+        trimmed.untrim(List.of("merged\n")));
+
+    // Trimming a core has no further effect.
+    TrimmedConflict retrimmed = core.trim();
+    Assertions.assertFalse(retrimmed.isTrimmed());
+    Assertions.assertSame(core, retrimmed.core());
+  }
+
+  @Test
+  void testResolveConflicts() {
+    @SuppressWarnings("StringConcatToTextBlock") // TODO
+    ConflictedFile cf =
+        new ConflictedFile(
+            "before\n"
+                + "<<<<<<< ours.txt\n"
+                + "trivial\n"
+                + "||||||| base.txt\n"
+                + "=======\n"
+                + "trivial\n"
+                + ">>>>>>> theirs.txt\n"
+                + "<<<<<<< ours.txt\n"
+                + "left 1\n"
+                + "||||||| base.txt\n"
+                + "base 1\n"
+                + "=======\n"
+                + "right 1\n"
+                + ">>>>>>> theirs.txt\n"
+                + "middle\n"
+                + "<<<<<<< ours.txt\n"
+                + "left 2\n"
+                + "||||||| base.txt\n"
+                + "base 2\n"
+                + "=======\n"
+                + "right 2\n"
+                + ">>>>>>> theirs.txt\n"
+                + "after\n",
+            Path.of("testResolveConflicts JUnit test"));
+    List<MergeConflict> mcs = cf.mergeConflicts();
+    Assertions.assertEquals(2, mcs.size());
+    // The line numbers account for the resolved trivial conflict.
+    Assertions.assertEquals(2, mcs.get(0).start());
+    Assertions.assertEquals(9, mcs.get(0).end());
+    Assertions.assertEquals(10, mcs.get(1).start());
+    Assertions.assertEquals(17, mcs.get(1).end());
+
+    ConflictedFile resolved =
+        cf.resolveConflicts(Map.of(mcs.get(0), List.of("merged 1a\n", "merged 1b\n")));
+    Assertions.assertTrue(resolved.hasConflict());
+    List<MergeConflict> resolvedMcs = resolved.mergeConflicts();
+    Assertions.assertEquals(1, resolvedMcs.size());
+    Assertions.assertEquals(5, resolvedMcs.get(0).start());
+    Assertions.assertEquals(12, resolvedMcs.get(0).end());
+    Assertions.assertEquals(
+        "before\n"
+            + "trivial\n"
+            + "merged 1a\n"
+            + "merged 1b\n"
+            + "middle\n"
+            + "<<<<<<< ours.txt\n"
+            + "left 2\n"
+            + "||||||| base.txt\n"
+            + "base 2\n"
+            + "=======\n"
+            + "right 2\n"
+            + ">>>>>>> theirs.txt\n"
+            + "after\n",
+        resolved.fileContents());
+    Assertions.assertEquals("<<<<<<< ours.txt\n", resolved.lines().get(5));
+
+    ConflictedFile resolvedAll =
+        resolved.resolveConflicts(Map.of(resolvedMcs.get(0), List.of("merged 2\n")));
+    Assertions.assertFalse(resolvedAll.hasConflict());
+    Assertions.assertEquals(
+        "before\ntrivial\nmerged 1a\nmerged 1b\nmiddle\nmerged 2\nafter\n",
+        resolvedAll.fileContents());
+  }
+
+  @Test
+  void testCachedDerivedData() {
+    List<String> base = List.of("base\n");
+    List<String> left = List.of("// c\n", "left\n");
+    List<String> right = List.of("// c\n", "right\n");
+    MergeConflict mc = (MergeConflict) MergeConflict.of(base, left, right, 3, 11);
+    Assertions.assertEquals("// c\nleft\n", mc.leftJoined());
+    Assertions.assertSame(mc.leftJoined(), mc.leftJoined());
+    Assertions.assertSame(mc.baseJoined(), mc.baseJoined());
+    Assertions.assertSame(mc.rightCommentLines(), mc.rightCommentLines());
+    Assertions.assertEquals(List.of("// c\n"), mc.leftCommentLines());
+    Assertions.assertTrue(mc.sameCommentLines());
+  }
 }
@@ -15,10 +15,12 @@ final class JavaAnnotationsMergerTest {
 
   void assertIsJavaAnnotations(String s) {
     assertTrue(JavaAnnotationsMerger.isJavaAnnotations(s), s);
+    assertTrue(JavaAnnotationsMerger.isJavaAnnotations(s, false), s);
   }
 
   void assertIsNotJavaAnnotations(String s) {
     assertFalse(JavaAnnotationsMerger.isJavaAnnotations(s), s);
+    assertFalse(JavaAnnotationsMerger.isJavaAnnotations(s, false), s);
   }
 
   void assertMatches(Pattern p, String s) {
@@ -63,14 +65,17 @@ final class JavaAnnotationsMergerTest {
 
   void assertExtends(String s) {
     assertMatches(JavaAnnotationsMerger.extendsPattern, s);
+    assertTrue(AnnotationsRecognizer.isExtendsObject(s), s);
   }
 
   void assertThis(String s) {
     assertMatches(JavaAnnotationsMerger.thisPattern, s);
+    assertTrue(AnnotationsRecognizer.isReceiverParameter(s), s);
   }
 
   void assertAnnotations(String s) {
     assertMatches(JavaAnnotationsMerger.annotationsPattern, s);
+    assertTrue(AnnotationsRecognizer.isAnnotations(s), s);
   }
 
   String multilineAnnotation1 =
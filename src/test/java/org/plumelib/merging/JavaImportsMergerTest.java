@@ -1,6 +1,7 @@
 package org.plumelib.merging;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -8,7 +9,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 import org.plumelib.merging.fileformat.ConflictedFile.CommonLines;
 import org.plumelib.merging.fileformat.ConflictedFile.ConflictElement;
@@ -116,6 +119,61 @@ final class JavaImportsMergerTest {
     }
   }
 
+  @Test
+  void testInsertLines() {
+    List<String> original = List.of("a", "b", "c");
+    List<JavaImportsMerger.LineInsertion> insertions =
+        List.of(
+            new JavaImportsMerger.LineInsertion(3, List.of("z")),
+            new JavaImportsMerger.LineInsertion(1, List.of("x")),
+            new JavaImportsMerger.LineInsertion(1, List.of("y")));
+    assertEquals(
+        List.of("a", "x", "y", "b", "c", "z"), JavaImportsMerger.insertLines(original, insertions));
+    assertEquals(List.of("a", "b", "c"), original);
+    assertThrows(
+        IndexOutOfBoundsException.class,
+        () ->
+            JavaImportsMerger.insertLines(
+                original, List.of(new JavaImportsMerger.LineInsertion(4, List.of("w")))));
+  }
+
+  /**
+   * Checks {@link JavaImportsMerger#insertLines} against inserting each batch with {@code
+   * ArrayList.addAll}, on random insertions.
+   */
+  @Test
+  void testInsertLinesRandom() {
+    Random random = new Random(39);
+    for (int trial = 0; trial < 10_000; trial++) {
+      int numOriginal = random.nextInt(8);
+      List<String> original = new ArrayList<>();
+      for (int i = 0; i < numOriginal; i++) {
+        original.add("o" + i);
+      }
+      List<String> expected = new ArrayList<>(original);
+      // insertedBefore[i] is the number of lines inserted so far before original line i, or before
+      // the end if i is numOriginal.
+      int[] insertedBefore = new int[numOriginal + 1];
+      List<JavaImportsMerger.LineInsertion> insertions = new ArrayList<>();
+      int numInsertions = random.nextInt(8);
+      for (int i = 0; i < numInsertions; i++) {
+        int index = random.nextInt(numOriginal + 1);
+        List<String> lines = new ArrayList<>();
+        int numLines = random.nextInt(3);
+        for (int j = 0; j < numLines; j++) {
+          lines.add("i" + i + "." + j);
+        }
+        // After the earlier insertions at the same index, so they stay in order.
+        expected.addAll(index + insertedBefore[index], lines);
+        for (int k = index; k <= numOriginal; k++) {
+          insertedBefore[k] += numLines;
+        }
+        insertions.add(new JavaImportsMerger.LineInsertion(index, lines));
+      }
+      assertEquals(expected, JavaImportsMerger.insertLines(original, insertions));
+    }
+  }
+
   // // This test gets skipped, and causes other tests not to run.  So, for now, run the tests via a
   // // Makefile. :-(
   // @Test
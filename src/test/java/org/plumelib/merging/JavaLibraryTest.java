@@ -1,8 +1,13 @@
 package org.plumelib.merging;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
 import org.junit.jupiter.api.Test;
 
 final class JavaLibraryTest {
@@ -35,4 +40,112 @@ final class JavaLibraryTest {
     assertFalse(JavaLibrary.isCommentLine("  /* x *  "));
     assertFalse(JavaLibrary.isCommentLine("  /* x /  "));
   }
+
+  @Test
+  void testHeaderLines() {
+    List<String> header =
+        List.of(
+            "/*\n",
+            " * Copyright.\n",
+            " */\n",
+            "@Ann\n",
+            "package org.example;\n",
+            "\n",
+            "// Imports.\n",
+            "import java.util.List;\n",
+            "/** The class. */\n");
+    List<String> body = List.of("/**\n", " * More.\n", " */\n", "@Deprecated\n", "class C {}\n");
+    List<String> file = new ArrayList<>(header);
+    file.add("@Deprecated\n");
+    file.add("class C {}\n");
+    assertEquals(header, JavaLibrary.headerLines(file));
+
+    List<String> javadocFile = new ArrayList<>(header.subList(0, header.size() - 1));
+    javadocFile.addAll(body);
+    assertEquals(
+        javadocFile.subList(0, javadocFile.size() - 2), JavaLibrary.headerLines(javadocFile));
+
+    assertEquals(List.of(), JavaLibrary.headerLines(List.of("class C {}\n", "import a.B;\n")));
+    assertEquals(
+        List.of("/* a */\n"), JavaLibrary.headerLines(List.of("/* a */\n", "/* b */ x\n")));
+  }
+
+  @Test
+  void testHeaderLinesWithTrailingComments() {
+    List<String> header =
+        List.of(
+            "package p; // c\n",
+            "\n",
+            "import a.B; // NOPMD\n",
+            "import a.C;\n",
+            "/* c */ import x.Y;\n",
+            "import x.Z; /* c */\n",
+            "import static x.Z.f;\n",
+            "\n");
+    List<String> file = new ArrayList<>(header);
+    file.add("public record R() {}\n");
+    file.add("import a.D;\n");
+    assertEquals(header, JavaLibrary.headerLines(file));
+
+    // A line that is not a header line ends the header, even if imports follow it.
+    assertEquals(
+        List.of("import a.B;\n"),
+        JavaLibrary.headerLines(List.of("import a.B;\n", "import a.C; x\n", "import a.D;\n")));
+  }
+
+  // The regular expressions that JavaLibrary's scanners replaced.
+
+  /** Matches a blank line. */
+  private static final Pattern whitespacePattern = Pattern.compile("\\s*\\R*");
+
+  /** Matches a comment line. */
+  private static final Pattern commentLinePattern =
+      Pattern.compile("\\s*(//.*|/\\*.*\\*/\\s*)\\R?");
+
+  /** Matches a package statement. */
+  private static final Pattern packagePattern = Pattern.compile("\\s*package\\s.*;\\R?");
+
+  /** Matches an import statement. */
+  private static final Pattern importPattern = Pattern.compile("\\s*import\\s.*;\\R?");
+
+  /** Matches the beginning of a line that starts a comment. */
+  private static final Pattern commentStartPattern = Pattern.compile("^\\s*/[/*]");
+
+  /** Matches the beginning of a line that ends a comment. */
+  private static final Pattern commentEndPattern = Pattern.compile("^\\s*[*]/");
+
+  /** The pieces from which {@link #testScannersMatchRegexes} builds lines. */
+  private static final String[] PIECES = {
+    " ", "\t", "\n", "\r", "\r\n", "\u000B", "\f", "\u0085", "\u2028", "\u2029", "/", "*", ";",
+    "//", "/*", "*/", "x", ".", "package", "import", "import ", "package ", "static", "\u00E9",
+    "\uD83D\uDE00"
+  };
+
+  @Test
+  void testScannersMatchRegexes() {
+    Random random = new Random(20_261_018);
+    for (int n = 0; n < 500_000; n++) {
+      StringBuilder sb = new StringBuilder();
+      int numPieces = random.nextInt(10);
+      for (int i = 0; i < numPieces; i++) {
+        sb.append(PIECES[random.nextInt(PIECES.length)]);
+      }
+      String line = sb.toString();
+      assertEquals(whitespacePattern.matcher(line).matches(), JavaLibrary.isBlankLine(line), line);
+      assertEquals(
+          commentLinePattern.matcher(line).matches(), JavaLibrary.isCommentLine(line), line);
+      assertEquals(
+          packagePattern.matcher(line).matches(), JavaLibrary.isPackageStatement(line), line);
+      assertEquals(
+          importPattern.matcher(line).matches(), JavaLibrary.isImportStatement(line), line);
+
+      // The first line that does not start within a comment is 0 if the line starts a comment, 1
+      // if it ends one, and otherwise 2 (the line after "*/").
+      int expected =
+          commentStartPattern.matcher(line).find()
+              ? 0
+              : commentEndPattern.matcher(line).find() ? 1 : 2;
+      assertEquals(expected, JavaLibrary.firstOutsideCommentLine(List.of(line, "*/")), line);
+    }
+  }
 }
@@ -0,0 +1,60 @@
+package org.plumelib.merging;
+
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.LineIndex;
+import org.plumelib.util.StringsP;
+
+final class LineIndexTest {
+
+  /** Creates a new LineIndexTest. */
+  LineIndexTest() {}
+
+  /**
+   * Asserts that a LineIndex for the given text has the same lines as {@code
+   * StringsP.splitLinesRetainSeparators}.
+   *
+   * @param text a text
+   */
+  void assertSameLines(String text) {
+    LineIndex li = new LineIndex(text);
+    List<String> expected = StringsP.splitLinesRetainSeparators(text);
+    Assertions.assertEquals(expected, li);
+    Assertions.assertEquals(expected.size(), li.size());
+    Assertions.assertEquals(text, li.text());
+    Assertions.assertEquals(text, LineIndex.join(li));
+  }
+
+  @Test
+  void testSplit() {
+    assertSameLines("");
+    assertSameLines("\n");
+    assertSameLines("a");
+    assertSameLines("a\n");
+    assertSameLines("a\nb");
+    assertSameLines("a\nb\n");
+    assertSameLines("a\r\nb\r\n\r\n");
+    assertSameLines("a\rb\r\r\n");
+    assertSameLines("a\n\nb\r\n\rc");
+  }
+
+  @Test
+  void testViews() {
+    LineIndex li = new LineIndex("zero\none\ntwo\nthree\n");
+    LineIndex middle = li.subList(1, 3);
+    Assertions.assertEquals(List.of("one\n", "two\n"), middle);
+    Assertions.assertEquals("one\ntwo\n", middle.text());
+    Assertions.assertEquals(List.of("two\n"), middle.subList(1, 2));
+    Assertions.assertTrue(middle.lineStartsWith(1, "tw"));
+    Assertions.assertFalse(middle.lineStartsWith(0, "tw"));
+    Assertions.assertSame(li.get(2), middle.get(1));
+
+    Assertions.assertEquals(new LineIndex("one\ntwo\n"), middle);
+    Assertions.assertNotEquals(new LineIndex("one\ntwo"), middle);
+    Assertions.assertEquals(List.of("one\n", "two\n").hashCode(), middle.hashCode());
+
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> middle.get(2));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> li.subList(2, 5));
+  }
+}
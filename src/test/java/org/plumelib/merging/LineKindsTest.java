@@ -0,0 +1,43 @@
+package org.plumelib.merging;
+
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class LineKindsTest {
+
+  /** Creates a new LineKindsTest. */
+  LineKindsTest() {}
+
+  @Test
+  void testClassify() {
+    List<String> lines =
+        List.of(
+            "package org.example;\n",
+            "\n",
+            "// A comment.\n",
+            "import java.util.List;\n",
+            "import static java.lang.Math.max;\n",
+            "  /* Another comment. */\n",
+            "class C {}\n");
+    LineKinds kinds = new LineKinds(lines);
+    Assertions.assertEquals(lines.size(), kinds.size());
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      Assertions.assertEquals(JavaLibrary.isBlankLine(line), kinds.isBlank(i), line);
+      Assertions.assertEquals(JavaLibrary.isCommentLine(line), kinds.isComment(i), line);
+      Assertions.assertEquals(JavaLibrary.isPackageStatement(line), kinds.isPackage(i), line);
+      Assertions.assertEquals(JavaLibrary.isImportStatement(line), kinds.isImport(i), line);
+    }
+    Assertions.assertFalse(kinds.isImportBlock());
+    Assertions.assertEquals(0, kinds.first(LineKinds.PACKAGE));
+    Assertions.assertEquals(3, kinds.first(LineKinds.IMPORT));
+    Assertions.assertEquals(-1, new LineKinds(lines.subList(0, 3)).first(LineKinds.IMPORT));
+    Assertions.assertEquals(
+        List.of("// A comment.\n", "  /* Another comment. */\n"),
+        kinds.linesWith(LineKinds.COMMENT));
+
+    Assertions.assertTrue(new LineKinds(lines.subList(1, 6)).isImportBlock());
+    Assertions.assertTrue(new LineKinds(List.of()).isImportBlock());
+  }
+}
@@ -0,0 +1,58 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+final class MainTest {
+
+  /** Creates a new MainTest. */
+  MainTest() {}
+
+  @Test
+  void testUseStreaming() throws IOException {
+    // A merge driver is passed temporary file names, with no extension.
+    Path dir = Files.createTempDirectory("MainTest-");
+    Path left = Files.writeString(dir.resolve(".merge_file_a"), "<<<<<<<\n");
+    Path base = Files.writeString(dir.resolve(".merge_file_b"), "");
+    Path right = Files.writeString(dir.resolve(".merge_file_c"), "");
+    MergeState ms = new MergeState(left, base, right, left, true);
+
+    Main main = new Main();
+    main.command = Main.MergeMode.driver;
+    // Without --path, a merge driver cannot tell whether the file is a Java file.
+    assertFalse(main.useStreaming(ms, 0));
+    main.path = Path.of("src", "Foo.java");
+    assertFalse(main.useStreaming(ms, 0));
+    main.path = Path.of("README.txt");
+    assertTrue(main.useStreaming(ms, 0));
+    assertFalse(main.useStreaming(ms, Long.MAX_VALUE));
+
+    // Without the imports merger, no merger needs the whole file.
+    main.path = null;
+    main.java_imports = false;
+    assertTrue(main.useStreaming(ms, 0));
+
+    // A merge tool is passed the real file names.
+    main.command = Main.MergeMode.tool;
+    main.java_imports = true;
+    assertTrue(main.useStreaming(ms, 0));
+
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  @Test
+  void testRunInProcess() {
+    // A merge tool needs four files, and with three the program would exit erroneously.
+    Main.ErroneousExitException e =
+        assertThrows(
+            Main.ErroneousExitException.class, () -> Main.runInProcess("tool", "a", "b", "c"));
+    assertEquals("Not enough arguments for a merge tool:  expected 4, got 3.", e.getMessage());
+  }
+}
@@ -0,0 +1,117 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.LineIndex;
+import org.plumelib.merging.fileformat.MappedLines;
+import org.plumelib.util.StringsP;
+
+final class MappedLinesTest {
+
+  /** Creates a new MappedLinesTest. */
+  MappedLinesTest() {}
+
+  /**
+   * Asserts that a MappedLines for a file with the given text has the same lines as {@code
+   * StringsP.splitLinesRetainSeparators}.
+   *
+   * @param text a text
+   */
+  void assertSameLines(String text) {
+    assertSameLines(text, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Asserts that a MappedLines for a file with the given text, encoded and decoded in the given
+   * charset, has the same lines as {@code StringsP.splitLinesRetainSeparators}.
+   *
+   * @param text a text
+   * @param charset the charset in which to write the file
+   */
+  void assertSameLines(String text, Charset charset) {
+    List<String> expected = StringsP.splitLinesRetainSeparators(text);
+    try {
+      Path path = Files.createTempFile("MappedLinesTest-", ".txt");
+      try {
+        Files.writeString(path, text, charset);
+
+        // Iterating does not require the size.
+        List<String> iterated = new ArrayList<>();
+        for (String line : MappedLines.map(path, charset)) {
+          iterated.add(line);
+        }
+        Assertions.assertEquals(expected, iterated);
+
+        // Random access, before the size is known.
+        MappedLines ml = MappedLines.map(path, charset);
+        if (!expected.isEmpty()) {
+          Assertions.assertEquals(expected.get(expected.size() - 1), ml.get(expected.size() - 1));
+          Assertions.assertEquals(expected.get(0), ml.get(0));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> ml.get(expected.size()));
+        Assertions.assertEquals(expected.size(), ml.size());
+        Assertions.assertEquals(expected, ml);
+        Assertions.assertEquals(text, LineIndex.join(ml));
+      } finally {
+        Files.delete(path);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Test
+  void testSplit() {
+    assertSameLines("");
+    assertSameLines("\n");
+    assertSameLines("a");
+    assertSameLines("a\nb\n");
+    assertSameLines("a\r\nb\r\n\r\n");
+    assertSameLines("a\rb\r\r\n");
+    assertSameLines("a\u000Bb\fc\u0085d\u2028e\u2029f");
+    assertSameLines("caf\u00E9\n\u20AC\u0100\n");
+  }
+
+  @Test
+  void testLatin1() {
+    // In ISO-8859-1, NEL is the single byte 0x85, and the UTF-8 encodings of NEL and LINE
+    // SEPARATOR are not line separators.
+    assertSameLines(
+        "caf\u00E9\n\u00C2\u0085\u00E2\u0080\u00A8x\u0085y", StandardCharsets.ISO_8859_1);
+  }
+
+  @Test
+  void testMalformed() throws IOException {
+    Path path = Files.createTempFile("MappedLinesTest-", ".txt");
+    try {
+      // The second line is ISO-8859-1, which is not valid UTF-8.
+      Files.write(path, new byte[] {'a', '\n', 'b', (byte) 0xE9, '\n', 'c', '\n'});
+      MappedLines ml = MappedLines.map(path, StandardCharsets.UTF_8);
+      // The lines that are valid are decoded, because only accessed lines are checked.
+      Assertions.assertEquals("a\n", ml.get(0));
+      Assertions.assertEquals("c\n", ml.get(2));
+      Assertions.assertThrows(UncheckedIOException.class, () -> ml.get(1));
+      Assertions.assertEquals(
+          "b\u00E9\n", MappedLines.map(path, StandardCharsets.ISO_8859_1).get(1));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void testManyLines() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("line ").append(i).append(i % 2 == 0 ? "\n" : "\r\n");
+    }
+    assertSameLines(sb.toString());
+  }
+}
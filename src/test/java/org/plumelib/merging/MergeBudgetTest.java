@@ -0,0 +1,269 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.ConflictedFile;
+
+/**
+ * Checks that parsing a conflicted file, and each merger, do not allocate more memory or take more
+ * time than the budgets in {@code src/test/resources/budgets.properties}, on fixed generated
+ * inputs. Allocation is nearly deterministic, so its tolerance is small; wall-clock time is not, so
+ * its tolerance only catches large regressions.
+ *
+ * <p>To re-measure the budgets after an intended change in cost, run {@code ./gradlew
+ * rebaselineBudgets} and commit the changed file. That task sets the system property {@code
+ * budgets.rebaseline}, which makes this test record its measurements instead of checking them.
+ */
+final class MergeBudgetTest {
+
+  /** Creates a new MergeBudgetTest. */
+  MergeBudgetTest() {}
+
+  /** The file of budgets. */
+  private static final Path BUDGETS = Path.of("src", "test", "resources", "budgets.properties");
+
+  /** The fraction by which a measured allocation may exceed its budget. */
+  private static final double BYTES_TOLERANCE = 0.25;
+
+  /**
+   * The fraction by which a measured time may exceed its budget. It is large because the budgets
+   * are measured on one machine and checked on others.
+   */
+  private static final double NANOS_TOLERANCE = 4.0;
+
+  /**
+   * The amount, in nanoseconds, by which a measured time may exceed its budget regardless of the
+   * tolerance, because a pause of a few milliseconds is noise rather than a regression.
+   */
+  private static final long NANOS_SLACK = 20_000_000;
+
+  /** The number of runs, before the measured runs, that warm up the JIT compiler. */
+  private static final int WARMUP_RUNS = 10;
+
+  /** The number of measured runs. The minimum over them is compared to the budget. */
+  private static final int MEASURED_RUNS = 10;
+
+  /** The budgets, or the measurements if re-baselining. Maps a key to a number. */
+  private static Map<String, Long> budgets = new TreeMap<>();
+
+  /** The file to write measurements to, or null to check the budgets instead. */
+  private static @Nullable Path rebaseline = null;
+
+  /** The directory that holds the generated inputs. */
+  private static Path dir = Path.of(".");
+
+  /** The input for the mergers that consider each merge conflict on its own. */
+  private static SyntheticMerge perConflictInput = new SyntheticMerge.Builder().build();
+
+  /** The input for the imports merger. */
+  private static SyntheticMerge importsInput = new SyntheticMerge.Builder().build();
+
+  /**
+   * Reads the budgets and generates the inputs.
+   *
+   * @throws IOException if the budgets cannot be read or the inputs cannot be written
+   */
+  @BeforeAll
+  static void setUp() throws IOException {
+    String rebaselineProperty = System.getProperty("budgets.rebaseline");
+    if (rebaselineProperty != null) {
+      rebaseline = Path.of(rebaselineProperty);
+    } else {
+      budgets = readBudgets(BUDGETS);
+    }
+    dir = Files.createTempDirectory("MergeBudgetTest-");
+    perConflictInput =
+        new SyntheticMerge.Builder()
+            .imports(100)
+            .importsPerSide(0)
+            .lines(10_000)
+            .conflicts(100)
+            .linesPerConflict(6)
+            .build();
+    importsInput =
+        new SyntheticMerge.Builder().imports(100).importsPerSide(10).lines(2_000).build();
+  }
+
+  /**
+   * Writes the measurements if re-baselining, and deletes the inputs.
+   *
+   * @throws IOException if the measurements cannot be written or the inputs cannot be deleted
+   */
+  @AfterAll
+  static void tearDown() throws IOException {
+    if (rebaseline != null) {
+      writeBudgets(rebaseline, budgets);
+    }
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  @Test
+  void testParse() {
+    List<String> lines = perConflictInput.merged;
+    Path path = Path.of("merged.java");
+    checkBudget(
+        "parse",
+        () -> {
+          ConflictedFile cf = new ConflictedFile(lines, path);
+          MergeStats.Phase phase = MergeStats.begin("parse");
+          assertNotNull(cf.hunks());
+          phase.end();
+        });
+  }
+
+  @Test
+  void testJavaAnnotationsMerger() throws IOException {
+    checkMergerBudget(new JavaAnnotationsMerger(false), perConflictInput);
+  }
+
+  @Test
+  void testVersionNumbersMerger() throws IOException {
+    checkMergerBudget(new VersionNumbersMerger(false), perConflictInput);
+  }
+
+  @Test
+  void testAdjacentLinesMerger() throws IOException {
+    checkMergerBudget(new AdjacentLinesMerger(false), perConflictInput);
+  }
+
+  @Test
+  void testJavaImportsMerger() throws IOException {
+    checkMergerBudget(new JavaImportsMerger(false, false), importsInput);
+  }
+
+  /**
+   * Checks the cost of running the given merger on the given input, excluding parsing.
+   *
+   * @param merger a merger
+   * @param input the input
+   * @throws IOException if the input cannot be written
+   */
+  private static void checkMergerBudget(Merger merger, SyntheticMerge input) throws IOException {
+    String name = merger.getClass().getSimpleName();
+    MergeState written = input.write(Files.createDirectories(dir.resolve(name)));
+    checkBudget(
+        name + ".resolveConflicts",
+        () -> {
+          MergeState ms =
+              new MergeState(
+                  written.leftPath, written.basePath, written.rightPath, written.mergedPath, true);
+          merger.merge(ms);
+          assertTrue(ms.conflictedFile().mergeConflicts().size() < input.numConflicts, name);
+        });
+  }
+
+  /**
+   * Runs the given code repeatedly and checks the cost of the given phase, or records it if
+   * re-baselining. The minimum over the measured runs is used, because it is the least affected
+   * by garbage collection and by other processes.
+   *
+   * @param phase the name of a phase that {@code run} records with {@link MergeStats}
+   * @param run the code to measure
+   */
+  private static void checkBudget(String phase, Runnable run) {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      run.run();
+    }
+    long minBytes = Long.MAX_VALUE;
+    long minNanos = Long.MAX_VALUE;
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      MergeStats stats = MergeStats.enable();
+      try {
+        run.run();
+      } finally {
+        MergeStats.disable();
+      }
+      assertEquals(1, stats.phaseCount(phase), phase);
+      minBytes = Math.min(minBytes, stats.phaseAllocatedBytes(phase));
+      minNanos = Math.min(minNanos, stats.phaseNanos(phase));
+    }
+
+    if (rebaseline != null) {
+      if (minBytes >= 0) {
+        budgets.put(phase + ".allocatedBytes", minBytes);
+      }
+      budgets.put(phase + ".nanos", minNanos);
+      return;
+    }
+    if (minBytes >= 0) {
+      checkMeasurement(phase + ".allocatedBytes", minBytes, BYTES_TOLERANCE, 0);
+    }
+    checkMeasurement(phase + ".nanos", minNanos, NANOS_TOLERANCE, NANOS_SLACK);
+  }
+
+  /**
+   * Checks that a measurement does not exceed its budget by more than the given tolerance or the
+   * given slack, whichever is larger.
+   *
+   * @param key the key of the budget
+   * @param measured the measurement
+   * @param tolerance the fraction by which the measurement may exceed the budget
+   * @param slack the amount by which the measurement may exceed the budget
+   */
+  private static void checkMeasurement(String key, long measured, double tolerance, long slack) {
+    Long budget = budgets.get(key);
+    assertNotNull(budget, "no budget for " + key + " in " + BUDGETS + "; run rebaselineBudgets");
+    long limit = Math.max((long) (budget * (1 + tolerance)), budget + slack);
+    assertTrue(
+        measured <= limit,
+        String.format(
+            "%s is %d, more than the limit %d (the budget is %d); if that is intended, run"
+                + " rebaselineBudgets",
+            key, measured, limit, budget));
+  }
+
+  /**
+   * Reads a file of budgets. Each line is blank, a comment starting with "#", or "key=number".
+   *
+   * @param file the file
+   * @return the budgets in the file
+   * @throws IOException if the file cannot be read
+   */
+  private static Map<String, Long> readBudgets(Path file) throws IOException {
+    Map<String, Long> result = new TreeMap<>();
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int equals = line.indexOf('=');
+      if (equals == -1) {
+        throw new IOException(file + ": malformed line: " + line);
+      }
+      result.put(line.substring(0, equals), Long.parseLong(line.substring(equals + 1)));
+    }
+    return result;
+  }
+
+  /**
+   * Writes a file of budgets, in the format that {@link #readBudgets} reads. The keys are sorted,
+   * so that a re-baselined file differs from the original only where the budgets changed.
+   *
+   * @param file the file
+   * @param budgets the budgets
+   * @throws IOException if the file cannot be written
+   */
+  private static void writeBudgets(Path file, Map<String, Long> budgets) throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add("# Allocation (in bytes) and time (in nanoseconds) budgets for MergeBudgetTest.");
+    lines.add("# Do not edit; to re-measure them, run: ./gradlew rebaselineBudgets");
+    for (Map.Entry<String, Long> entry : new TreeMap<>(budgets).entrySet()) {
+      lines.add(entry.getKey() + "=" + entry.getValue());
+    }
+    Files.write(file, lines, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,81 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+final class MergeEventsTest {
+
+  /** Creates a new MergeEventsTest. */
+  MergeEventsTest() {}
+
+  @Test
+  void testMergerEvents() throws IOException {
+    Path dir = Files.createTempDirectory("MergeEventsTest-");
+    Path left = Files.writeString(dir.resolve("left.txt"), "c\nversion 1.3.0\n");
+    Path base = Files.writeString(dir.resolve("base.txt"), "a\nversion 1.2.0\n");
+    Path right = Files.writeString(dir.resolve("right.txt"), "b\nversion 1.2.1\n");
+    Path merged =
+        Files.writeString(
+            dir.resolve("merged.txt"),
+            String.join(
+                "\n",
+                "<<<<<<< OURS",
+                "c",
+                "||||||| BASE",
+                "a",
+                "=======",
+                "b",
+                ">>>>>>> THEIRS",
+                "<<<<<<< OURS",
+                "version 1.3.0",
+                "||||||| BASE",
+                "version 1.2.0",
+                "=======",
+                "version 1.2.1",
+                ">>>>>>> THEIRS",
+                ""));
+    Path recordingPath = dir.resolve("merge.jfr");
+
+    try (Recording recording = new Recording()) {
+      recording.enable("org.plumelib.merging.Merge");
+      recording.enable("org.plumelib.merging.ConflictResolution");
+      recording.start();
+      new VersionNumbersMerger(false).merge(new MergeState(left, base, right, merged, true));
+      recording.stop();
+      recording.dump(recordingPath);
+    }
+
+    List<String> outcomes = new ArrayList<>();
+    List<String> merges = new ArrayList<>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(recordingPath)) {
+      switch (event.getEventType().getName()) {
+        case "org.plumelib.merging.ConflictResolution" ->
+            outcomes.add(event.getInt("line") + " " + event.getString("outcome"));
+        case "org.plumelib.merging.Merge" ->
+            merges.add(
+                event.getString("merger")
+                    + " "
+                    + event.getInt("conflictsBefore")
+                    + " "
+                    + event.getInt("conflictsAfter"));
+        default -> throw new Error("unexpected event " + event);
+      }
+    }
+    assertEquals(List.of("1 unresolved", "8 resolved"), outcomes);
+    assertEquals(List.of("VersionNumbersMerger 2 1"), merges);
+
+    for (Path p : new Path[] {left, base, right, merged, recordingPath}) {
+      Files.delete(p);
+    }
+    Files.delete(dir);
+  }
+}
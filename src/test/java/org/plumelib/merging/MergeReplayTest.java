@@ -0,0 +1,85 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+final class MergeReplayTest {
+
+  /** Creates a new MergeReplayTest. */
+  MergeReplayTest() {}
+
+  @Test
+  void testFixture() throws IOException, InterruptedException {
+    // The merge commits of the fixture are described in make-fixture.sh.
+    Path bundle = Path.of("src", "test", "resources", "replay", "fixture.bundle").toAbsolutePath();
+    Path dir = Files.createTempDirectory("MergeReplayTest-");
+    Path repo = dir.resolve("repo");
+    Process clone =
+        new ProcessBuilder("git", "clone", "--quiet", bundle.toString(), repo.toString())
+            .inheritIO()
+            .start();
+    assertEquals(0, clone.waitFor());
+
+    MergeReplay replay = new MergeReplay();
+    replay.repo = repo;
+    MergeReplay.Results results = replay.replay();
+
+    // Each of the six merges that the fixture describes is preceded by a merge of a branch that
+    // changes nothing on the other side.
+    assertEquals(12, results.merges);
+    assertEquals(0, results.skippedMerges);
+    assertEquals(4, results.files);
+    assertEquals(1, results.skippedFiles);
+    assertEquals(0, results.cleanFiles);
+    assertEquals(2, results.agreeingFiles);
+    assertEquals(1, results.disagreeingFiles);
+    assertEquals(1, results.unresolvedFiles);
+    assertEquals(4, results.latencies.size());
+    assertEquals(Long.valueOf(1), results.counters.get("VersionNumbersMerger.resolved"));
+    assertEquals(Long.valueOf(1), results.counters.get("JavaAnnotationsMerger.resolved"));
+    assertTrue(results.toJson().contains("\"agreeingFiles\":2,"), results.toJson());
+
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  void testWithoutStatsOptions() {
+    assertEquals(
+        List.of("--adjacent", "--verbose"),
+        MergeReplay.withoutStatsOptions(
+            List.of(
+                "--stats",
+                "--adjacent",
+                "--stats=json",
+                "--stats-file",
+                "stats.txt",
+                "--stats",
+                "json",
+                "--verbose",
+                "--stats-file=stats.txt")));
+  }
+
+  @Test
+  void testFailures() {
+    MergeReplay.Results results = new MergeReplay.Results();
+    results.agreeingFiles = 1;
+    results.failures.add("a.txt in 0123abc: Problem reading a.txt");
+    assertEquals(2, results.conflictedFiles());
+    String json = results.toJson();
+    assertTrue(json.contains("\"failedFiles\":1,"), json);
+    assertTrue(json.contains("\"failures\":[\"a.txt in 0123abc: Problem reading a.txt\"]"), json);
+    assertTrue(results.toText().contains("failed on 1."), results.toText());
+  }
+}
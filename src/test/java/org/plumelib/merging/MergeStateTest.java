@@ -0,0 +1,61 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.ConflictedFile;
+
+final class MergeStateTest {
+
+  /** Creates a new MergeStateTest. */
+  MergeStateTest() {}
+
+  @Test
+  void testWriteBackUnchanged() throws IOException {
+    Path dir = Files.createTempDirectory("MergeStateTest-");
+    Path left = Files.writeString(dir.resolve("f_LOCAL_1.txt"), "left\n");
+    Path base = Files.writeString(dir.resolve("f_BASE_1.txt"), "base\n");
+    Path right = Files.writeString(dir.resolve("f_REMOTE_1.txt"), "right\n");
+    Path merged = Files.writeString(dir.resolve("f.txt"), "merged\n");
+    Path backup = dir.resolve("f_BACKUP_1.txt");
+    FileTime oldTime = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(merged, oldTime);
+
+    // Writing back the same contents does not touch the merged file.
+    MergeState ms = new MergeState(left, base, right, merged, false);
+    MergeStats stats = MergeStats.enable();
+    try {
+      ms.setConflictedFile(new ConflictedFile("merged\n", merged));
+      Assertions.assertFalse(ms.writeBack(false));
+      Assertions.assertEquals(oldTime, Files.getLastModifiedTime(merged));
+      Assertions.assertEquals("merged\n", Files.readString(backup));
+      Assertions.assertEquals(1, stats.counter("merged file.unchanged"));
+      Assertions.assertEquals(1, stats.counter("backup file.written"));
+
+      // Writing back different contents replaces the merged file and the backup.
+      ms.setConflictedFile(new ConflictedFile("new\n", merged));
+      Assertions.assertTrue(ms.writeBack(false));
+      Assertions.assertEquals("new\n", Files.readString(merged));
+      Assertions.assertEquals("new\n", Files.readString(backup));
+      Assertions.assertEquals(1, stats.counter("merged file.written"));
+      Assertions.assertEquals(2, stats.counter("backup file.written"));
+
+      // Writing back the same contents again touches neither file.
+      Assertions.assertFalse(ms.writeBack(false));
+      ms.setConflictedFile(new ConflictedFile("new\n", merged));
+      Assertions.assertFalse(ms.writeBack(false));
+      Assertions.assertEquals(2, stats.counter("merged file.unchanged"));
+      Assertions.assertEquals(1, stats.counter("backup file.unchanged"));
+    } finally {
+      MergeStats.disable();
+    }
+
+    for (Path p : new Path[] {left, base, right, merged, backup}) {
+      Files.delete(p);
+    }
+    Files.delete(dir);
+  }
+}
@@ -0,0 +1,137 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+final class MergeStatsTest {
+
+  /** Creates a new MergeStatsTest. */
+  MergeStatsTest() {}
+
+  @Test
+  void testDisabled() {
+    MergeStats.disable();
+    assertFalse(MergeStats.isEnabled());
+    MergeStats.Phase phase = MergeStats.begin("phase");
+    assertTrue(phase == MergeStats.Phase.NONE);
+    phase.end();
+    MergeStats.count("counter");
+
+    MergeStats stats = MergeStats.enable();
+    assertEquals(0, stats.phaseCount("phase"));
+    assertEquals(0, stats.counter("counter"));
+    MergeStats.disable();
+  }
+
+  @Test
+  void testReport() {
+    MergeStats stats = MergeStats.enable();
+    for (int i = 0; i < 3; i++) {
+      MergeStats.begin("phase").end();
+    }
+    MergeStats.count("counter");
+    MergeStats.add("counter", 2);
+    MergeStats.disable();
+
+    assertEquals(3, stats.phaseCount("phase"));
+    assertEquals(3, stats.counter("counter"));
+    String json = stats.report(MergeStats.Format.json, "dir/\"file\"", 1);
+    assertTrue(json.startsWith("{\"file\":\"dir/\\\"file\\\"\",\"exitStatus\":1,"), json);
+    assertTrue(json.contains("\"phase\":{\"count\":3,\"nanos\":"), json);
+    assertTrue(json.contains("\"counters\":{\"counter\":3}"), json);
+    assertEquals(1, json.lines().count());
+    String text = stats.report(MergeStats.Format.text, "file", 1);
+    assertTrue(text.contains("counter"), text);
+  }
+
+  @Test
+  void testMerger() throws IOException {
+    Path dir = Files.createTempDirectory("MergeStatsTest-");
+    Path left = Files.writeString(dir.resolve("left.txt"), "c\nversion 1.3.0\n");
+    Path base = Files.writeString(dir.resolve("base.txt"), "a\nversion 1.2.0\n");
+    Path right = Files.writeString(dir.resolve("right.txt"), "b\nversion 1.2.1\n");
+    Path merged =
+        Files.writeString(
+            dir.resolve("merged.txt"),
+            String.join(
+                "\n",
+                "<<<<<<< OURS",
+                "c",
+                "||||||| BASE",
+                "a",
+                "=======",
+                "b",
+                ">>>>>>> THEIRS",
+                "<<<<<<< OURS",
+                "version 1.3.0",
+                "||||||| BASE",
+                "version 1.2.0",
+                "=======",
+                "version 1.2.1",
+                ">>>>>>> THEIRS",
+                ""));
+
+    MergeStats stats = MergeStats.enable();
+    MergeState ms = new MergeState(left, base, right, merged, true);
+    new VersionNumbersMerger(false).merge(ms);
+    MergeStats.disable();
+
+    assertEquals(1, stats.counter("parses"));
+    assertEquals(1, stats.phaseCount("parse"));
+    assertEquals(1, stats.phaseCount("VersionNumbersMerger.resolveConflicts"));
+    assertEquals(2, stats.counter("VersionNumbersMerger.seen"));
+    assertEquals(1, stats.counter("VersionNumbersMerger.resolved"));
+
+    for (Path p : new Path[] {left, base, right, merged}) {
+      Files.delete(p);
+    }
+    Files.delete(dir);
+  }
+
+  @Test
+  void testImportsMerger() throws IOException {
+    Path dir = Files.createTempDirectory("MergeStatsTest-");
+    String header = "package p;\n\n";
+    String body = "\nclass C { A a; B b; D d; }\n";
+    Path left =
+        Files.writeString(dir.resolve("left.java"), header + "import x.A;\nimport x.B;\n" + body);
+    Path base = Files.writeString(dir.resolve("base.java"), header + "import x.A;\n" + body);
+    Path right =
+        Files.writeString(dir.resolve("right.java"), header + "import x.A;\nimport x.D;\n" + body);
+    Path merged =
+        Files.writeString(
+            dir.resolve("merged.java"),
+            header
+                + "import x.A;\n"
+                + "<<<<<<< OURS\n"
+                + "import x.B;\n"
+                + "||||||| BASE\n"
+                + "=======\n"
+                + "import x.D;\n"
+                + ">>>>>>> THEIRS\n"
+                + body);
+
+    MergeStats stats = MergeStats.enable();
+    MergeState ms = new MergeState(left, base, right, merged, true);
+    new JavaImportsMerger(false, false).merge(ms);
+    MergeStats.disable();
+
+    // Counting the conflicts that remain does not parse the merger's output.
+    assertEquals(1, stats.counter("parses"));
+    assertEquals(1, stats.phaseCount("parse"));
+    assertEquals(1, stats.counter("JavaImportsMerger.seen"));
+    assertEquals(1, stats.counter("JavaImportsMerger.resolved"));
+    assertFalse(ms.conflictedFile().isParsed());
+
+    for (Path p : new Path[] {left, base, right, merged}) {
+      Files.delete(p);
+    }
+    Files.delete(dir);
+  }
+}
@@ -0,0 +1,55 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+final class ReusableJavacParserTest {
+
+  /** Creates a new ReusableJavacParserTest. */
+  ReusableJavacParserTest() {}
+
+  /** The parser under test. */
+  private final ReusableJavacParser parser = ReusableJavacParser.forCurrentThread();
+
+  @Test
+  void testParsesAsClasses() {
+    assertArrayEquals(new boolean[] {true}, parser.parsesAsClasses("class MyClass {int x;}"));
+    assertArrayEquals(new boolean[] {false}, parser.parsesAsClasses("class MyClass {int x}"));
+    assertArrayEquals(new boolean[] {false}, parser.parsesAsClasses("class A {} class B {}"));
+    assertArrayEquals(new boolean[] {false}, parser.parsesAsClasses("int x;"));
+    assertArrayEquals(
+        new boolean[] {true, false},
+        parser.parsesAsClasses("class MyClass {@A String varname;}", "class MyClass {@A;}"));
+    assertArrayEquals(
+        new boolean[] {false, true},
+        parser.parsesAsClasses("class MyClass {@A(;}", "class MyClass {final int x;}"));
+  }
+
+  /** Tests texts whose errors cannot be attributed when they are parsed together. */
+  @Test
+  void testUnattributable() {
+    // The first text does not end its class, so it swallows the second.
+    assertArrayEquals(
+        new boolean[] {false, true},
+        parser.parsesAsClasses("class MyClass {@A {;}", "class MyClass {int x;}"));
+    // The first text ends its class early.
+    assertArrayEquals(
+        new boolean[] {false, true},
+        parser.parsesAsClasses("class MyClass {@A} @B;}", "class MyClass {int x;}"));
+    // An unterminated comment.
+    assertArrayEquals(
+        new boolean[] {false, true},
+        parser.parsesAsClasses("class MyClass {@A /* x;}", "class MyClass {int x;}"));
+  }
+
+  /** Tests that errors are reported after many parses and errors, including a new context. */
+  @Test
+  void testManyParses() {
+    for (int i = 0; i < 2500; i++) {
+      assertArrayEquals(
+          new boolean[] {false, true},
+          parser.parsesAsClasses("class MyClass {int x}", "class MyClass {int x" + i + ";}"));
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.StepBudget;
+
+final class StepBudgetTest {
+
+  /** Creates a new StepBudgetTest. */
+  StepBudgetTest() {}
+
+  @Test
+  void testCharge() {
+    Pattern p = Pattern.compile("^.*?([.0-9]+)$", Pattern.DOTALL);
+    StepBudget budget = new StepBudget(1000);
+    Matcher m = p.matcher(budget.charge("version 1.2.3"));
+    assertTrue(m.matches());
+    assertEquals("1.2.3", m.group(1));
+
+    // Matching this text examines each character many times.
+    String quadratic = "1".repeat(1000) + "x";
+    assertThrows(
+        StepBudget.ExceededException.class,
+        () -> p.matcher(new StepBudget(10_000).charge(quadratic)).matches());
+    // The budget is shared by every text that it charges.
+    StepBudget shared = new StepBudget(100);
+    assertTrue(p.matcher(shared.charge("1.2.3")).matches());
+    assertThrows(
+        StepBudget.ExceededException.class,
+        () -> {
+          for (int i = 0; i < 100; i++) {
+            p.matcher(shared.charge("1.2.3")).matches();
+          }
+        });
+  }
+
+  @Test
+  void testQuadraticConflict() {
+    Pattern p = Pattern.compile("^.*?([.0-9]+)$", Pattern.DOTALL);
+    /** A merger whose matching takes time quadratic in the length of a run of digits. */
+    class QuadraticMerger extends PerConflictMerger {
+
+      /** Creates a QuadraticMerger. */
+      QuadraticMerger() {
+        super(false);
+      }
+
+      @Override
+      @Nullable List<String> resolveConflict(MergeConflict mc, StepBudget budget) {
+        return p.matcher(budget.charge(mc.leftJoined())).matches() ? mc.left() : null;
+      }
+    }
+    String prefix = "1".repeat(20_000) + "x\n";
+    MergeConflict mc =
+        (MergeConflict)
+            MergeConflict.of(
+                List.of(prefix, "version 1.0\n"),
+                List.of(prefix, "version 1.1\n"),
+                List.of(prefix, "version 1.2\n"),
+                0,
+                8);
+    assertNull(new QuadraticMerger().resolveConflictWithinBudget(mc));
+    // The version-numbers merger matches no regular expressions.
+    assertEquals(
+        List.of(prefix + "version 1.2\n"),
+        new VersionNumbersMerger(false).resolveConflictWithinBudget(mc));
+  }
+
+  @Test
+  void testOversizedConflict() {
+    String line = "int x = " + "1".repeat(PerConflictMerger.MAX_FRAGMENT_LENGTH) + ";\n";
+    MergeConflict mc =
+        (MergeConflict)
+            MergeConflict.of(
+                List.of(line), List.of("@Nullable " + line), List.of("final " + line), 0, 5);
+    assertNull(new JavaAnnotationsMerger(false).resolveConflictWithinBudget(mc));
+  }
+}
@@ -0,0 +1,484 @@
+package org.plumelib.merging;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.plumelib.merging.fileformat.LineIndex;
+
+/**
+ * The three versions of a generated Java file; the conflicted file that {@code git merge-file
+ * --diff3} produces from them; and the file that the mergers, with {@code --adjacent}, produce from
+ * the conflicted file. The generator is seeded, so a given {@link Builder} always generates the
+ * same merge. It is for tests and benchmarks that need large inputs.
+ *
+ * <p>The file's header has some imports, after which the left and right versions each add
+ * different imports, which conflict. The class body uses every import. Then the class body has the
+ * given number of lines, some of which may be the same line, repeated. Merge conflicts are evenly
+ * spaced in the class body. Each merge conflict is of one of these kinds, chosen at random:
+ *
+ * <ul>
+ *   <li>adjacent, which {@link AdjacentLinesMerger} resolves: the left version deletes the first
+ *       line and edits the first half of the other lines, and the right version edits the second
+ *       half.
+ *   <li>annotations, which {@link JavaAnnotationsMerger} resolves: on each line, the left version
+ *       adds a modifier and the right version adds an annotation.
+ *   <li>version numbers, which {@link VersionNumbersMerger} resolves: on each line, each version
+ *       increases a version number.
+ *   <li>unresolvable: each version changes each line differently. The imports conflict is resolved
+ *       only if no merge conflict of this kind exists, because {@link JavaImportsMerger} does
+ *       nothing unless the only merge conflicts are in the imports.
+ * </ul>
+ */
+final class SyntheticMerge {
+
+  /** The lines of the base version. */
+  final List<String> base = new ArrayList<>();
+
+  /** The lines of the left version. */
+  final List<String> left = new ArrayList<>();
+
+  /** The lines of the right version. */
+  final List<String> right = new ArrayList<>();
+
+  /** The lines of the conflicted file. */
+  final List<String> merged = new ArrayList<>();
+
+  /** The lines of the file that the mergers, with {@code --adjacent}, produce. */
+  final List<String> expected = new ArrayList<>();
+
+  /** The number of merge conflicts in the conflicted file, including the imports conflict. */
+  int numConflicts = 0;
+
+  /** The number of merge conflicts that the mergers leave unresolved. */
+  int numUnresolved = 0;
+
+  /** The kinds of merge conflict in the class body. */
+  private enum Kind {
+    /** Resolved by {@link AdjacentLinesMerger}. */
+    ADJACENT,
+    /** Resolved by {@link JavaAnnotationsMerger}. */
+    ANNOTATIONS,
+    /** Resolved by {@link VersionNumbersMerger}. */
+    VERSION_NUMBERS,
+    /** Not resolved. */
+    UNRESOLVABLE
+  }
+
+  /** The line that is repeated, for {@link Builder#repetition}. */
+  private static final String REPEATED_LINE = "  // ----\n";
+
+  /** Specifies a generated merge. Each setter returns this builder. */
+  static final class Builder {
+
+    /** The seed for choosing the kinds of merge conflicts and the repeated lines. */
+    private long seed = 0;
+
+    /** The number of imports that all three versions have. */
+    private int numImports = 10;
+
+    /** The number of imports that each of the left and right versions adds. */
+    private int importsPerSide = 1;
+
+    /** The number of lines in the base version's class body, excluding uses of the imports. */
+    private int linesPerFile = 100;
+
+    /** The number of merge conflicts in the class body. */
+    private int conflictsPerFile = 0;
+
+    /** The number of lines of the base version in each merge conflict. */
+    private int linesPerConflict = 4;
+
+    /** The fraction of merge conflicts that are annotations merge conflicts. */
+    private double annotationDensity = 1.0 / 3;
+
+    /** The fraction of merge conflicts that are version-number merge conflicts. */
+    private double versionChurn = 1.0 / 3;
+
+    /** The fraction of merge conflicts that cannot be resolved. */
+    private double unresolvable = 0;
+
+    /** The fraction of the lines outside merge conflicts that are the same line, repeated. */
+    private double repetition = 0;
+
+    /** Creates a Builder for a merge with 100 lines, 10 imports, and no conflicts in the body. */
+    Builder() {}
+
+    /**
+     * Sets the seed.
+     *
+     * @param seed the seed for choosing the kinds of merge conflicts and the repeated lines
+     * @return this
+     */
+    Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /**
+     * Sets the number of imports.
+     *
+     * @param numImports the number of imports that all three versions have
+     * @return this
+     */
+    Builder imports(int numImports) {
+      this.numImports = numImports;
+      return this;
+    }
+
+    /**
+     * Sets the size of the imports conflict.
+     *
+     * @param importsPerSide the number of imports that each of the left and right versions adds;
+     *     if 0, there is no imports conflict
+     * @return this
+     */
+    Builder importsPerSide(int importsPerSide) {
+      this.importsPerSide = importsPerSide;
+      return this;
+    }
+
+    /**
+     * Sets the size of the file.
+     *
+     * @param linesPerFile the number of lines in the base version's class body, excluding uses of
+     *     the imports
+     * @return this
+     */
+    Builder lines(int linesPerFile) {
+      this.linesPerFile = linesPerFile;
+      return this;
+    }
+
+    /**
+     * Sets the number of merge conflicts.
+     *
+     * @param conflictsPerFile the number of merge conflicts in the class body
+     * @return this
+     */
+    Builder conflicts(int conflictsPerFile) {
+      this.conflictsPerFile = conflictsPerFile;
+      return this;
+    }
+
+    /**
+     * Sets the size of each merge conflict.
+     *
+     * @param linesPerConflict the number of lines of the base version in each merge conflict
+     * @return this
+     */
+    Builder linesPerConflict(int linesPerConflict) {
+      this.linesPerConflict = linesPerConflict;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of merge conflicts that are annotations merge conflicts.
+     *
+     * @param annotationDensity a number between 0 and 1
+     * @return this
+     */
+    Builder annotationDensity(double annotationDensity) {
+      this.annotationDensity = annotationDensity;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of merge conflicts that are version-number merge conflicts.
+     *
+     * @param versionChurn a number between 0 and 1
+     * @return this
+     */
+    Builder versionChurn(double versionChurn) {
+      this.versionChurn = versionChurn;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of merge conflicts that cannot be resolved.
+     *
+     * @param unresolvable a number between 0 and 1
+     * @return this
+     */
+    Builder unresolvable(double unresolvable) {
+      this.unresolvable = unresolvable;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the lines outside merge conflicts that are the same line, repeated.
+     *
+     * @param repetition a number between 0 and 1
+     * @return this
+     */
+    Builder repetition(double repetition) {
+      this.repetition = repetition;
+      return this;
+    }
+
+    /**
+     * Generates the merge.
+     *
+     * @return the generated merge
+     * @throws IllegalArgumentException if the merge conflicts do not fit in the class body, with at
+     *     least one line between them, or if the fractions of kinds of merge conflict exceed 1
+     */
+    SyntheticMerge build() {
+      return new SyntheticMerge(this);
+    }
+  }
+
+  /**
+   * Generates a merge.
+   *
+   * @param spec the specification of the merge
+   */
+  private SyntheticMerge(Builder spec) {
+    int linesPerFile = spec.linesPerFile;
+    int conflictsPerFile = spec.conflictsPerFile;
+    int linesPerConflict = spec.linesPerConflict;
+    int spacing = conflictsPerFile == 0 ? linesPerFile : linesPerFile / conflictsPerFile;
+    if (conflictsPerFile > 0 && (linesPerConflict < 1 || linesPerConflict >= spacing)) {
+      throw new IllegalArgumentException(
+          String.format(
+              "%d conflicts of %d lines do not fit in %d lines",
+              conflictsPerFile, linesPerConflict, linesPerFile));
+    }
+    if (spec.annotationDensity + spec.versionChurn + spec.unresolvable > 1) {
+      throw new IllegalArgumentException("the fractions of kinds of merge conflict exceed 1");
+    }
+    Random random = new Random(spec.seed);
+    List<Kind> kinds = new ArrayList<>(conflictsPerFile);
+    for (int c = 0; c < conflictsPerFile; c++) {
+      kinds.add(chooseKind(spec, random));
+    }
+    boolean importsResolved = !kinds.contains(Kind.UNRESOLVABLE);
+
+    addCommon("package org.example.generated;\n");
+    addCommon("\n");
+    for (int i = 0; i < spec.numImports; i++) {
+      addCommon("import org.example.package" + i + ".Class" + i + ";\n");
+    }
+    List<String> leftImports = new ArrayList<>();
+    List<String> rightImports = new ArrayList<>();
+    for (int i = 0; i < spec.importsPerSide; i++) {
+      leftImports.add("import org.example.left.Left" + i + ";\n");
+      rightImports.add("import org.example.right.Right" + i + ";\n");
+    }
+    if (spec.importsPerSide > 0) {
+      TreeSet<String> union = new TreeSet<>(leftImports);
+      union.addAll(rightImports);
+      @Nullable List<String> resolution = importsResolved ? List.copyOf(union) : null;
+      addConflict(List.of(), leftImports, rightImports, resolution);
+    }
+    addCommon("\n");
+    addCommon("class Generated {\n");
+    for (int i = 0; i < spec.numImports; i++) {
+      addCommon("  Class" + i + " use" + i + ";\n");
+    }
+    // Each version uses the imports that it adds, at a place where the other version makes no
+    // change, so that git merge-file merges the uses cleanly.
+    for (int i = 0; i < spec.importsPerSide; i++) {
+      addLeftOnly("  Left" + i + " left" + i + ";\n");
+    }
+
+    int line = 0;
+    for (int c = 0; c < conflictsPerFile; c++) {
+      for (; line < c * spacing + 1; line++) {
+        addFiller(line, spec.repetition, random);
+      }
+      Kind kind = kinds.get(c);
+      List<String> baseLines = new ArrayList<>();
+      List<String> leftLines = new ArrayList<>();
+      List<String> rightLines = new ArrayList<>();
+      List<String> resolution = new ArrayList<>();
+      for (int i = 0; i < linesPerConflict; i++, line++) {
+        switch (kind) {
+          case ADJACENT -> {
+            baseLines.add("  int field" + line + " = " + line + ";\n");
+            String leftLine = "  int field" + line + " = " + (line + 1) + ";\n";
+            String rightLine = "  int field" + line + " = " + (line - 1) + ";\n";
+            boolean firstHalf = i < linesPerConflict / 2;
+            if (i != 0) {
+              leftLines.add(firstHalf ? leftLine : baseLines.get(i));
+              resolution.add(firstHalf ? leftLine : rightLine);
+            }
+            rightLines.add(firstHalf ? baseLines.get(i) : rightLine);
+          }
+          case ANNOTATIONS -> {
+            baseLines.add("  public Object field" + line + " = null;\n");
+            leftLines.add("  public final Object field" + line + " = null;\n");
+            rightLines.add("  @Deprecated public Object field" + line + " = null;\n");
+            resolution.add("  @Deprecated public final Object field" + line + " = null;\n");
+          }
+          case VERSION_NUMBERS -> {
+            baseLines.add("  String version" + line + " = \"1.2." + line + "\";\n");
+            leftLines.add("  String version" + line + " = \"1.3." + line + "\";\n");
+            rightLines.add("  String version" + line + " = \"1.2." + (line + 1) + "\";\n");
+            resolution.add(leftLines.get(i));
+          }
+          case UNRESOLVABLE -> {
+            baseLines.add("  String text" + line + " = \"base\";\n");
+            leftLines.add("  String text" + line + " = \"left\";\n");
+            rightLines.add("  String text" + line + " = \"right\";\n");
+          }
+        }
+      }
+      addConflict(baseLines, leftLines, rightLines, kind == Kind.UNRESOLVABLE ? null : resolution);
+    }
+    for (; line < linesPerFile; line++) {
+      addFiller(line, spec.repetition, random);
+    }
+    for (int i = 0; i < spec.importsPerSide; i++) {
+      addRightOnly("  Right" + i + " right" + i + ";\n");
+    }
+    addCommon("}\n");
+  }
+
+  /**
+   * Chooses the kind of a merge conflict.
+   *
+   * @param spec the specification of the merge
+   * @param random the source of randomness
+   * @return the kind of the merge conflict
+   */
+  private static Kind chooseKind(Builder spec, Random random) {
+    double r = random.nextDouble();
+    if (r < spec.annotationDensity) {
+      return Kind.ANNOTATIONS;
+    } else if (r < spec.annotationDensity + spec.versionChurn) {
+      return Kind.VERSION_NUMBERS;
+    } else if (r < spec.annotationDensity + spec.versionChurn + spec.unresolvable) {
+      return Kind.UNRESOLVABLE;
+    } else if (spec.linesPerConflict == 1) {
+      // An adjacent-lines merge conflict needs at least two lines.
+      return Kind.VERSION_NUMBERS;
+    } else {
+      return Kind.ADJACENT;
+    }
+  }
+
+  /**
+   * Adds a line outside the merge conflicts.
+   *
+   * @param line the index of the line in the class body
+   * @param repetition the fraction of such lines that are the same line, repeated
+   * @param random the source of randomness
+   */
+  private void addFiller(int line, double repetition, Random random) {
+    if (repetition > 0 && random.nextDouble() < repetition) {
+      addCommon(REPEATED_LINE);
+    } else {
+      addCommon("  int field" + line + " = " + line + ";\n");
+    }
+  }
+
+  /**
+   * Adds a line that is the same in every version.
+   *
+   * @param line the line
+   */
+  private void addCommon(String line) {
+    base.add(line);
+    left.add(line);
+    right.add(line);
+    merged.add(line);
+    expected.add(line);
+  }
+
+  /**
+   * Adds a line that only the left version adds.
+   *
+   * @param line the line
+   */
+  private void addLeftOnly(String line) {
+    left.add(line);
+    merged.add(line);
+    expected.add(line);
+  }
+
+  /**
+   * Adds a line that only the right version adds.
+   *
+   * @param line the line
+   */
+  private void addRightOnly(String line) {
+    right.add(line);
+    merged.add(line);
+    expected.add(line);
+  }
+
+  /**
+   * Adds a merge conflict.
+   *
+   * @param baseLines the base version's lines
+   * @param leftLines the left version's lines
+   * @param rightLines the right version's lines
+   * @param resolution the lines that the mergers produce, or null if they do not resolve it
+   */
+  private void addConflict(
+      List<String> baseLines,
+      List<String> leftLines,
+      List<String> rightLines,
+      @Nullable List<String> resolution) {
+    base.addAll(baseLines);
+    left.addAll(leftLines);
+    right.addAll(rightLines);
+    int start = merged.size();
+    merged.add("<<<<<<< left.java\n");
+    merged.addAll(leftLines);
+    merged.add("||||||| base.java\n");
+    merged.addAll(baseLines);
+    merged.add("=======\n");
+    merged.addAll(rightLines);
+    merged.add(">>>>>>> right.java\n");
+    numConflicts++;
+    if (resolution == null) {
+      expected.addAll(merged.subList(start, merged.size()));
+      numUnresolved++;
+    } else {
+      expected.addAll(resolution);
+    }
+  }
+
+  /**
+   * Writes the versions and the conflicted file to {@code left.java}, {@code base.java}, {@code
+   * right.java}, and {@code merged.java} in the given directory, overwriting any existing files.
+   *
+   * @param dir the directory
+   * @return the merge state for the written files
+   * @throws IOException if a file cannot be written
+   */
+  MergeState write(Path dir) throws IOException {
+    Path leftPath = dir.resolve("left.java");
+    Path basePath = dir.resolve("base.java");
+    Path rightPath = dir.resolve("right.java");
+    Path mergedPath = dir.resolve("merged.java");
+    Files.writeString(leftPath, LineIndex.join(left), StandardCharsets.UTF_8);
+    Files.writeString(basePath, LineIndex.join(base), StandardCharsets.UTF_8);
+    Files.writeString(rightPath, LineIndex.join(right), StandardCharsets.UTF_8);
+    Files.writeString(mergedPath, LineIndex.join(merged), StandardCharsets.UTF_8);
+    return new MergeState(leftPath, basePath, rightPath, mergedPath, true);
+  }
+
+  /**
+   * Deletes the given directory and everything in it.
+   *
+   * @param dir the directory to delete
+   * @throws IOException if a file cannot be deleted
+   */
+  static void deleteDirectory(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.LineIndex;
+import picocli.CommandLine;
+
+final class SyntheticMergeTest {
+
+  /** Creates a new SyntheticMergeTest. */
+  SyntheticMergeTest() {}
+
+  /** The number of seeds for which the small merges are generated. */
+  private static final int SEEDS = 5;
+
+  /**
+   * Returns a small merge.
+   *
+   * @param seed the seed
+   * @return a small merge with every kind of merge conflict
+   */
+  private static SyntheticMerge.Builder small(long seed) {
+    return new SyntheticMerge.Builder()
+        .seed(seed)
+        .imports(5)
+        .importsPerSide(2)
+        .lines(200)
+        .conflicts(8)
+        .linesPerConflict(4)
+        .annotationDensity(0.25)
+        .versionChurn(0.25)
+        .unresolvable(seed % 2 == 0 ? 0 : 0.1)
+        .repetition(0.3);
+  }
+
+  @Test
+  void testSeeded() {
+    assertEquals(small(1).build().merged, small(1).build().merged);
+    assertNotEquals(small(1).build().merged, small(2).build().merged);
+  }
+
+  @Test
+  void testGitMergeFile() throws IOException, InterruptedException {
+    for (int seed = 0; seed < SEEDS; seed++) {
+      Path dir = Files.createTempDirectory("SyntheticMergeTest-");
+      SyntheticMerge merge = small(seed).build();
+      MergeState ms = merge.write(dir);
+      Process p =
+          new ProcessBuilder(
+                  "git",
+                  "merge-file",
+                  "--diff3",
+                  "-p",
+                  "-L",
+                  "left.java",
+                  "-L",
+                  "base.java",
+                  "-L",
+                  "right.java",
+                  ms.leftPath.toString(),
+                  ms.basePath.toString(),
+                  ms.rightPath.toString())
+              .redirectError(ProcessBuilder.Redirect.INHERIT)
+              .start();
+      String output = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+      assertEquals(merge.numConflicts, p.waitFor(), "seed " + seed);
+      assertEquals(LineIndex.join(merge.merged), output, "seed " + seed);
+      SyntheticMerge.deleteDirectory(dir);
+    }
+  }
+
+  @Test
+  void testMergers() throws IOException {
+    for (int seed = 0; seed < SEEDS; seed++) {
+      SyntheticMerge merge = small(seed).build();
+      Path dir = Files.createTempDirectory("SyntheticMergeTest-");
+      assertEquals(merge.numUnresolved == 0 ? 0 : 1, runMain(merge.write(dir)), "seed " + seed);
+      assertEquals(
+          LineIndex.join(merge.expected),
+          Files.readString(dir.resolve("merged.java")),
+          "seed " + seed);
+      SyntheticMerge.deleteDirectory(dir);
+    }
+  }
+
+  // The table of AdjacentDynamicProgramming would be too large for a merge conflict of 300 lines,
+  // so AdjacentLinesMerger falls back to diffing.  This checks that the fallback stays cheap.
+  @Test
+  void testLargeConflictCeiling() throws IOException {
+    SyntheticMerge merge =
+        new SyntheticMerge.Builder()
+            .imports(0)
+            .importsPerSide(0)
+            .lines(302)
+            .conflicts(1)
+            .linesPerConflict(300)
+            .annotationDensity(0)
+            .versionChurn(0)
+            .build();
+    Path dir = Files.createTempDirectory("SyntheticMergeTest-");
+    MergeState ms = merge.write(dir);
+
+    MergeStats stats = MergeStats.enable();
+    try {
+      new AdjacentLinesMerger(false).merge(ms);
+    } finally {
+      MergeStats.disable();
+    }
+
+    assertEquals(LineIndex.join(merge.expected), LineIndex.join(ms.conflictedFile().lines()));
+    String phase = "AdjacentLinesMerger.resolveConflicts";
+    assertEquals(1, stats.counter("AdjacentLinesMerger.resolved"));
+    assertCeiling(stats, phase, 2_000, 256);
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  @Test
+  void testLargeFileCeiling() throws IOException {
+    SyntheticMerge merge =
+        new SyntheticMerge.Builder()
+            .seed(1)
+            .imports(50)
+            .importsPerSide(5)
+            .lines(1_000_000)
+            .conflicts(20)
+            .linesPerConflict(10)
+            .repetition(0.5)
+            .build();
+    Path dir = Files.createTempDirectory("SyntheticMergeTest-");
+    MergeState ms = merge.write(dir);
+
+    MergeStats stats = MergeStats.enable();
+    int exitStatus;
+    MergeStats.Phase phase = MergeStats.begin("total");
+    try {
+      exitStatus = runMain(ms);
+    } finally {
+      phase.end();
+      MergeStats.disable();
+    }
+
+    assertEquals(0, exitStatus);
+    assertEquals(
+        LineIndex.join(merge.expected), Files.readString(ms.mergedPath, StandardCharsets.UTF_8));
+    assertEquals(1, stats.counter("JavaImportsMerger.resolved"));
+    assertCeiling(stats, "total", 60_000, 8_192);
+    SyntheticMerge.deleteDirectory(dir);
+  }
+
+  /**
+   * Runs all the mergers, as a merge tool, on the given files.
+   *
+   * @param ms the files to merge
+   * @return the exit status
+   */
+  private static int runMain(MergeState ms) {
+    List<String> args =
+        List.of(
+            "--adjacent",
+            "tool",
+            ms.leftPath.toString(),
+            ms.basePath.toString(),
+            ms.rightPath.toString(),
+            ms.mergedPath.toString());
+    return new CommandLine(new Main()).execute(args.toArray(new String[0]));
+  }
+
+  /**
+   * Asserts that the given phase took no more than the given time and allocated no more than the
+   * given memory. The ceilings are generous, to catch a change in complexity rather than a change
+   * in constant factors; for the latter, see the benchmarks in {@code src/jmh}.
+   *
+   * @param stats the statistics of a run
+   * @param phase the name of a phase
+   * @param maxMillis the time ceiling, in milliseconds
+   * @param maxMegabytes the allocation ceiling, in megabytes; it is not checked if the JVM cannot
+   *     measure allocation
+   */
+  private static void assertCeiling(
+      MergeStats stats, String phase, long maxMillis, long maxMegabytes) {
+    long millis = stats.phaseNanos(phase) / 1_000_000;
+    assertTrue(millis <= maxMillis, phase + " took " + millis + " ms");
+    long megabytes = stats.phaseAllocatedBytes(phase) / (1024 * 1024);
+    assertTrue(megabytes <= maxMegabytes, phase + " allocated " + megabytes + " MB");
+  }
+}
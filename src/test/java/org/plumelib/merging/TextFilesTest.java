@@ -0,0 +1,81 @@
+package org.plumelib.merging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.ConflictedFile;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.TextFiles;
+import org.plumelib.merging.fileformat.TextFiles.DecodedText;
+
+final class TextFilesTest {
+
+  /** Creates a new TextFilesTest. */
+  TextFilesTest() {}
+
+  @Test
+  void testUtf8() throws CharacterCodingException {
+    byte[] bytes = "caf\u00E9 \u20AC\n".getBytes(StandardCharsets.UTF_8);
+    DecodedText decoded = TextFiles.decode(bytes);
+    Assertions.assertEquals(StandardCharsets.UTF_8, decoded.charset());
+    Assertions.assertEquals("caf\u00E9 \u20AC\n", decoded.text());
+    Assertions.assertArrayEquals(bytes, TextFiles.encode(decoded.text(), decoded.charset()));
+  }
+
+  @Test
+  void testLatin1() throws CharacterCodingException {
+    // A conflicted file in ISO-8859-1 whose non-ASCII characters are not valid UTF-8.
+    @SuppressWarnings("StringConcatToTextBlock") // TODO
+    String text =
+        "// caf\u00E9\n"
+            + "<<<<<<< OURS\n"
+            + "left\n"
+            + "||||||| BASE\n"
+            + "base\n"
+            + "=======\n"
+            + "right \u00E9\n"
+            + ">>>>>>> THEIRS\n";
+    byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+    DecodedText decoded = TextFiles.decode(bytes);
+    Assertions.assertEquals(StandardCharsets.ISO_8859_1, decoded.charset());
+
+    ConflictedFile cf = new ConflictedFile(decoded.text(), Path.of("testLatin1 JUnit test"));
+    MergeConflict mc = cf.mergeConflicts().get(0);
+    Assertions.assertEquals("right \u00E9\n", mc.rightJoined());
+    Assertions.assertArrayEquals(bytes, TextFiles.encode(cf.fileContents(), decoded.charset()));
+
+    Assertions.assertThrows(
+        CharacterCodingException.class,
+        () -> TextFiles.encode("\u20AC", StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void testWrite() throws IOException {
+    List<String> pieces = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      String piece = "line " + i + " caf\u00E9 \uD83D\uDE00\n";
+      pieces.add(piece);
+      sb.append(piece);
+    }
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    TextFiles.write(Channels.newChannel(baos), pieces, StandardCharsets.UTF_8);
+    byte[] expected = sb.toString().getBytes(StandardCharsets.UTF_8);
+    Assertions.assertArrayEquals(expected, baos.toByteArray());
+
+    Assertions.assertThrows(
+        CharacterCodingException.class,
+        () ->
+            TextFiles.write(
+                Channels.newChannel(new ByteArrayOutputStream()),
+                List.of("a\uD83D", "\uDE00b"),
+                StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,157 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.googlejavaformat.java.FormatterException;
+import com.google.googlejavaformat.java.RemoveUnusedImports;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+final class UnusedImportsTest {
+
+  /** Creates a new UnusedImportsTest. */
+  UnusedImportsTest() {}
+
+  @Test
+  void testRemoveUnusedImports() {
+    String input =
+        """
+        package org.example;
+
+        import java.io.IOException;
+        import java.lang.String;
+        import java.util.*;
+        import java.util.List;
+        import java.util.Map;
+        import java.util.Set;
+        import java.util.function.Function;
+        import org.example.Sibling;
+        import static org.junit.Assertions.assertEquals;
+        import static org.junit.Assertions.assertTrue;
+
+        /** Uses {@link Map} and {@link #m(Function, int)}. */
+        class C {
+          java.util.Set<String> set = "Set".isEmpty() ? null : null; // Set
+          List<String> list = this::Set;
+
+          /**
+           * Does nothing.
+           *
+           * @throws IOException never
+           */
+          void m() throws Exception {
+            assertTrue(true);
+          }
+        }
+        """;
+    String expected =
+        """
+        package org.example;
+
+        import java.io.IOException;
+        import java.util.*;
+        import java.util.List;
+        import java.util.Map;
+        import java.util.function.Function;
+        import static org.junit.Assertions.assertTrue;
+
+        /** Uses {@link Map} and {@link #m(Function, int)}. */
+        class C {
+          java.util.Set<String> set = "Set".isEmpty() ? null : null; // Set
+          List<String> list = this::Set;
+
+          /**
+           * Does nothing.
+           *
+           * @throws IOException never
+           */
+          void m() throws Exception {
+            assertTrue(true);
+          }
+        }
+        """;
+    assertEquals(expected, UnusedImports.removeUnusedImports(input));
+  }
+
+  @Test
+  void testLineSeparators() {
+    assertEquals(
+        "import a.B;  \r\nclass C { B b; }\r\n",
+        UnusedImports.removeUnusedImports(
+            "import a.B;  \r\nimport a.D;  \r\nclass C { B b; }\r\n"));
+    // As in google-java-format, the line separator at the end of the file is not removed.
+    assertEquals(
+        "package p;\n\n\n", UnusedImports.removeUnusedImports("package p;\n\nimport a.D;\n"));
+  }
+
+  @Test
+  void testUnlexable() {
+    String input = "import a.B;\nclass C { String s = \"unterminated; }\n";
+    assertSame(input, UnusedImports.removeUnusedImports(input));
+  }
+
+  /**
+   * The goal files of the end-to-end tests of the Java imports merger are the output of
+   * google-java-format's unused-import removal, so removing unused imports from them changes
+   * nothing.
+   */
+  @Test
+  void testEndToEndGoals() throws IOException {
+    Path testCasesDir = Path.of("src", "test", "resources", "end-to-end");
+    List<Path> goals;
+    try (Stream<Path> files = Files.walk(testCasesDir)) {
+      goals =
+          files
+              .filter(
+                  p ->
+                      p.getParent().getFileName().toString().contains("imports")
+                          && p.getFileName().toString().startsWith("goal")
+                          && p.getFileName().toString().endsWith(".java"))
+              .toList();
+    }
+    for (Path goal : goals) {
+      String contents = Files.readString(goal);
+      if (!contents.contains("<<<<<<<")) {
+        assertEquals(contents, UnusedImports.removeUnusedImports(contents), goal.toString());
+      }
+    }
+  }
+
+  /**
+   * Removes unused imports from every Java file in the test corpus, both with {@link UnusedImports}
+   * and with google-java-format, and checks that the results are the same. The corpus is the
+   * left, base, and right versions of each test case, and each goal file that has no conflict
+   * markers. A file that google-java-format cannot parse is skipped, because then the imports
+   * merger leaves the file unchanged rather than comparing the two.
+   */
+  @Test
+  void testSameAsGoogleJavaFormat() throws IOException {
+    List<Path> corpus;
+    try (Stream<Path> files = Files.walk(Path.of("src", "test", "resources"))) {
+      corpus = files.filter(p -> p.getFileName().toString().endsWith(".java")).sorted().toList();
+    }
+    int compared = 0;
+    for (Path file : corpus) {
+      String contents = Files.readString(file);
+      if (contents.contains("<<<<<<<")) {
+        continue;
+      }
+      String expected;
+      try {
+        expected = RemoveUnusedImports.removeUnusedImports(contents);
+      } catch (FormatterException e) {
+        continue;
+      }
+      assertEquals(expected, UnusedImports.removeUnusedImports(contents), file.toString());
+      compared++;
+    }
+    assertTrue(compared > 0, "no files compared");
+  }
+}
@@ -0,0 +1,90 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+import org.plumelib.merging.fileformat.ConflictedFile.MergeConflict;
+import org.plumelib.merging.fileformat.StepBudget;
+import org.plumelib.util.StringsP;
+
+final class VersionNumbersMergerTest {
+
+  /** Creates a new VersionNumbersMergerTest. */
+  VersionNumbersMergerTest() {}
+
+  /**
+   * Returns the result of VersionNumbersMerger on a merge conflict, or null if it does not resolve
+   * the conflict.
+   *
+   * @param base the base text
+   * @param left the left text
+   * @param right the right text
+   * @return the merged text, or null
+   */
+  @Nullable String merge(String base, String left, String right) {
+    MergeConflict mc =
+        (MergeConflict)
+            MergeConflict.of(
+                StringsP.splitLinesRetainSeparators(base),
+                StringsP.splitLinesRetainSeparators(left),
+                StringsP.splitLinesRetainSeparators(right),
+                0,
+                0);
+    List<String> result =
+        new VersionNumbersMerger(false).resolveConflict(mc, new StepBudget(Long.MAX_VALUE));
+    return result == null ? null : String.join("", result);
+  }
+
+  /**
+   * Asserts that VersionNumbersMerger merges a conflict to the given goal, whichever side is the
+   * left one.
+   *
+   * @param base the base text
+   * @param left the left text
+   * @param right the right text
+   * @param goal the expected merge, or null if the conflict should not be resolved
+   */
+  void assertMerge(String base, String left, String right, @Nullable String goal) {
+    assertEquals(goal, merge(base, left, right));
+    assertEquals(goal, merge(base, right, left));
+  }
+
+  @Test
+  void testSameTokenCounts() {
+    assertMerge("a 1.0 b 2.0\n", "a 1.1 b 2.0\n", "a 1.0 b 2.1\n", "a 1.1 b 2.1\n");
+    assertMerge("a 1.0\n", "a 1.1\n", "a 1.2\n", "a 1.2\n");
+    assertMerge("a 1.0\n", "a 0.9\n", "a 1.2\n", null);
+    assertMerge("a 1.0\n", "b 1.1\n", "c 1.2\n", null);
+  }
+
+  @Test
+  void testDifferentTokenCounts() {
+    // The sides have more tokens than the base.
+    assertMerge("lib 1.0\n", "lib 1.1, api 2.0\n", "lib 1.3, api 2.0\n", "lib 1.3, api 2.0\n");
+    // The sides have fewer tokens than the base.
+    assertMerge("lib 1.0, api 2.0\n", "lib 1.1\n", "lib 1.2\n", "lib 1.2\n");
+    // A version number decreases.
+    assertMerge("lib 1.0\n", "lib 0.9, api 2.0\n", "lib 1.2, api 2.0\n", null);
+    // The sides differ in more than version numbers.
+    assertMerge("lib 1.0\n", "lib 1.1, api 2.0\n", "lib 1.2, spi 2.0\n", null);
+    assertMerge("lib 1.0\n", "lib 1.1, api 2.0\n", "lib 1.2\n", null);
+  }
+
+  @Test
+  void testSameEditNextToVersionChange() {
+    // Both sides make the same non-version edit next to a version number that each changes.
+    assertMerge(
+        "<version>1.0</version>\n",
+        "<version>1.1</version> <!-- 3.0 -->\n",
+        "<version>1.2</version> <!-- 3.0 -->\n",
+        "<version>1.2</version> <!-- 3.0 -->\n");
+    assertMerge(
+        "api 'a:b:1.0'\n",
+        "implementation 'a:b:1.1', 'c:d:3.0'\n",
+        "implementation 'a:b:1.2', 'c:d:3.0'\n",
+        "implementation 'a:b:1.2', 'c:d:3.0'\n");
+  }
+}
@@ -0,0 +1,52 @@
+package org.plumelib.merging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+final class VersionTokenTest {
+
+  /** Creates a new VersionTokenTest. */
+  VersionTokenTest() {}
+
+  /**
+   * Returns the single token of the given text.
+   *
+   * @param text text that is one token
+   * @return the token
+   */
+  VersionToken token(String text) {
+    List<VersionToken> tokens = VersionToken.tokenize(text);
+    assertEquals(1, tokens.size(), tokens.toString());
+    return tokens.get(0);
+  }
+
+  @Test
+  void testTokenize() {
+    assertEquals(List.of(), VersionToken.tokenize(""));
+    assertEquals(
+        "[Other{id \"org.checkerframework\" version \"}, Version[0, 6, 38]{0.6.38}, Other{\"\n}]",
+        VersionToken.tokenize("id \"org.checkerframework\" version \"0.6.38\"\n").toString());
+    // A trailing period is not part of the version number.
+    assertEquals(
+        "[Other{version }, Version[1, 2]{1.2}, Other{.}]",
+        VersionToken.tokenize("version 1.2.").toString());
+    // A number without a period, and a component that does not fit in an int, are other text.
+    assertEquals(
+        "[Other{log4j-}, Version[2, 17]{2.17}, Other{ 7 1.99999999999}]",
+        VersionToken.tokenize("log4j-2.17 7 1.99999999999").toString());
+  }
+
+  @Test
+  void testIsVersionNumberLE() {
+    assertTrue(token("1.2").isVersionNumberLE(token("1.2")));
+    assertTrue(token("1.2.9").isVersionNumberLE(token("1.2.11")));
+    assertFalse(token("1.2.11").isVersionNumberLE(token("1.2.9")));
+    assertTrue(token("0.5.99").isVersionNumberLE(token("0.6.02")));
+    assertTrue(token("1.2").isVersionNumberLE(token("1.2.0")));
+    assertFalse(token("1.2.0").isVersionNumberLE(token("1.2")));
+  }
+}
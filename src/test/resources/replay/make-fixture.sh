@@ -0,0 +1,168 @@
+#!/bin/sh
+
+# Creates fixture.bundle, a small git repository whose history MergeReplayTest
+# replays.  The bundle is committed to this repository; run this script only to
+# change the fixture, and then update MergeReplayTest.
+#
+# The history has these merge commits:
+#  * "Merge imports": both sides add an import at the same place, and the merge
+#    commit keeps both, as the Java imports merger does.
+#  * "Merge versions": both sides increase a version number on the same line,
+#    and the merge commit takes the larger, as the version numbers merger does.
+#  * "Merge annotations": one side adds a modifier and the other an annotation;
+#    the merge commit resolves it differently than the annotations merger does.
+#  * "Merge greeting": both sides change the same line differently, which no
+#    merger resolves.
+#  * "Merge docs": the sides change different files, so no file is merged.
+#  * "Merge new file": both sides add the same file, which has no base version.
+
+set -e
+
+FIXTURE_DIR="$(CDPATH='' cd -- "$(dirname -- "$0")" && pwd -P)"
+WORK_DIR="$(mktemp -d)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+export GIT_AUTHOR_NAME="Fixture Author"
+export GIT_AUTHOR_EMAIL="author@example.com"
+export GIT_COMMITTER_NAME="Fixture Author"
+export GIT_COMMITTER_EMAIL="author@example.com"
+export GIT_AUTHOR_DATE="2024-01-01T00:00:00Z"
+export GIT_COMMITTER_DATE="2024-01-01T00:00:00Z"
+export GIT_CONFIG_NOSYSTEM=1
+export HOME="$WORK_DIR"
+
+cd "$WORK_DIR"
+git init --quiet --initial-branch=main repo
+cd repo
+
+commit() {
+  git add -A
+  git commit --quiet -m "$1"
+}
+
+# Starts a branch named $1 at main.
+branch() {
+  git checkout --quiet -b "$1" main
+}
+
+# Merges branch $1 into main, expecting a conflict, and commits the files as
+# they are in the working tree after running the command $2.
+merge_with() {
+  git checkout --quiet main
+  git merge --quiet --no-ff "$1" > /dev/null 2>&1 || true
+  eval "$2"
+  git add -A
+  git commit --quiet --no-edit -m "Merge $1"
+}
+
+cat > Foo.java <<'EOF'
+package org.example;
+
+import java.util.List;
+import java.util.Set;
+
+class Foo {
+  List<String> names;
+  Set<String> tags;
+}
+EOF
+cat > build.gradle <<'EOF'
+dependencies {
+  implementation "org.example:alpha:1.2.0"
+  implementation "org.example:beta:3.0.0"
+}
+EOF
+cat > Bar.java <<'EOF'
+package org.example;
+
+class Bar {
+  public Object field = null;
+}
+EOF
+printf 'Hello, world.\n' > greeting.txt
+printf 'Documentation.\n' > README
+commit "Initial commit"
+
+# Merge imports
+branch imports-left
+sed -i 's/^import java.util.List;$/import java.util.List;\nimport java.util.Map;/' Foo.java
+sed -i 's/^  Set<String> tags;$/  Set<String> tags;\n  Map<String, String> attributes;/' Foo.java
+commit "Add a map"
+branch imports-right
+sed -i 's/^import java.util.List;$/import java.util.List;\nimport java.util.Queue;/' Foo.java
+sed -i 's/^  List<String> names;$/  List<String> names;\n  Queue<String> pending;/' Foo.java
+commit "Add a queue"
+git checkout --quiet main
+git merge --quiet --no-ff imports-left -m "Merge imports-left"
+merge_with imports-right "cat > Foo.java <<'EOF'
+package org.example;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+class Foo {
+  List<String> names;
+  Queue<String> pending;
+  Set<String> tags;
+  Map<String, String> attributes;
+}
+EOF"
+
+# Merge versions
+branch versions-left
+sed -i 's/alpha:1.2.0/alpha:1.3.0/' build.gradle
+commit "Update alpha"
+branch versions-right
+sed -i 's/alpha:1.2.0/alpha:1.2.5/' build.gradle
+commit "Update alpha differently"
+git checkout --quiet main
+git merge --quiet --no-ff versions-left -m "Merge versions-left"
+merge_with versions-right "sed -i '/^[<|=>]\{7\}/d; /alpha:1.2.[05]/d' build.gradle"
+
+# Merge annotations
+branch annotations-left
+sed -i 's/public Object field/public final Object field/' Bar.java
+commit "Make field final"
+branch annotations-right
+sed -i 's/public Object field/@Deprecated public Object field/' Bar.java
+commit "Deprecate field"
+git checkout --quiet main
+git merge --quiet --no-ff annotations-left -m "Merge annotations-left"
+merge_with annotations-right "git checkout --quiet --theirs Bar.java"
+
+# Merge greeting
+branch greeting-left
+printf 'Hello, everyone.\n' > greeting.txt
+commit "Greet everyone"
+branch greeting-right
+printf 'Goodbye, world.\n' > greeting.txt
+commit "Say goodbye"
+git checkout --quiet main
+git merge --quiet --no-ff greeting-left -m "Merge greeting-left"
+merge_with greeting-right "printf 'Hello and goodbye, everyone.\n' > greeting.txt"
+
+# Merge docs
+branch docs-left
+printf 'Documentation.\nMore documentation.\n' > README
+commit "Document more"
+branch docs-right
+printf 'A greeting.\n' > greeting.txt
+commit "Change the greeting"
+git checkout --quiet main
+git merge --quiet --no-ff docs-left -m "Merge docs-left"
+git merge --quiet --no-ff docs-right -m "Merge docs-right"
+
+# Merge new file
+branch new-left
+printf 'left\n' > NEW
+commit "Add NEW"
+branch new-right
+printf 'right\n' > NEW
+commit "Add NEW differently"
+git checkout --quiet main
+git merge --quiet --no-ff new-left -m "Merge new-left"
+merge_with new-right "printf 'left\nright\n' > NEW"
+
+git bundle create --quiet "$FIXTURE_DIR/fixture.bundle" HEAD main